@@ -0,0 +1,29 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entry point of benchmarks.jar. Same options as the standard JMH launcher, but writes the results as JSON to
+ * jmh-result.json unless another format or file is given, so runs can be compared across commits.
+ *
+ * Run with: java -jar benchmarks/target/benchmarks.jar [JMH options] [benchmark regex]
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>();
+        List<String> given = Arrays.asList(args);
+        if (!given.contains("-rf")) {
+            options.add("-rf");
+            options.add("json");
+        }
+        if (!given.contains("-rff")) {
+            options.add("-rff");
+            options.add("jmh-result.json");
+        }
+        options.addAll(given);
+        org.openjdk.jmh.Main.main(options.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,57 @@
+package benchmark;
+
+import hittable.BVHNode;
+import hittable.FlatBVH;
+import hittable.Grid;
+import hittable.Hittable;
+import hittable.HittableList;
+import hittable.LBVHBuilder;
+import hittable.MedianSplitBuilder;
+import hittable.SAHBuilder;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to build each acceleration structure over the sphere field of {@link main.Main}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BuildBenchmark {
+    @Param({"BVHNode", "Median", "SAH", "LBVH", "Grid", "HGrid"})
+    public String builder;
+
+    private HittableList spheres;
+
+    @Setup
+    public void setup() {
+        spheres = Scenes.world().bounded();
+    }
+
+    @Benchmark
+    public Hittable build() {
+        switch (builder) {
+            // BVHNode sorts the list it is given, so it gets a fresh copy (a small part of the time)
+            case "BVHNode": return new BVHNode(spheres.bounded());
+            case "Median": return new FlatBVH(spheres, new MedianSplitBuilder());
+            case "SAH": return new FlatBVH(spheres, new SAHBuilder());
+            case "LBVH": return new FlatBVH(spheres, new LBVHBuilder());
+            case "Grid": return new Grid(spheres);
+            case "HGrid": return new Grid(spheres, true);
+            default: throw new IllegalArgumentException("Unknown builder " + builder);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+import main.Camera;
+import math.IndependentSampler;
+import math.Ray;
+import math.Sampler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of generating one camera ray with pixel jitter and depth of field, as the renderer does it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CameraBenchmark {
+    private static final int WIDTH = 1200;
+    private static final int HEIGHT = 675;
+
+    private Camera cam;
+    private final Ray ray = new Ray();
+    private final Sampler sampler = new IndependentSampler(5);
+    private int pixel;
+
+    @Setup
+    public void setup() {
+        cam = Scenes.camera();
+    }
+
+    @Benchmark
+    public Ray getRay() {
+        int i = pixel % WIDTH;
+        int j = pixel / WIDTH % HEIGHT;
+        pixel++;
+        sampler.startPixelSample(i, j, 0);
+        double u = (i + sampler.get1D()) / (WIDTH - 1);
+        double v = (j + sampler.get1D()) / (HEIGHT - 1);
+        return cam.getRay(u, v, sampler, ray);
+    }
+}
@@ -0,0 +1,76 @@
+package benchmark;
+
+import hittable.HitRecord;
+import java.util.concurrent.TimeUnit;
+import material.CheckerMaterial;
+import material.DebugMaterial;
+import material.Dielectric;
+import material.Lambertian;
+import material.Material;
+import material.Metal;
+import material.WoodCheckerMaterial;
+import material.Wrapper;
+import math.IndependentSampler;
+import math.Ray;
+import math.Sampler;
+import math.Vec3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of one {@code Material.scatter} call for every material, on a fixed hit with a new sample each time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MaterialBenchmark {
+    @Param({"Lambertian", "Metal", "Dielectric", "Checker", "WoodChecker", "Debug"})
+    public String material;
+
+    private Material mat;
+    private final Ray ray = new Ray();
+    private final HitRecord rec = new HitRecord();
+    private final Wrapper wrapper = new Wrapper();
+    private final Sampler sampler = new IndependentSampler(3);
+    private int sample;
+
+    @Setup
+    public void setup() {
+        switch (material) {
+            case "Lambertian": mat = new Lambertian(new Vec3(0.5, 0.5, 0.5)); break;
+            case "Metal": mat = new Metal(new Vec3(0.7, 0.6, 0.5), 0.1); break;
+            case "Dielectric": mat = new Dielectric(1.5); break;
+            case "Checker": mat = new CheckerMaterial(new Vec3(0.2, 0.3, 0.1), new Vec3(0.9, 0.9, 0.9)); break;
+            case "WoodChecker": mat = new WoodCheckerMaterial(); break;
+            case "Debug": mat = new DebugMaterial(); break;
+            default: throw new IllegalArgumentException("Unknown material " + material);
+        }
+        // A ray hitting the top of a unit sphere at an angle
+        Vec3 dir = new Vec3(0.6, -0.8, 0.1);
+        ray.set(-0.6, 1.8, -0.1, dir.x, dir.y, dir.z);
+        rec.t = 1;
+        rec.p.set(0.3, 1.0, 0.2);
+        rec.setFaceNormal(ray, 0, 1, 0);
+        rec.material = mat;
+    }
+
+    @Benchmark
+    public Ray scatter() {
+        sampler.startPixelSample(sample & 1023, sample >>> 10, 0);
+        sample++;
+        mat.scatter(ray, rec, wrapper, sampler);
+        return wrapper.scatteredRay;
+    }
+}
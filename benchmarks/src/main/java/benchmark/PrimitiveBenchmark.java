@@ -0,0 +1,105 @@
+package benchmark;
+
+import hittable.AABB;
+import hittable.HitRecord;
+import hittable.Plane;
+import hittable.SAHBuilder;
+import hittable.Sphere;
+import hittable.TriangleMesh;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import material.Lambertian;
+import math.Ray;
+import math.Vec3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a single ray/primitive test. The rays start around the primitive and point in random directions,
+ * so roughly half of them hit and the branch predictor can't learn the outcome. Reported per ray.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitiveBenchmark {
+    private static final int RAYS = 4096;
+
+    private Sphere sphere;
+    private Plane plane;
+    private AABB box;
+    private TriangleMesh triangle;
+    private Ray[] rays;
+    private final HitRecord rec = new HitRecord();
+
+    @Setup
+    public void setup() {
+        Lambertian material = new Lambertian(new Vec3(0.5, 0.5, 0.5));
+        sphere = new Sphere(new Vec3(0, 0, 0), 1, material);
+        plane = new Plane(new Vec3(0, 0, 0), new Vec3(0, 1, 0), material);
+        box = new AABB(new Vec3(-1, -1, -1), new Vec3(1, 1, 1));
+        triangle = new TriangleMesh(new float[] {-1, -1, 0, 1, -1, 0, 0, 1, 0}, new int[] {0, 1, 2}, material,
+                new SAHBuilder());
+
+        Random rnd = new Random(7);
+        rays = new Ray[RAYS];
+        for (int i = 0; i < RAYS; i++) {
+            Vec3 origin = Scenes.randomDirection(rnd).scale(3);
+            // Aim near the center, with enough spread that about half of the rays miss
+            Vec3 target = Scenes.randomDirection(rnd).scale(1.4);
+            rays[i] = new Ray(origin, target.sub(origin));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAYS)
+    public int sphereHit() {
+        int hits = 0;
+        for (Ray r : rays) {
+            if (sphere.hit(r, 0.001, Double.POSITIVE_INFINITY, rec)) hits++;
+        }
+        return hits;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAYS)
+    public int planeHit() {
+        int hits = 0;
+        for (Ray r : rays) {
+            if (plane.hit(r, 0.001, Double.POSITIVE_INFINITY, rec)) hits++;
+        }
+        return hits;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAYS)
+    public int triangleHit() {
+        int hits = 0;
+        for (Ray r : rays) {
+            // Straight to the triangle test, without the BVH of the mesh around it
+            if (triangle.hit(0, 1, r, 0.001, Double.POSITIVE_INFINITY, rec, null)) hits++;
+        }
+        return hits;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAYS)
+    public int aabbHit() {
+        int hits = 0;
+        for (Ray r : rays) {
+            if (box.hit(r, 0.001, Double.POSITIVE_INFINITY)) hits++;
+        }
+        return hits;
+    }
+}
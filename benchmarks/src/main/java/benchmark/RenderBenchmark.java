@@ -0,0 +1,106 @@
+package benchmark;
+
+import hittable.AABB;
+import hittable.HitRecord;
+import hittable.Hittable;
+import java.util.concurrent.TimeUnit;
+import main.Camera;
+import main.Framebuffer;
+import main.Renderer;
+import main.SamplerType;
+import math.Ray;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A complete small frame of the {@link main.Main} scene on one thread. Besides frames per second it reports
+ * the number of rays traced per second ("rays"), counting camera rays and every bounce. Run with both samplers to
+ * see what the Sobol sampler costs per frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RenderBenchmark {
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 90;
+    private static final int SAMPLES = 4;
+
+    @Param({"INDEPENDENT", "SOBOL"})
+    public SamplerType sampler;
+
+    private CountingHittable world;
+    private Camera cam;
+    private Renderer renderer;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class RayCounter {
+        public long rays;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rays = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        world = new CountingHittable(Scenes.accelerate(Scenes.world(), "SAH"));
+        cam = Scenes.camera();
+        renderer = new Renderer(WIDTH, HEIGHT, SAMPLES, 50);
+        renderer.setThreads(1);
+        renderer.setSampler(sampler.create(0));
+        renderer.setReportProgress(false);
+    }
+
+    @Benchmark
+    public Framebuffer frame(RayCounter counter) {
+        world.rays = 0;
+        Framebuffer fb = renderer.render(world, cam);
+        counter.rays += world.rays;
+        return fb;
+    }
+
+    /**
+     * Counts the closest-hit and occlusion queries made against the scene. Only used from the single render thread.
+     */
+    static final class CountingHittable implements Hittable {
+        private final Hittable inner;
+        long rays;
+
+        CountingHittable(Hittable inner) {
+            this.inner = inner;
+        }
+
+        @Override
+        public boolean hit(Ray r, double tMin, double tMax, HitRecord rec) {
+            rays++;
+            return inner.hit(r, tMin, tMax, rec);
+        }
+
+        @Override
+        public boolean occluded(Ray r, double tMin, double tMax) {
+            rays++;
+            return inner.occluded(r, tMin, tMax);
+        }
+
+        @Override
+        public AABB boundingBox() {
+            return inner.boundingBox();
+        }
+    }
+}
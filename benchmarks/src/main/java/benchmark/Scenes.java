@@ -0,0 +1,95 @@
+package benchmark;
+
+import hittable.BVHNode;
+import hittable.FlatBVH;
+import hittable.Grid;
+import hittable.Hittable;
+import hittable.HittableList;
+import hittable.LBVHBuilder;
+import hittable.SAHBuilder;
+import hittable.World;
+import java.util.Random;
+import main.Camera;
+import main.Main;
+import math.IndependentSampler;
+import math.Ray;
+import math.Sampler;
+import math.Vec3;
+
+/**
+ * Scene and ray sets shared by the benchmarks. Everything is seeded, so every run measures the same work.
+ */
+final class Scenes {
+    static final double ASPECT_RATIO = 16.0 / 9.0;
+    static final int WORLD_RANGE = 60;
+    static final long WORLD_SEED = 42;
+
+    private Scenes() {}
+
+    /**
+     * @return The sphere field of {@link Main}, always the same layout.
+     */
+    static HittableList world() {
+        return Main.createWorld(WORLD_RANGE, WORLD_SEED);
+    }
+
+    static Camera camera() {
+        return Main.createCamera(ASPECT_RATIO);
+    }
+
+    /**
+     * Builds an acceleration structure over the bounded objects, with the floor plane kept next to it like in Main.
+     * @param structure "BVHNode", "SAH", "LBVH", "Grid" or "HGrid".
+     */
+    static Hittable accelerate(HittableList list, String structure) {
+        Hittable bvh;
+        switch (structure) {
+            case "BVHNode": bvh = new BVHNode(list.bounded()); break;
+            case "SAH": bvh = new FlatBVH(list.bounded(), new SAHBuilder()); break;
+            case "LBVH": bvh = new FlatBVH(list.bounded(), new LBVHBuilder()); break;
+            case "Grid": bvh = new Grid(list.bounded()); break;
+            case "HGrid": bvh = new Grid(list.bounded(), true); break;
+            default: throw new IllegalArgumentException("Unknown structure " + structure);
+        }
+        return new World(bvh, list.unbounded());
+    }
+
+    /**
+     * Primary rays of a width x height image in scanline order, so neighbouring rays take nearly the same path.
+     */
+    static Ray[] coherentRays(int width, int height) {
+        Camera cam = camera();
+        Sampler sampler = new IndependentSampler(1);
+        Ray[] rays = new Ray[width * height];
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                sampler.startPixelSample(i, j, 0);
+                rays[j * width + i] = cam.getRay((i + 0.5) / (width - 1), (j + 0.5) / (height - 1), sampler, new Ray());
+            }
+        }
+        return rays;
+    }
+
+    /**
+     * Rays from random points just above the sphere field in uniformly random directions, like the
+     * secondary rays of a path tracer.
+     */
+    static Ray[] randomRays(int count, long seed) {
+        Random rnd = new Random(seed);
+        Ray[] rays = new Ray[count];
+        for (int k = 0; k < count; k++) {
+            Vec3 origin = new Vec3((rnd.nextDouble() * 2 - 1) * WORLD_RANGE, 0.05 + rnd.nextDouble() * 2,
+                    (rnd.nextDouble() * 2 - 1) * WORLD_RANGE);
+            rays[k] = new Ray(origin, randomDirection(rnd));
+        }
+        return rays;
+    }
+
+    static Vec3 randomDirection(Random rnd) {
+        while (true) {
+            Vec3 d = new Vec3(rnd.nextDouble() * 2 - 1, rnd.nextDouble() * 2 - 1, rnd.nextDouble() * 2 - 1);
+            double len2 = d.lengthSquared();
+            if (len2 > 1e-6 && len2 <= 1) return d.scale(1 / Math.sqrt(len2));
+        }
+    }
+}
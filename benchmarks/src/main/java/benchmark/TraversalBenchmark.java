@@ -0,0 +1,70 @@
+package benchmark;
+
+import hittable.HitRecord;
+import hittable.Hittable;
+import java.util.concurrent.TimeUnit;
+import math.Ray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Closest-hit and occlusion (any-hit) queries against the sphere field of {@link main.Main}, for every acceleration structure,
+ * with camera rays in scanline order (coherent) and with random rays (incoherent). Reported per ray.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TraversalBenchmark {
+    private static final int WIDTH = 256;
+    private static final int HEIGHT = 144;
+    private static final int RAYS = WIDTH * HEIGHT;
+
+    @Param({"BVHNode", "SAH", "LBVH", "Grid", "HGrid"})
+    public String structure;
+
+    @Param({"coherent", "random"})
+    public String rayOrder;
+
+    private Hittable world;
+    private Ray[] rays;
+    private final HitRecord rec = new HitRecord();
+
+    @Setup
+    public void setup() {
+        world = Scenes.accelerate(Scenes.world(), structure);
+        rays = rayOrder.equals("coherent") ? Scenes.coherentRays(WIDTH, HEIGHT) : Scenes.randomRays(RAYS, 11);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAYS)
+    public int closestHit() {
+        int hits = 0;
+        for (Ray r : rays) {
+            if (world.hit(r, 0.001, Double.POSITIVE_INFINITY, rec)) hits++;
+        }
+        return hits;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAYS)
+    public int anyHit() {
+        int hits = 0;
+        for (Ray r : rays) {
+            if (world.occluded(r, 0.001, Double.POSITIVE_INFINITY)) hits++;
+        }
+        return hits;
+    }
+}
@@ -18,8 +18,8 @@ public class AABB {
     /* Method to check if a ray intersects the bounding box. */
     public boolean hit(Ray r, double tMin, double tMax) {
         for (int a = 0; a < 3; a++) {
-            double origin = (a == 0) ? r.getOrigin().x : (a == 1) ? r.getOrigin().y : r.getOrigin().z;
-            double direction = (a == 0) ? r.getDirection().x : (a == 1) ? r.getDirection().y : r.getDirection().z;
+            double origin = (a == 0) ? r.ox : (a == 1) ? r.oy : r.oz;
+            double direction = (a == 0) ? r.dx : (a == 1) ? r.dy : r.dz;
             
             double invD = 1.0 / direction;
             double t0 = ((a == 0 ? min.x : (a == 1 ? min.y : min.z)) - origin) * invD;
@@ -37,6 +37,14 @@ public class AABB {
         return true;
     }
     
+    /* Surface area of the box, used by the Surface Area Heuristic. */
+    public double surfaceArea() {
+        double dx = max.x - min.x;
+        double dy = max.y - min.y;
+        double dz = max.z - min.z;
+        return 2 * (dx * dy + dy * dz + dz * dx);
+    }
+
     /* Static method to create a bounding box that encompasses two given boxes. */
     public static AABB surroundingBox(AABB box0, AABB box1) {
         Vec3 small = new Vec3(
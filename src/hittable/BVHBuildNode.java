@@ -0,0 +1,41 @@
+package hittable;
+
+/**
+ * Temporary node of the tree produced by a {@link BVHBuilder}, before it is compiled into a {@link FlatBVH}.
+ * A leaf covers the primitives at positions [start, start + count) of {@link BVHPrimitives#order};
+ * an interior node has two children and remembers the axis it was split along.
+ */
+public class BVHBuildNode {
+    public final double[] bounds; // minX, minY, minZ, maxX, maxY, maxZ
+    public final BVHBuildNode left;
+    public final BVHBuildNode right;
+    public final int axis;
+    public final int start;
+    public final int count;
+
+    private BVHBuildNode(double[] bounds, BVHBuildNode left, BVHBuildNode right, int axis, int start, int count) {
+        this.bounds = bounds;
+        this.left = left;
+        this.right = right;
+        this.axis = axis;
+        this.start = start;
+        this.count = count;
+    }
+
+    public static BVHBuildNode leaf(double[] bounds, int start, int count) {
+        return new BVHBuildNode(bounds, null, null, -1, start, count);
+    }
+
+    public static BVHBuildNode interior(int axis, BVHBuildNode left, BVHBuildNode right) {
+        double[] b = new double[6];
+        for (int a = 0; a < 3; a++) {
+            b[a] = Math.min(left.bounds[a], right.bounds[a]);
+            b[a + 3] = Math.max(left.bounds[a + 3], right.bounds[a + 3]);
+        }
+        return new BVHBuildNode(b, left, right, axis, -1, 0);
+    }
+
+    public boolean isLeaf() {
+        return left == null;
+    }
+}
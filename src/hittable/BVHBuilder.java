@@ -0,0 +1,16 @@
+package hittable;
+
+/**
+ * Strategy that decides how the primitives of a {@link FlatBVH} are partitioned into a hierarchy.
+ * A builder only sees the bounds and centroids of the primitives. It reorders {@link BVHPrimitives#order} so that
+ * every leaf covers a contiguous range of it and returns the root of the resulting tree, which FlatBVH then
+ * compiles into its flat arrays.
+ */
+public interface BVHBuilder {
+    /**
+     * Builds a hierarchy over all primitives.
+     * @param prims The primitives to partition. Contains at least one primitive.
+     * @return The root node.
+     */
+    BVHBuildNode build(BVHPrimitives prims);
+}
@@ -78,6 +78,62 @@ public class BVHNode implements Hittable {
         return hitLeft || hitRight;
     }
 
+    @Override
+    /**
+     * Same as {@link #hit(Ray, double, double, HitRecord)}, but counts every visited node into stats.
+     */
+    public boolean hit(Ray r, double tMin, double tMax, HitRecord rec, TraversalStats stats) {
+        if (stats != null) stats.nodesVisited++;
+        if (!box.hit(r, tMin, tMax)) return false;
+
+        boolean hitLeft = left.hit(r, tMin, tMax, rec, stats);
+        boolean hitRight = right.hit(r, tMin, hitLeft ? rec.t : tMax, rec, stats);
+
+        return hitLeft || hitRight;
+    }
+
+    @Override
+    /**
+     * Checks if a ray hits any object below this node. The right child is only visited if nothing in the left
+     * one blocks the ray.
+     */
+    public boolean occluded(Ray r, double tMin, double tMax) {
+        if (!box.hit(r, tMin, tMax)) return false;
+        return left.occluded(r, tMin, tMax) || right.occluded(r, tMin, tMax);
+    }
+
+    @Override
+    /**
+     * Same as {@link #occluded(Ray, double, double)}, but counts every visited node into stats.
+     */
+    public boolean occluded(Ray r, double tMin, double tMax, TraversalStats stats) {
+        if (stats != null) stats.nodesVisited++;
+        if (!box.hit(r, tMin, tMax)) return false;
+        return left.occluded(r, tMin, tMax, stats) || right.occluded(r, tMin, tMax, stats);
+    }
+
+    /**
+     * Expected cost of tracing a random ray through this tree according to the Surface Area Heuristic, with the
+     * same cost constants as {@link SAHBuilder} so the result can be compared with {@link FlatBVH#sahCost()}.
+     * @return The SAH cost of the tree.
+     */
+    public double sahCost() {
+        return sahCost(this) / box.surfaceArea();
+    }
+
+    /**
+     * Sums the surface-area-weighted cost of a subtree. Children that are not BVH nodes are primitives,
+     * and a leaf with one primitive tests it twice because left and right point to the same object.
+     */
+    private static double sahCost(BVHNode node) {
+        double area = node.box.surfaceArea();
+        double cost = area * SAHBuilder.TRAVERSAL_COST;
+        for (Hittable child : new Hittable[] { node.left, node.right }) {
+            cost += child instanceof BVHNode ? sahCost((BVHNode) child) : area * SAHBuilder.INTERSECTION_COST;
+        }
+        return cost;
+    }
+
     @Override
     /**
      * Returns the bounding box of the BVH node.
@@ -0,0 +1,106 @@
+package hittable;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Bounds and centroids of the primitives a BVH is built over, stored in flat arrays.
+ * Builders partition the primitives by permuting {@link #order}; the arrays themselves keep their original order.
+ */
+public class BVHPrimitives {
+    public final int count;
+    public final double[] bounds;    // minX, minY, minZ, maxX, maxY, maxZ per primitive
+    public final double[] centroids; // x, y, z per primitive
+    public final int[] order;        // order[i] = index of the primitive at position i
+
+    public BVHPrimitives(List<Hittable> objects) {
+        this.count = objects.size();
+        this.bounds = new double[6 * count];
+        this.centroids = new double[3 * count];
+        this.order = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            AABB box = objects.get(i).boundingBox();
+            bounds[6 * i] = box.min.x;
+            bounds[6 * i + 1] = box.min.y;
+            bounds[6 * i + 2] = box.min.z;
+            bounds[6 * i + 3] = box.max.x;
+            bounds[6 * i + 4] = box.max.y;
+            bounds[6 * i + 5] = box.max.z;
+            centroids[3 * i] = 0.5 * (box.min.x + box.max.x);
+            centroids[3 * i + 1] = 0.5 * (box.min.y + box.max.y);
+            centroids[3 * i + 2] = 0.5 * (box.min.z + box.max.z);
+            order[i] = i;
+        }
+    }
+
+    /**
+     * Collects the bounds of every primitive of a set, in parallel since sets can be very large.
+     * @param set
+     */
+    public BVHPrimitives(PrimitiveSet set) {
+        this.count = set.size();
+        this.bounds = new double[6 * count];
+        this.centroids = new double[3 * count];
+        this.order = new int[count];
+
+        IntStream.range(0, count).parallel().forEach(i -> {
+            set.bounds(i, bounds, 6 * i);
+            centroids[3 * i] = 0.5 * (bounds[6 * i] + bounds[6 * i + 3]);
+            centroids[3 * i + 1] = 0.5 * (bounds[6 * i + 1] + bounds[6 * i + 4]);
+            centroids[3 * i + 2] = 0.5 * (bounds[6 * i + 2] + bounds[6 * i + 5]);
+            order[i] = i;
+        });
+    }
+
+    /**
+     * Computes the bounds of the primitives at positions [start, end) of {@link #order}.
+     * @return minX, minY, minZ, maxX, maxY, maxZ
+     */
+    public double[] bounds(int start, int end) {
+        double[] b = emptyBounds();
+        for (int i = start; i < end; i++) {
+            int p = 6 * order[i];
+            for (int a = 0; a < 3; a++) {
+                b[a] = Math.min(b[a], bounds[p + a]);
+                b[a + 3] = Math.max(b[a + 3], bounds[p + a + 3]);
+            }
+        }
+        return b;
+    }
+
+    /**
+     * Computes the bounds of the centroids of the primitives at positions [start, end) of {@link #order}.
+     * @return minX, minY, minZ, maxX, maxY, maxZ
+     */
+    public double[] centroidBounds(int start, int end) {
+        double[] b = emptyBounds();
+        for (int i = start; i < end; i++) {
+            int p = 3 * order[i];
+            for (int a = 0; a < 3; a++) {
+                b[a] = Math.min(b[a], centroids[p + a]);
+                b[a + 3] = Math.max(b[a + 3], centroids[p + a]);
+            }
+        }
+        return b;
+    }
+
+    /**
+     * @return Inverted bounds that any point or box can be merged into.
+     */
+    public static double[] emptyBounds() {
+        return new double[] { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                              Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+    }
+
+    /**
+     * Surface area of bounds stored as minX, minY, minZ, maxX, maxY, maxZ starting at offset.
+     */
+    public static double surfaceArea(double[] b, int offset) {
+        double dx = b[offset + 3] - b[offset];
+        double dy = b[offset + 4] - b[offset + 1];
+        double dz = b[offset + 5] - b[offset + 2];
+        if (dx < 0 || dy < 0 || dz < 0) return 0;
+        return 2 * (dx * dy + dy * dz + dz * dx);
+    }
+}
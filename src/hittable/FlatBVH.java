@@ -0,0 +1,332 @@
+package hittable;
+
+import java.util.List;
+import math.Ray;
+import math.Vec3;
+
+/**
+ * Compiled Bounding Volume Hierarchy stored in flat primitive arrays instead of a tree of objects.
+ * Nodes are laid out depth-first, so the first child of an interior node always directly follows its parent
+ * and only the index of the second child has to be stored:
+ * <pre>
+ *   bounds[6 * i .. 6 * i + 5] = minX, minY, minZ, maxX, maxY, maxZ
+ *   nodes[2 * i]               = leaf: index of the first primitive, interior: index of the second child
+ *   nodes[2 * i + 1]           = leaf: number of primitives (&gt; 0), interior: -(split axis + 1)
+ * </pre>
+ * How the primitives are partitioned is decided by a {@link BVHBuilder}.
+ * Traversal is iterative with a fixed-size int stack and visits the nearer child first; occlusion queries
+ * skip the ordering, since any hit ends them.
+ * The primitives are either objects of a {@link HittableList} (for example {@link Instance}s, making this the
+ * top level of a two-level hierarchy) or the elements of a {@link PrimitiveSet},
+ * like the triangles of a mesh, which are then tested a leaf at a time.
+ */
+public class FlatBVH implements Hittable {
+    // 1 + 2 * gamma(3): scales a slab's far distance past the rounding error of both slab distances
+    private static final double ROUND_UP = 1 + 2 * (3 * 0x1.0p-53 / (1 - 3 * 0x1.0p-53));
+
+    private final double[] bounds;
+    private final int[] nodes;
+    private final Hittable[] primitives; // null when built over a PrimitiveSet
+    private final PrimitiveSet set;
+    private final int stackSize;
+    // Traversal stack per thread, so tracing a ray does not allocate
+    private final ThreadLocal<int[]> stacks;
+
+    /**
+     * Builds the hierarchy over all objects of the list with a {@link MedianSplitBuilder}.
+     * @param list The objects to build the BVH from.
+     */
+    public FlatBVH(HittableList list) {
+        this(list, new MedianSplitBuilder());
+    }
+
+    /**
+     * Builds the hierarchy over all objects of the list. The list itself is not modified.
+     * @param list The objects to build the BVH from.
+     * @param builder Decides how the objects are partitioned.
+     */
+    public FlatBVH(HittableList list, BVHBuilder builder) {
+        this(new BVHPrimitives(list.objects), builder, list.objects, null);
+    }
+
+    /**
+     * Builds the hierarchy over every primitive of a set. Afterwards the set is reordered to match the leaves
+     * (see {@link PrimitiveSet#reorder}), so it must not be shared with another BVH.
+     * @param set The primitives to build the BVH from.
+     * @param builder Decides how the primitives are partitioned.
+     */
+    public FlatBVH(PrimitiveSet set, BVHBuilder builder) {
+        this(new BVHPrimitives(set), builder, null, set);
+    }
+
+    private FlatBVH(BVHPrimitives prims, BVHBuilder builder, List<Hittable> objects, PrimitiveSet set) {
+        int n = prims.count;
+        BVHBuildNode root = n > 0 ? builder.build(prims) : null;
+
+        int nodeCount = root != null ? countNodes(root) : 0;
+        this.bounds = new double[6 * nodeCount];
+        this.nodes = new int[2 * nodeCount];
+        this.stackSize = root != null ? depth(root) : 0;
+        int size = stackSize;
+        this.stacks = ThreadLocal.withInitial(() -> new int[size]);
+        if (root != null) {
+            flatten(root, new int[1]);
+        }
+
+        this.set = set;
+        if (set != null) {
+            this.primitives = null;
+            set.reorder(prims.order);
+        } else {
+            this.primitives = new Hittable[n];
+            for (int i = 0; i < n; i++) {
+                primitives[i] = objects.get(prims.order[i]);
+            }
+        }
+    }
+
+    private static int countNodes(BVHBuildNode node) {
+        return node.isLeaf() ? 1 : 1 + countNodes(node.left) + countNodes(node.right);
+    }
+
+    private static int depth(BVHBuildNode node) {
+        return node.isLeaf() ? 1 : 1 + Math.max(depth(node.left), depth(node.right));
+    }
+
+    /**
+     * Writes the node and its subtree into the arrays in depth-first order.
+     * @param next Index of the next free node, advanced while writing.
+     * @return The index the node was written to.
+     */
+    private int flatten(BVHBuildNode node, int[] next) {
+        int index = next[0]++;
+        System.arraycopy(node.bounds, 0, bounds, 6 * index, 6);
+        if (node.isLeaf()) {
+            nodes[2 * index] = node.start;
+            nodes[2 * index + 1] = node.count;
+        } else {
+            flatten(node.left, next);
+            nodes[2 * index] = flatten(node.right, next);
+            nodes[2 * index + 1] = -(node.axis + 1);
+        }
+        return index;
+    }
+
+    @Override
+    /**
+     * Finds the closest hit by walking the node arrays with an explicit stack.
+     * @param r The ray to test for intersection.
+     * @param tMin Minimum t value for valid intersections.
+     * @param tMax Maximum t value for valid intersections.
+     * @param rec HitRecord to store intersection details if a hit occurs.
+     * @return True if the ray hits an object, false otherwise.
+     */
+    public boolean hit(Ray r, double tMin, double tMax, HitRecord rec) {
+        return hit(r, tMin, tMax, rec, null);
+    }
+
+    @Override
+    /**
+     * Finds the closest hit and counts every visited node and every primitive test into stats (if not null).
+     */
+    public boolean hit(Ray r, double tMin, double tMax, HitRecord rec, TraversalStats stats) {
+        if (nodes.length == 0) return false;
+
+        double ox = r.ox, oy = r.oy, oz = r.oz;
+        double invX = 1.0 / r.dx, invY = 1.0 / r.dy, invZ = 1.0 / r.dz;
+        boolean negX = invX < 0, negY = invY < 0, negZ = invZ < 0;
+
+        int[] stack = stacks.get();
+        int stackPtr = 0;
+        int node = 0;
+        boolean hitAnything = false;
+        double closestSoFar = tMax;
+
+        while (true) {
+            if (stats != null) stats.nodesVisited++;
+            if (hitBox(node, ox, oy, oz, invX, invY, invZ, negX, negY, negZ, tMin, closestSoFar)) {
+                int first = nodes[2 * node];
+                int meta = nodes[2 * node + 1];
+                if (meta > 0 && set != null) {
+                    if (set.hit(first, meta, r, tMin, closestSoFar, rec, stats)) {
+                        hitAnything = true;
+                        closestSoFar = rec.t;
+                    }
+                } else if (meta > 0) {
+                    for (int i = first; i < first + meta; i++) {
+                        if (primitives[i].hit(r, tMin, closestSoFar, rec, stats)) {
+                            hitAnything = true;
+                            closestSoFar = rec.t;
+                        }
+                    }
+                } else {
+                    // Descend into the child on the side the ray comes from, postpone the other one
+                    int axis = -meta - 1;
+                    boolean negative = axis == 0 ? negX : (axis == 1 ? negY : negZ);
+                    if (negative) {
+                        stack[stackPtr++] = node + 1;
+                        node = first;
+                    } else {
+                        stack[stackPtr++] = first;
+                        node = node + 1;
+                    }
+                    continue;
+                }
+            }
+            if (stackPtr == 0) break;
+            node = stack[--stackPtr];
+        }
+        return hitAnything;
+    }
+
+    @Override
+    public boolean occluded(Ray r, double tMin, double tMax) {
+        return occluded(r, tMin, tMax, null);
+    }
+
+    @Override
+    /**
+     * Walks the node arrays until the first primitive that is hit. The children are visited in storage order,
+     * which keeps the node just after the current one next in memory; ordering them by the ray direction only
+     * pays off when a closer hit can cut the search short.
+     */
+    public boolean occluded(Ray r, double tMin, double tMax, TraversalStats stats) {
+        if (nodes.length == 0) return false;
+
+        double ox = r.ox, oy = r.oy, oz = r.oz;
+        double invX = 1.0 / r.dx, invY = 1.0 / r.dy, invZ = 1.0 / r.dz;
+        boolean negX = invX < 0, negY = invY < 0, negZ = invZ < 0;
+
+        int[] stack = stacks.get();
+        int stackPtr = 0;
+        int node = 0;
+
+        while (true) {
+            if (stats != null) stats.nodesVisited++;
+            if (hitBox(node, ox, oy, oz, invX, invY, invZ, negX, negY, negZ, tMin, tMax)) {
+                int first = nodes[2 * node];
+                int meta = nodes[2 * node + 1];
+                if (meta > 0 && set != null) {
+                    if (set.occluded(first, meta, r, tMin, tMax, stats)) return true;
+                } else if (meta > 0) {
+                    for (int i = first; i < first + meta; i++) {
+                        if (primitives[i].occluded(r, tMin, tMax, stats)) return true;
+                    }
+                } else {
+                    stack[stackPtr++] = first;
+                    node = node + 1;
+                    continue;
+                }
+            }
+            if (stackPtr == 0) return false;
+            node = stack[--stackPtr];
+        }
+    }
+
+    /**
+     * Slab test of a ray against the bounds of a node. Touching a box counts as hitting it, and the far distance of
+     * every slab is rounded up by the largest error of its computation (Ize, "Robust BVH Ray Traversal", JCGT 2013),
+     * so a ray through a shared vertex or edge enters every leaf whose triangles it can hit.
+     */
+    private boolean hitBox(int node, double ox, double oy, double oz, double invX, double invY, double invZ,
+                           boolean negX, boolean negY, boolean negZ, double tMin, double tMax) {
+        int b = 6 * node;
+        double t0 = ((negX ? bounds[b + 3] : bounds[b]) - ox) * invX;
+        double t1 = ((negX ? bounds[b] : bounds[b + 3]) - ox) * invX * ROUND_UP;
+        if (t0 > tMin) tMin = t0;
+        if (t1 < tMax) tMax = t1;
+        if (tMax < tMin) return false;
+
+        t0 = ((negY ? bounds[b + 4] : bounds[b + 1]) - oy) * invY;
+        t1 = ((negY ? bounds[b + 1] : bounds[b + 4]) - oy) * invY * ROUND_UP;
+        if (t0 > tMin) tMin = t0;
+        if (t1 < tMax) tMax = t1;
+        if (tMax < tMin) return false;
+
+        t0 = ((negZ ? bounds[b + 5] : bounds[b + 2]) - oz) * invZ;
+        t1 = ((negZ ? bounds[b + 2] : bounds[b + 5]) - oz) * invZ * ROUND_UP;
+        if (t0 > tMin) tMin = t0;
+        if (t1 < tMax) tMax = t1;
+        return tMax >= tMin;
+    }
+
+    @Override
+    /**
+     * Returns the bounds of the root node.
+     * @return The AABB of the whole hierarchy, or null if it is empty.
+     */
+    public AABB boundingBox() {
+        if (nodes.length == 0) return null;
+        return new AABB(new Vec3(bounds[0], bounds[1], bounds[2]), new Vec3(bounds[3], bounds[4], bounds[5]));
+    }
+
+    /**
+     * Recomputes the bounds of every node from the current bounds of the primitives, keeping the tree as it is.
+     * Much cheaper than a rebuild after primitives have moved (like an {@link Instance} that got a new
+     * transform), but the tree gets worse the further they move; compare {@link #sahCost()} to decide when to
+     * rebuild. Must not run while rays are traced.
+     */
+    public void refit() {
+        double[] box = new double[6];
+        // Children are always stored after their parent, so going backwards visits them first
+        for (int node = nodeCount() - 1; node >= 0; node--) {
+            int b = 6 * node;
+            int first = nodes[2 * node];
+            int meta = nodes[2 * node + 1];
+            if (meta > 0) {
+                System.arraycopy(BVHPrimitives.emptyBounds(), 0, bounds, b, 6);
+                for (int i = first; i < first + meta; i++) {
+                    if (set != null) {
+                        set.bounds(i, box, 0);
+                    } else {
+                        AABB a = primitives[i].boundingBox();
+                        box[0] = a.min.x;
+                        box[1] = a.min.y;
+                        box[2] = a.min.z;
+                        box[3] = a.max.x;
+                        box[4] = a.max.y;
+                        box[5] = a.max.z;
+                    }
+                    merge(box, 0, b);
+                }
+            } else {
+                System.arraycopy(bounds, 6 * (node + 1), bounds, b, 6);
+                merge(bounds, 6 * first, b);
+            }
+        }
+    }
+
+    /**
+     * Grows the node bounds at offset b to include the bounds at offset o of source.
+     */
+    private void merge(double[] source, int o, int b) {
+        for (int a = 0; a < 3; a++) {
+            bounds[b + a] = Math.min(bounds[b + a], source[o + a]);
+            bounds[b + a + 3] = Math.max(bounds[b + a + 3], source[o + a + 3]);
+        }
+    }
+
+    /**
+     * @return The number of nodes in the hierarchy.
+     */
+    public int nodeCount() {
+        return nodes.length / 2;
+    }
+
+    /**
+     * Expected cost of tracing a random ray through the hierarchy according to the Surface Area Heuristic,
+     * using the cost constants of {@link SAHBuilder}. Lower is better; useful to compare builders on the same scene.
+     * @return The SAH cost, or 0 for an empty hierarchy.
+     */
+    public double sahCost() {
+        if (nodes.length == 0) return 0;
+        double rootArea = BVHPrimitives.surfaceArea(bounds, 0);
+        double cost = 0;
+        for (int i = 0; i < nodeCount(); i++) {
+            double area = BVHPrimitives.surfaceArea(bounds, 6 * i) / rootArea;
+            int meta = nodes[2 * i + 1];
+            cost += meta > 0 ? area * meta * SAHBuilder.INTERSECTION_COST : area * SAHBuilder.TRAVERSAL_COST;
+        }
+        return cost;
+    }
+}
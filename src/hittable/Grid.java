@@ -0,0 +1,322 @@
+package hittable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import math.Ray;
+import math.Vec3;
+
+/**
+ * Uniform grid over the bounds of a set of objects, an alternative to a BVH that is hard to beat for evenly
+ * spread objects of similar size, like the sphere field of the default scene. Every cell lists the objects whose
+ * bounding box overlaps it, and rays walk the cells they pass in order with a 3D-DDA (Amanatides and Woo,
+ * "A Fast Voxel Traversal Algorithm for Ray Tracing", 1987), so the walk stops at the first cell with a hit.
+ * <p>
+ * The resolution follows the object density: about {@link #DENSITY} cells per object, with cells as close to
+ * cubes as the bounds allow. In the hierarchical variant, cells that still hold more than
+ * {@link #MAX_CELL_OBJECTS} objects (where objects cluster) get a grid of their own, one level deep.
+ * <p>
+ * The cell lists are stored compressed, like the nodes of {@link FlatBVH}:
+ * <pre>
+ *   cellObjects[cellStart[c] .. cellStart[c + 1] - 1] = indices into objects of the objects in cell c
+ * </pre>
+ * An object that overlaps several cells is only tested once per ray, see the mailboxes below.
+ */
+public class Grid implements Hittable {
+    /** Cells per object. */
+    public static final double DENSITY = 4;
+    /** Objects in a cell above which the hierarchical variant splits the cell into a grid of its own. */
+    public static final int MAX_CELL_OBJECTS = 16;
+    private static final int MAX_RESOLUTION = 512;
+
+    private final double[] bounds = new double[6];
+    private final int nx, ny, nz;
+    private final double cellX, cellY, cellZ;
+    private final int[] cellStart;
+    private final int[] cellObjects;
+    private final Hittable[] objects; // The objects, followed by the grids of split cells
+    private final int childGrids;
+    // Mailbox per thread and object: the number of the last ray that tested the object
+    private final ThreadLocal<Mailboxes> mailboxes;
+
+    private static final class Mailboxes {
+        final int[] lastRay;
+        int ray;
+
+        Mailboxes(int size) {
+            lastRay = new int[size];
+        }
+    }
+
+    /**
+     * Builds a uniform grid over all objects of the list.
+     * @param list The objects, which must all be bounded.
+     */
+    public Grid(HittableList list) {
+        this(list.objects, false);
+    }
+
+    /**
+     * Builds a grid over all objects of the list.
+     * @param list The objects, which must all be bounded.
+     * @param hierarchical Split crowded cells into grids of their own.
+     */
+    public Grid(HittableList list, boolean hierarchical) {
+        this(list.objects, hierarchical);
+    }
+
+    private Grid(List<Hittable> list, boolean hierarchical) {
+        int n = list.size();
+        double[] boxes = new double[6 * n];
+        System.arraycopy(BVHPrimitives.emptyBounds(), 0, bounds, 0, 6);
+        for (int i = 0; i < n; i++) {
+            AABB box = list.get(i).boundingBox();
+            boxes[6 * i] = box.min.x;
+            boxes[6 * i + 1] = box.min.y;
+            boxes[6 * i + 2] = box.min.z;
+            boxes[6 * i + 3] = box.max.x;
+            boxes[6 * i + 4] = box.max.y;
+            boxes[6 * i + 5] = box.max.z;
+            for (int a = 0; a < 3; a++) {
+                bounds[a] = Math.min(bounds[a], boxes[6 * i + a]);
+                bounds[a + 3] = Math.max(bounds[a + 3], boxes[6 * i + a + 3]);
+            }
+        }
+        if (n == 0) Arrays.fill(bounds, 0);
+
+        // Cube-shaped cells with DENSITY cells per object. Flat sides get a minimum thickness so the
+        // volume doesn't vanish for a scene that lies in a plane
+        double ex = bounds[3] - bounds[0], ey = bounds[4] - bounds[1], ez = bounds[5] - bounds[2];
+        double minExtent = 1e-3 * Math.max(ex, Math.max(ey, ez)) + 1e-9;
+        ex = Math.max(ex, minExtent);
+        ey = Math.max(ey, minExtent);
+        ez = Math.max(ez, minExtent);
+        double cellSize = Math.cbrt(ex * ey * ez / (DENSITY * Math.max(1, n)));
+        this.nx = resolution(ex, cellSize);
+        this.ny = resolution(ey, cellSize);
+        this.nz = resolution(ez, cellSize);
+        this.cellX = ex / nx;
+        this.cellY = ey / ny;
+        this.cellZ = ez / nz;
+
+        // Two passes over the objects: count the objects per cell, then fill the lists
+        int cells = nx * ny * nz;
+        int[] start = new int[cells + 1];
+        int[] range = new int[6];
+        for (int i = 0; i < n; i++) {
+            cellRange(boxes, 6 * i, range);
+            for (int z = range[2]; z <= range[5]; z++) {
+                for (int y = range[1]; y <= range[4]; y++) {
+                    for (int x = range[0]; x <= range[3]; x++) {
+                        start[cell(x, y, z) + 1]++;
+                    }
+                }
+            }
+        }
+        for (int c = 0; c < cells; c++) start[c + 1] += start[c];
+        int[] lists = new int[start[cells]];
+        int[] fill = Arrays.copyOf(start, cells);
+        for (int i = 0; i < n; i++) {
+            cellRange(boxes, 6 * i, range);
+            for (int z = range[2]; z <= range[5]; z++) {
+                for (int y = range[1]; y <= range[4]; y++) {
+                    for (int x = range[0]; x <= range[3]; x++) {
+                        lists[fill[cell(x, y, z)]++] = i;
+                    }
+                }
+            }
+        }
+
+        Hittable[] all = list.toArray(new Hittable[0]);
+        int splitCells = 0;
+        if (hierarchical) {
+            // Crowded cells get a grid of their own, which takes the place of their object list
+            int children = 0;
+            int[] compact = new int[lists.length];
+            int[] compactStart = new int[cells + 1];
+            ArrayList<Hittable> grids = new ArrayList<>();
+            for (int c = 0; c < cells; c++) {
+                int count = start[c + 1] - start[c];
+                compactStart[c] = children;
+                if (count > MAX_CELL_OBJECTS && count < n) {
+                    HittableList cellList = new HittableList();
+                    for (int k = start[c]; k < start[c + 1]; k++) cellList.add(all[lists[k]]);
+                    compact[children++] = n + grids.size();
+                    grids.add(new Grid(cellList.objects, false));
+                } else {
+                    System.arraycopy(lists, start[c], compact, children, count);
+                    children += count;
+                }
+            }
+            compactStart[cells] = children;
+            all = Arrays.copyOf(all, n + grids.size());
+            for (int g = 0; g < grids.size(); g++) all[n + g] = grids.get(g);
+            start = compactStart;
+            lists = Arrays.copyOf(compact, children);
+            splitCells = grids.size();
+        }
+        this.childGrids = splitCells;
+        this.cellStart = start;
+        this.cellObjects = lists;
+        this.objects = all;
+        int size = all.length;
+        this.mailboxes = ThreadLocal.withInitial(() -> new Mailboxes(size));
+    }
+
+    private static int resolution(double extent, double cellSize) {
+        return (int) Math.max(1, Math.min(MAX_RESOLUTION, Math.round(extent / cellSize)));
+    }
+
+    private int cell(int x, int y, int z) {
+        return (z * ny + y) * nx + x;
+    }
+
+    /**
+     * Finds the cells a box overlaps.
+     * @param range Receives the first cell x, y, z and the last cell x, y, z (inclusive).
+     */
+    private void cellRange(double[] boxes, int o, int[] range) {
+        range[0] = clamp((int) ((boxes[o] - bounds[0]) / cellX), nx);
+        range[1] = clamp((int) ((boxes[o + 1] - bounds[1]) / cellY), ny);
+        range[2] = clamp((int) ((boxes[o + 2] - bounds[2]) / cellZ), nz);
+        range[3] = clamp((int) ((boxes[o + 3] - bounds[0]) / cellX), nx);
+        range[4] = clamp((int) ((boxes[o + 4] - bounds[1]) / cellY), ny);
+        range[5] = clamp((int) ((boxes[o + 5] - bounds[2]) / cellZ), nz);
+    }
+
+    private static int clamp(int i, int n) {
+        return i < 0 ? 0 : (i >= n ? n - 1 : i);
+    }
+
+    @Override
+    public boolean hit(Ray r, double tMin, double tMax, HitRecord rec) {
+        return hit(r, tMin, tMax, rec, null);
+    }
+
+    @Override
+    /**
+     * Walks the cells along the ray and stops at the first cell that contains the closest hit so far.
+     * Every visited cell counts as a node in stats.
+     */
+    public boolean hit(Ray r, double tMin, double tMax, HitRecord rec, TraversalStats stats) {
+        return walk(r, tMin, tMax, rec, stats);
+    }
+
+    @Override
+    public boolean occluded(Ray r, double tMin, double tMax) {
+        return walk(r, tMin, tMax, null, null);
+    }
+
+    @Override
+    /**
+     * Walks the cells along the ray and stops at the first object that is hit.
+     */
+    public boolean occluded(Ray r, double tMin, double tMax, TraversalStats stats) {
+        return walk(r, tMin, tMax, null, stats);
+    }
+
+    /**
+     * 3D-DDA through the cells the ray passes.
+     * @param rec Filled with the closest hit, or null to return at the first hit without filling anything.
+     */
+    private boolean walk(Ray r, double tMin, double tMax, HitRecord rec, TraversalStats stats) {
+        if (objects.length == 0) return false;
+
+        // Clip the ray to the grid bounds
+        double invX = 1.0 / r.dx, invY = 1.0 / r.dy, invZ = 1.0 / r.dz;
+        double t0 = tMin, t1 = tMax;
+        double tx0 = (bounds[0] - r.ox) * invX, tx1 = (bounds[0] + nx * cellX - r.ox) * invX;
+        double ty0 = (bounds[1] - r.oy) * invY, ty1 = (bounds[1] + ny * cellY - r.oy) * invY;
+        double tz0 = (bounds[2] - r.oz) * invZ, tz1 = (bounds[2] + nz * cellZ - r.oz) * invZ;
+        t0 = Math.max(t0, Math.max(Math.min(tx0, tx1), Math.max(Math.min(ty0, ty1), Math.min(tz0, tz1))));
+        t1 = Math.min(t1, Math.min(Math.max(tx0, tx1), Math.min(Math.max(ty0, ty1), Math.max(tz0, tz1))));
+        if (t0 > t1) return false;
+
+        // Cell of the entry point, and for each axis the step direction, the t of the next cell boundary and
+        // the t it takes to cross a whole cell
+        int x = clamp((int) ((r.ox + t0 * r.dx - bounds[0]) / cellX), nx);
+        int y = clamp((int) ((r.oy + t0 * r.dy - bounds[1]) / cellY), ny);
+        int z = clamp((int) ((r.oz + t0 * r.dz - bounds[2]) / cellZ), nz);
+        int stepX = r.dx < 0 ? -1 : 1, stepY = r.dy < 0 ? -1 : 1, stepZ = r.dz < 0 ? -1 : 1;
+        double deltaX = Math.abs(cellX * invX), deltaY = Math.abs(cellY * invY), deltaZ = Math.abs(cellZ * invZ);
+        double nextX = (bounds[0] + (x + (stepX > 0 ? 1 : 0)) * cellX - r.ox) * invX;
+        double nextY = (bounds[1] + (y + (stepY > 0 ? 1 : 0)) * cellY - r.oy) * invY;
+        double nextZ = (bounds[2] + (z + (stepZ > 0 ? 1 : 0)) * cellZ - r.oz) * invZ;
+        // A zero direction component gives NaN here (0 * infinity); such an axis is never stepped
+        if (r.dx == 0) nextX = Double.POSITIVE_INFINITY;
+        if (r.dy == 0) nextY = Double.POSITIVE_INFINITY;
+        if (r.dz == 0) nextZ = Double.POSITIVE_INFINITY;
+
+        Mailboxes mail = mailboxes.get();
+        if (mail.ray == Integer.MAX_VALUE) {
+            // Start over before the ray numbers wrap around
+            Arrays.fill(mail.lastRay, 0);
+            mail.ray = 0;
+        }
+        int ray = ++mail.ray;
+        int[] lastRay = mail.lastRay;
+        boolean hitAnything = false;
+        double closestSoFar = tMax;
+
+        while (true) {
+            if (stats != null) stats.nodesVisited++;
+            int c = cell(x, y, z);
+            for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+                int i = cellObjects[k];
+                if (lastRay[i] == ray) continue;
+                lastRay[i] = ray;
+                if (rec == null) {
+                    if (objects[i].occluded(r, tMin, tMax, stats)) return true;
+                } else if (objects[i].hit(r, tMin, closestSoFar, rec, stats)) {
+                    hitAnything = true;
+                    closestSoFar = rec.t;
+                }
+            }
+
+            // Step into the neighbour across the nearest cell boundary, unless the closest hit comes first
+            double exit = Math.min(nextX, Math.min(nextY, nextZ));
+            if (closestSoFar <= exit || exit > t1) break;
+            if (nextX == exit) {
+                x += stepX;
+                if (x < 0 || x >= nx) break;
+                nextX += deltaX;
+            } else if (nextY == exit) {
+                y += stepY;
+                if (y < 0 || y >= ny) break;
+                nextY += deltaY;
+            } else {
+                z += stepZ;
+                if (z < 0 || z >= nz) break;
+                nextZ += deltaZ;
+            }
+        }
+        return hitAnything;
+    }
+
+    @Override
+    public AABB boundingBox() {
+        if (objects.length == 0) return null;
+        return new AABB(new Vec3(bounds[0], bounds[1], bounds[2]), new Vec3(bounds[3], bounds[4], bounds[5]));
+    }
+
+    /**
+     * @return The number of cells along x, y and z.
+     */
+    public int[] resolution() {
+        return new int[] {nx, ny, nz};
+    }
+
+    /**
+     * @return The number of split cells, each of which has a grid of its own.
+     */
+    public int childGridCount() {
+        return childGrids;
+    }
+
+    /**
+     * @return The average number of objects listed per cell (split cells count as one).
+     */
+    public double objectsPerCell() {
+        return (double) cellObjects.length / (nx * ny * nz);
+    }
+}
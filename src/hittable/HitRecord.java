@@ -1,15 +1,16 @@
 package hittable;
 
 import material.Material;
+import math.MutableVec3;
 import math.Ray;
-import math.Vec3;
 
 /**
  * A class to store information about a ray-object intersection.
+ * The point and normal are overwritten in place, so one record can be reused for every ray a thread traces.
  */
 public class HitRecord {
-    public Vec3 p;
-    public Vec3 normal;
+    public final MutableVec3 p = new MutableVec3();
+    public final MutableVec3 normal = new MutableVec3();
     public double t;
     public Material material;
     public boolean frontFace;
@@ -22,11 +23,29 @@ public class HitRecord {
     /**
      * Set the face normal and determine if the hit was on the front face.
      * @param r The ray that hit the object.
-     * @param outwardNormal The normal vector pointing outward from the surface.
+     * @param nx X component of the normal vector pointing outward from the surface.
+     * @param ny Y component of the outward normal.
+     * @param nz Z component of the outward normal.
      */
-    public void setFaceNormal(Ray r, Vec3 outwardNormal) {
-        frontFace = r.getDirection().dot(outwardNormal) < 0;
+    public void setFaceNormal(Ray r, double nx, double ny, double nz) {
+        frontFace = r.dx * nx + r.dy * ny + r.dz * nz < 0;
         
-        normal = frontFace ? outwardNormal : outwardNormal.scale(-1);
+        if (frontFace) {
+            normal.set(nx, ny, nz);
+        } else {
+            normal.set(-nx, -ny, -nz);
+        }
     }
-}
\ No newline at end of file
+
+    /**
+     * Copies all fields of another record into this one.
+     * @param other
+     */
+    public void set(HitRecord other) {
+        p.set(other.p);
+        normal.set(other.normal);
+        t = other.t;
+        material = other.material;
+        frontFace = other.frontFace;
+    }
+}
@@ -14,10 +14,52 @@ public interface Hittable {
      * @return true if the ray hits the object, false otherwise.
      */
     boolean hit(Ray r, double tMin, double tMax, HitRecord rec);
+
+    /**
+     * Same as {@link #hit(Ray, double, double, HitRecord)}, but also counts the work done for the ray.
+     * Acceleration structures override this to count node visits; a plain primitive counts as one test.
+     * @param stats Counters to add to, or null to skip counting.
+     */
+    default boolean hit(Ray r, double tMin, double tMax, HitRecord rec, TraversalStats stats) {
+        if (stats != null) stats.primitiveTests++;
+        return hit(r, tMin, tMax, rec);
+    }
+
+    /**
+     * Checks if a ray hits the object anywhere within a certain range, for shadow and visibility rays that only
+     * need a yes or no. Implementations return at the first hit they find instead of searching for the closest
+     * one, and never fill a hit record. The default falls back to {@link #hit} with a new record, so objects
+     * that are tested often should override it.
+     * @param r The ray to test.
+     * @param tMin Minimum t value.
+     * @param tMax Maximum t value, e.g. the distance to a light.
+     * @return true if anything blocks the ray between tMin and tMax.
+     */
+    default boolean occluded(Ray r, double tMin, double tMax) {
+        return hit(r, tMin, tMax, new HitRecord());
+    }
+
+    /**
+     * Same as {@link #occluded(Ray, double, double)}, but also counts the work done for the ray.
+     * @param stats Counters to add to, or null to skip counting.
+     */
+    default boolean occluded(Ray r, double tMin, double tMax, TraversalStats stats) {
+        if (stats != null) stats.primitiveTests++;
+        return occluded(r, tMin, tMax);
+    }
     
     /**
      * Computes the axis-aligned bounding box (AABB) for the object.
      * @return The AABB of the object.
      */
     AABB boundingBox();
+
+    /**
+     * Tells whether the object has a finite extent. Unbounded objects (like an infinite plane) only have a
+     * placeholder bounding box and should be kept out of acceleration structures, see {@link World}.
+     * @return true if {@link #boundingBox()} tightly encloses the object.
+     */
+    default boolean isBounded() {
+        return true;
+    }
 }
\ No newline at end of file
@@ -20,6 +20,30 @@ public class HittableList implements Hittable {
         objects.add(object);
     }
 
+    /**
+     * Returns a new list with the objects that have a finite bounding box, for building acceleration structures.
+     * @return The bounded objects.
+     */
+    public HittableList bounded() {
+        HittableList list = new HittableList();
+        for (Hittable object : objects) {
+            if (object.isBounded()) list.add(object);
+        }
+        return list;
+    }
+
+    /**
+     * Returns a new list with the unbounded objects (like infinite planes), which are tested directly instead.
+     * @return The unbounded objects.
+     */
+    public HittableList unbounded() {
+        HittableList list = new HittableList();
+        for (Hittable object : objects) {
+            if (!object.isBounded()) list.add(object);
+        }
+        return list;
+    }
+
     @Override
     /**
      * Checks if the ray hits any object in the list. It iterates through all objects and keeps track of the closest hit.
@@ -30,30 +54,32 @@ public class HittableList implements Hittable {
      * @return true if the ray hits any object, false otherwise.
      */
     public boolean hit(Ray r, double tMin, double tMax, HitRecord rec) {
-        HitRecord tempRec = new HitRecord();
         boolean hitAnything = false;
         double closestSoFar = tMax;
 
+        // Objects only write to the record when they report a hit closer than closestSoFar,
+        // so the record can be filled directly without a temporary copy
         for (Hittable object : objects) {
-            if (object.hit(r, tMin, closestSoFar, tempRec)) {
+            if (object.hit(r, tMin, closestSoFar, rec)) {
                 hitAnything = true;
-                closestSoFar = tempRec.t;
-                
-                // KOPIERA ALL DATA:
-                rec.t = tempRec.t;
-                rec.p = tempRec.p;
-                rec.normal = tempRec.normal;
-                rec.material = tempRec.material;
-                
-                // --- HÄR SAKNADES DET! ---
-                // Utan denna rad tror Main alltid att frontFace är false (RÖD)
-                rec.frontFace = tempRec.frontFace; 
+                closestSoFar = rec.t;
             }
         }
 
         return hitAnything;
     }
 
+    @Override
+    /**
+     * Checks if the ray hits any object in the list, stopping at the first one that it hits.
+     */
+    public boolean occluded(Ray r, double tMin, double tMax) {
+        for (Hittable object : objects) {
+            if (object.occluded(r, tMin, tMax)) return true;
+        }
+        return false;
+    }
+
     @Override
     /**
      * Computes the bounding box that contains all objects in the list. It iterates through all objects and combines their bounding boxes.
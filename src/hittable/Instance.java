@@ -0,0 +1,129 @@
+package hittable;
+
+import java.util.Arrays;
+import material.Material;
+import math.Ray;
+import math.Transform;
+import math.Vec3;
+
+/**
+ * A placement of shared geometry in the scene: the geometry (typically a {@link TriangleMesh} or another
+ * acceleration structure, the bottom level) is built once in its own object space, and every instance only adds
+ * a transform and optionally a material. Rays are transformed into object space instead of the geometry into
+ * world space, so memory grows with the number of distinct assets, not with the number of placements.
+ * <p>
+ * Instances are put into a {@link FlatBVH} like any other object, which then is the top level. Moving an
+ * instance with {@link #setTransform} only changes its bounds, so afterwards {@link FlatBVH#refit()} on the top
+ * level is enough; the geometry is not touched.
+ */
+public class Instance implements Hittable {
+    private final Hittable geometry;
+    private final Material material;
+    private final double[] objectBounds = new double[6];
+    private Transform transform;
+    private AABB box;
+    // Object space rays per thread, so tracing a ray does not allocate; one per nesting level of instances
+    private static final ThreadLocal<RayStack> objectRays = ThreadLocal.withInitial(RayStack::new);
+
+    private static final class RayStack {
+        Ray[] rays = new Ray[0];
+        int depth;
+
+        Ray push() {
+            if (depth == rays.length) {
+                rays = Arrays.copyOf(rays, depth + 1);
+                rays[depth] = new Ray();
+            }
+            return rays[depth++];
+        }
+    }
+
+    /**
+     * @param geometry The shared geometry, in object space. Must be bounded.
+     * @param transform Maps object space to world space.
+     * @param material Replaces the material of the geometry, or null to keep it.
+     */
+    public Instance(Hittable geometry, Transform transform, Material material) {
+        if (!geometry.isBounded()) throw new IllegalArgumentException("Only bounded geometry can be instanced");
+        AABB b = geometry.boundingBox();
+        objectBounds[0] = b.min.x;
+        objectBounds[1] = b.min.y;
+        objectBounds[2] = b.min.z;
+        objectBounds[3] = b.max.x;
+        objectBounds[4] = b.max.y;
+        objectBounds[5] = b.max.z;
+        this.geometry = geometry;
+        this.material = material;
+        setTransform(transform);
+    }
+
+    public Hittable getGeometry() {
+        return geometry;
+    }
+
+    public Transform getTransform() {
+        return transform;
+    }
+
+    /**
+     * Moves the instance. Refit the BVH that contains it before tracing the next ray.
+     * @param transform Maps object space to world space.
+     */
+    public void setTransform(Transform transform) {
+        double[] b = objectBounds.clone();
+        transform.bounds(b);
+        this.transform = transform;
+        this.box = new AABB(new Vec3(b[0], b[1], b[2]), new Vec3(b[3], b[4], b[5]));
+    }
+
+    @Override
+    public boolean hit(Ray r, double tMin, double tMax, HitRecord rec) {
+        return hit(r, tMin, tMax, rec, null);
+    }
+
+    @Override
+    /**
+     * Intersects the geometry with the ray in object space and brings the hit back into world space. The
+     * direction is not normalized, so t needs no conversion.
+     */
+    public boolean hit(Ray r, double tMin, double tMax, HitRecord rec, TraversalStats stats) {
+        RayStack stack = objectRays.get();
+        Ray local = transform.inverseRay(r, stack.push());
+        boolean hit;
+        try {
+            hit = geometry.hit(local, tMin, tMax, rec, stats);
+        } finally {
+            stack.depth--;
+        }
+        if (!hit) return false;
+        transform.point(rec.p);
+        // The normal already faces against the object space ray, and the inverse transpose keeps that
+        transform.normal(rec.normal);
+        if (material != null) rec.material = material;
+        return true;
+    }
+
+    @Override
+    public boolean occluded(Ray r, double tMin, double tMax) {
+        return occluded(r, tMin, tMax, null);
+    }
+
+    @Override
+    /**
+     * Tests the geometry with the ray in object space. Nothing has to be brought back into world space.
+     */
+    public boolean occluded(Ray r, double tMin, double tMax, TraversalStats stats) {
+        RayStack stack = objectRays.get();
+        Ray local = transform.inverseRay(r, stack.push());
+        try {
+            return geometry.occluded(local, tMin, tMax, stats);
+        } finally {
+            stack.depth--;
+        }
+    }
+
+    @Override
+    public AABB boundingBox() {
+        return box;
+    }
+}
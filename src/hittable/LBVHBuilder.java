@@ -0,0 +1,290 @@
+package hittable;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
+
+/**
+ * Linear BVH builder for very large scenes.
+ * <ol>
+ *   <li>Every primitive centroid is quantized inside the scene bounds and turned into a Morton code
+ *       (up to 21 bits per axis, giving 63-bit codes).</li>
+ *   <li>The codes are sorted with a parallel LSD radix sort.</li>
+ *   <li>The hierarchy is emitted with Karras' algorithm ("Maximizing Parallelism in the Construction of BVHs,
+ *       Octrees, and k-d Trees", 2012), where every internal node finds its range and split independently.</li>
+ *   <li>The node ranges are converted into {@link BVHBuildNode}s by parallel subtree tasks, which also compute
+ *       the bounds bottom-up. Subtrees with at most {@code maxLeafSize} primitives are collapsed into leaves.</li>
+ * </ol>
+ * All steps are O(n) and run on the common fork-join pool. The trees are of lower quality than
+ * {@link SAHBuilder}'s, but are built many times faster.
+ */
+public class LBVHBuilder implements BVHBuilder {
+    private static final int RADIX_BITS = 8;
+    private static final int BUCKETS = 1 << RADIX_BITS;
+    private static final int PARALLEL_THRESHOLD = 1 << 12;
+
+    private final int bitsPerAxis;
+    private final int maxLeafSize;
+
+    public LBVHBuilder() {
+        this(21, 1);
+    }
+
+    /**
+     * @param bitsPerAxis Quantization of the centroids per axis: 10 gives 30-bit codes, 21 gives 63-bit codes.
+     * @param maxLeafSize Subtrees with at most this many primitives become a single leaf.
+     */
+    public LBVHBuilder(int bitsPerAxis, int maxLeafSize) {
+        if (bitsPerAxis < 1 || bitsPerAxis > 21) throw new IllegalArgumentException("bitsPerAxis must be in [1, 21]");
+        if (maxLeafSize < 1) throw new IllegalArgumentException("maxLeafSize must be at least 1");
+        this.bitsPerAxis = bitsPerAxis;
+        this.maxLeafSize = maxLeafSize;
+    }
+
+    @Override
+    public BVHBuildNode build(BVHPrimitives prims) {
+        int n = prims.count;
+        long[] codes = mortonCodes(prims);
+        int[] sorted = new int[n];
+        for (int i = 0; i < n; i++) sorted[i] = i;
+        radixSort(codes, sorted, 3 * bitsPerAxis);
+        System.arraycopy(sorted, 0, prims.order, 0, n);
+
+        if (n == 1) {
+            return BVHBuildNode.leaf(prims.bounds(0, 1), 0, 1);
+        }
+
+        // Internal node i has children encoded as an internal index (>= 0) or ~leaf index (< 0)
+        int[] leftChild = new int[n - 1];
+        int[] rightChild = new int[n - 1];
+        int[] rangeFirst = new int[n - 1];
+        int[] rangeLast = new int[n - 1];
+        IntStream.range(0, n - 1).parallel().forEach(i -> emitNode(codes, n, i, leftChild, rightChild, rangeFirst, rangeLast));
+
+        return ForkJoinPool.commonPool().invoke(new ConvertTask(prims, codes, leftChild, rightChild, rangeFirst, rangeLast, 0));
+    }
+
+    /**
+     * Quantizes the centroids inside their common bounds and interleaves the bits, x highest.
+     */
+    private long[] mortonCodes(BVHPrimitives prims) {
+        int n = prims.count;
+        double[] c = prims.centroidBounds(0, n);
+        double cells = (1 << bitsPerAxis) - 1;
+        double[] scale = new double[3];
+        for (int a = 0; a < 3; a++) {
+            double extent = c[a + 3] - c[a];
+            scale[a] = extent > 0 ? cells / extent : 0;
+        }
+
+        long[] codes = new long[n];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            long x = (long) ((prims.centroids[3 * i] - c[0]) * scale[0]);
+            long y = (long) ((prims.centroids[3 * i + 1] - c[1]) * scale[1]);
+            long z = (long) ((prims.centroids[3 * i + 2] - c[2]) * scale[2]);
+            codes[i] = (expandBits(x) << 2) | (expandBits(y) << 1) | expandBits(z);
+        });
+        return codes;
+    }
+
+    /**
+     * Spreads the lowest 21 bits of v so that there are two zero bits between each of them.
+     */
+    private static long expandBits(long v) {
+        v &= 0x1fffffL;
+        v = (v | v << 32) & 0x1f00000000ffffL;
+        v = (v | v << 16) & 0x1f0000ff0000ffL;
+        v = (v | v << 8) & 0x100f00f00f00f00fL;
+        v = (v | v << 4) & 0x10c30c30c30c30c3L;
+        v = (v | v << 2) & 0x1249249249249249L;
+        return v;
+    }
+
+    /**
+     * Sorts the codes together with their primitive indices, 8 bits per pass. Every pass builds per-chunk
+     * histograms in parallel, turns them into scatter offsets and then scatters the chunks in parallel.
+     * The sort is stable, so primitives with equal codes keep their input order.
+     */
+    private static void radixSort(long[] codes, int[] values, int bits) {
+        int n = codes.length;
+        int chunks = Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism() * 4, n / PARALLEL_THRESHOLD));
+        int chunkSize = (n + chunks - 1) / chunks;
+
+        long[] keysIn = codes;
+        int[] valuesIn = values;
+        long[] keysOut = new long[n];
+        int[] valuesOut = new int[n];
+        int[][] histograms = new int[chunks][BUCKETS];
+
+        for (int shift = 0; shift < bits; shift += RADIX_BITS) {
+            final int s = shift;
+            final long[] kIn = keysIn;
+            final int[] vIn = valuesIn;
+            final long[] kOut = keysOut;
+            final int[] vOut = valuesOut;
+
+            IntStream.range(0, chunks).parallel().forEach(chunk -> {
+                int[] h = histograms[chunk];
+                Arrays.fill(h, 0);
+                int end = Math.min(n, (chunk + 1) * chunkSize);
+                for (int i = chunk * chunkSize; i < end; i++) {
+                    h[(int) (kIn[i] >>> s) & (BUCKETS - 1)]++;
+                }
+            });
+
+            // Exclusive prefix sum over (bucket, chunk), so every chunk gets its own slice of every bucket
+            int offset = 0;
+            boolean singleBucket = false;
+            for (int b = 0; b < BUCKETS; b++) {
+                int bucketTotal = 0;
+                for (int chunk = 0; chunk < chunks; chunk++) {
+                    int count = histograms[chunk][b];
+                    histograms[chunk][b] = offset;
+                    offset += count;
+                    bucketTotal += count;
+                }
+                if (bucketTotal == n) singleBucket = true;
+            }
+            if (singleBucket) continue; // This digit is the same everywhere, nothing to reorder
+
+            IntStream.range(0, chunks).parallel().forEach(chunk -> {
+                int[] h = histograms[chunk];
+                int end = Math.min(n, (chunk + 1) * chunkSize);
+                for (int i = chunk * chunkSize; i < end; i++) {
+                    int dst = h[(int) (kIn[i] >>> s) & (BUCKETS - 1)]++;
+                    kOut[dst] = kIn[i];
+                    vOut[dst] = vIn[i];
+                }
+            });
+
+            keysIn = kOut;
+            valuesIn = vOut;
+            keysOut = kIn;
+            valuesOut = vIn;
+        }
+
+        if (keysIn != codes) {
+            System.arraycopy(keysIn, 0, codes, 0, n);
+            System.arraycopy(valuesIn, 0, values, 0, n);
+        }
+    }
+
+    /**
+     * Length of the common prefix of the codes at positions i and j, falling back to the positions themselves
+     * when the codes are equal. Returns -1 when j is outside the array.
+     */
+    private static int delta(long[] codes, int n, int i, int j) {
+        if (j < 0 || j >= n) return -1;
+        long x = codes[i] ^ codes[j];
+        if (x != 0) return Long.numberOfLeadingZeros(x);
+        return 64 + Integer.numberOfLeadingZeros(i ^ j);
+    }
+
+    /**
+     * Finds the range covered by internal node i and where it splits (Karras 2012, figure 4).
+     */
+    private static void emitNode(long[] codes, int n, int i, int[] leftChild, int[] rightChild,
+                                 int[] rangeFirst, int[] rangeLast) {
+        // Direction of the range: towards the neighbour sharing the longer prefix
+        int d = delta(codes, n, i, i + 1) - delta(codes, n, i, i - 1) > 0 ? 1 : -1;
+
+        // Upper bound for the length of the range, then binary search for the other end
+        int deltaMin = delta(codes, n, i, i - d);
+        int lMax = 2;
+        while (delta(codes, n, i, i + lMax * d) > deltaMin) lMax *= 2;
+        int l = 0;
+        for (int t = lMax / 2; t >= 1; t /= 2) {
+            if (delta(codes, n, i, i + (l + t) * d) > deltaMin) l += t;
+        }
+        int j = i + l * d;
+
+        // Binary search for the split: the last position that still shares more than the node's prefix with i
+        int deltaNode = delta(codes, n, i, j);
+        int s = 0;
+        int divider = 2;
+        for (int t = (l + divider - 1) / divider; ; t = (l + divider - 1) / divider) {
+            if (delta(codes, n, i, i + (s + t) * d) > deltaNode) s += t;
+            if (t == 1) break;
+            divider *= 2;
+        }
+        int gamma = i + s * d + Math.min(d, 0);
+
+        int first = Math.min(i, j);
+        int last = Math.max(i, j);
+        leftChild[i] = first == gamma ? ~gamma : gamma;
+        rightChild[i] = last == gamma + 1 ? ~(gamma + 1) : gamma + 1;
+        rangeFirst[i] = first;
+        rangeLast[i] = last;
+    }
+
+    /**
+     * Converts the subtree below a node into build nodes, forking large subtrees.
+     */
+    private class ConvertTask extends RecursiveTask<BVHBuildNode> {
+        private static final long serialVersionUID = 1L;
+
+        private final BVHPrimitives prims;
+        private final long[] codes;
+        private final int[] leftChild;
+        private final int[] rightChild;
+        private final int[] rangeFirst;
+        private final int[] rangeLast;
+        private final int node;
+
+        ConvertTask(BVHPrimitives prims, long[] codes, int[] leftChild, int[] rightChild,
+                    int[] rangeFirst, int[] rangeLast, int node) {
+            this.prims = prims;
+            this.codes = codes;
+            this.leftChild = leftChild;
+            this.rightChild = rightChild;
+            this.rangeFirst = rangeFirst;
+            this.rangeLast = rangeLast;
+            this.node = node;
+        }
+
+        @Override
+        protected BVHBuildNode compute() {
+            if (node < 0) {
+                int p = ~node;
+                return BVHBuildNode.leaf(prims.bounds(p, p + 1), p, 1);
+            }
+
+            int first = rangeFirst[node];
+            int last = rangeLast[node];
+            int count = last - first + 1;
+            if (count <= maxLeafSize) {
+                return BVHBuildNode.leaf(prims.bounds(first, last + 1), first, count);
+            }
+
+            ConvertTask left = child(leftChild[node]);
+            ConvertTask right = child(rightChild[node]);
+            BVHBuildNode l;
+            BVHBuildNode r;
+            if (count > PARALLEL_THRESHOLD) {
+                right.fork();
+                l = left.compute();
+                r = right.join();
+            } else {
+                l = left.compute();
+                r = right.compute();
+            }
+            return BVHBuildNode.interior(splitAxis(first, last), l, r);
+        }
+
+        private ConvertTask child(int child) {
+            return new ConvertTask(prims, codes, leftChild, rightChild, rangeFirst, rangeLast, child);
+        }
+
+        /**
+         * The node splits at the highest bit in which its first and last code differ. Bits are interleaved
+         * as ...xyzxyz, so the position of that bit tells which axis it belongs to.
+         */
+        private int splitAxis(int first, int last) {
+            long diff = codes[first] ^ codes[last];
+            if (diff == 0) return 0;
+            int bit = 63 - Long.numberOfLeadingZeros(diff);
+            return 2 - bit % 3;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package hittable;
+
+/**
+ * Builds a BVH by splitting every node at the median centroid along the axis where the centroids are spread out
+ * the most. Fast and deterministic, but ignores how much the resulting child boxes overlap.
+ */
+public class MedianSplitBuilder implements BVHBuilder {
+    private final int maxLeafSize;
+
+    public MedianSplitBuilder() {
+        this(4);
+    }
+
+    /**
+     * @param maxLeafSize Ranges with at most this many primitives become leaves.
+     */
+    public MedianSplitBuilder(int maxLeafSize) {
+        if (maxLeafSize < 1) throw new IllegalArgumentException("maxLeafSize must be at least 1");
+        this.maxLeafSize = maxLeafSize;
+    }
+
+    @Override
+    public BVHBuildNode build(BVHPrimitives prims) {
+        return build(prims, 0, prims.count);
+    }
+
+    /**
+     * Recursively builds the node for order[start, end) and its children.
+     */
+    private BVHBuildNode build(BVHPrimitives prims, int start, int end) {
+        double[] c = prims.centroidBounds(start, end);
+        int axis = 0;
+        for (int a = 1; a < 3; a++) {
+            if (c[a + 3] - c[a] > c[axis + 3] - c[axis]) axis = a;
+        }
+
+        int count = end - start;
+        if (count <= maxLeafSize || c[axis + 3] - c[axis] == 0) {
+            return BVHBuildNode.leaf(prims.bounds(start, end), start, count);
+        }
+
+        int mid = start + count / 2;
+        selectNth(prims.order, start, end - 1, mid, prims.centroids, axis);
+
+        return BVHBuildNode.interior(axis, build(prims, start, mid), build(prims, mid, end));
+    }
+
+    /**
+     * Partially sorts order[lo..hi] (inclusive) so that the element at index n has the centroid it would have in a
+     * fully sorted range, with smaller centroids before it and larger ones after it (quickselect).
+     */
+    private static void selectNth(int[] order, int lo, int hi, int n, double[] centroids, int axis) {
+        while (hi > lo) {
+            double pivot = centroids[3 * order[(lo + hi) >>> 1] + axis];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (centroids[3 * order[i] + axis] < pivot) i++;
+                while (centroids[3 * order[j] + axis] > pivot) j--;
+                if (i <= j) {
+                    int temp = order[i]; order[i] = order[j]; order[j] = temp;
+                    i++;
+                    j--;
+                }
+            }
+            if (n <= j) {
+                hi = j;
+            } else if (n >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+}
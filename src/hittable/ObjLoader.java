@@ -0,0 +1,380 @@
+package hittable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import material.Material;
+
+/**
+ * Loads Wavefront OBJ files into a {@link TriangleMesh}. The file is memory-mapped and split into chunks at line
+ * boundaries, and the chunks are parsed in parallel straight from the mapped bytes into primitive arrays.
+ * Afterwards the chunks are concatenated, again in parallel, with their indices shifted by the number of
+ * vertices and normals of the chunks before them.
+ * <p>
+ * Supported are {@code v}, {@code vn} and {@code f} lines with {@code v}, {@code v/vt}, {@code v//vn} and
+ * {@code v/vt/vn} corners, including negative (relative) indices. Polygons are split into triangle fans.
+ * Everything else (texture coordinates, groups, materials, ...) is skipped; the whole mesh gets one material.
+ */
+public class ObjLoader {
+    // Chunks are at least this large, so small files are not split into lots of tiny tasks
+    private static final int MIN_CHUNK = 1 << 20;
+    // Chunks are at most this large, so each one can be mapped on its own
+    private static final int MAX_CHUNK = 1 << 26;
+    // A line may run this far past the end of its chunk
+    private static final int MAX_LINE = 1 << 16;
+
+    private ObjLoader() {
+    }
+
+    /**
+     * Loads an OBJ file and builds the BVH over its triangles.
+     * @param file
+     * @param material Material of the whole mesh.
+     * @param builder Decides how the triangles are partitioned.
+     * @return The mesh.
+     * @throws IOException If the file can't be read, is malformed, has no faces or refers to vertices that don't exist.
+     */
+    public static TriangleMesh load(File file, Material material, BVHBuilder builder) throws IOException {
+        Chunk[] chunks;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long chunkSize = Math.max(MIN_CHUNK, Math.min(MAX_CHUNK,
+                    size / (4L * ForkJoinPool.getCommonPoolParallelism()) + 1));
+            int count = (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+            chunks = new Chunk[count];
+            for (int i = 0; i < count; i++) {
+                chunks[i] = new Chunk(i * chunkSize, Math.min(size, (i + 1) * chunkSize));
+            }
+            IOException[] failure = new IOException[1];
+            IntStream.range(0, count).parallel().forEach(i -> {
+                try {
+                    chunks[i].parse(channel, size);
+                } catch (IOException e) {
+                    synchronized (failure) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            if (failure[0] != null) throw new IOException(file.getName() + ": " + failure[0].getMessage(), failure[0]);
+        }
+        return merge(chunks, file, material, builder);
+    }
+
+    /**
+     * Concatenates the chunks and resolves their relative and chunk-local indices.
+     */
+    private static TriangleMesh merge(Chunk[] chunks, File file, Material material, BVHBuilder builder)
+            throws IOException {
+        int n = chunks.length;
+        long[] vertexOffset = new long[n + 1];
+        long[] normalOffset = new long[n + 1];
+        long[] triangleOffset = new long[n + 1];
+        boolean anyNormals = false;
+        for (int i = 0; i < n; i++) {
+            vertexOffset[i + 1] = vertexOffset[i] + chunks[i].vertexCount;
+            normalOffset[i + 1] = normalOffset[i] + chunks[i].normalCount;
+            triangleOffset[i + 1] = triangleOffset[i] + chunks[i].triangleCount;
+            anyNormals |= chunks[i].normalCount > 0;
+        }
+        if (triangleOffset[n] == 0) throw new IOException(file.getName() + ": no faces");
+        if (3 * triangleOffset[n] > Integer.MAX_VALUE - 8 || 3 * vertexOffset[n] > Integer.MAX_VALUE - 8) {
+            throw new IOException(file.getName() + ": too many triangles for one mesh");
+        }
+        int vertices = (int) vertexOffset[n];
+        int normalCount = (int) normalOffset[n];
+
+        float[] positions = new float[3 * vertices];
+        int[] indices = new int[(int) (3 * triangleOffset[n])];
+        float[] normals = anyNormals ? new float[3 * normalCount] : null;
+        int[] normalIndices = anyNormals ? new int[indices.length] : null;
+        boolean[] invalid = new boolean[1];
+
+        IntStream.range(0, n).parallel().forEach(i -> {
+            Chunk chunk = chunks[i];
+            System.arraycopy(chunk.positions, 0, positions, (int) (3 * vertexOffset[i]), 3 * chunk.vertexCount);
+            if (normals != null) {
+                System.arraycopy(chunk.normals, 0, normals, (int) (3 * normalOffset[i]), 3 * chunk.normalCount);
+            }
+            int base = (int) (3 * triangleOffset[i]);
+            for (int k = 0; k < 3 * chunk.triangleCount; k++) {
+                int v = resolve(chunk.indices[k], (int) vertexOffset[i]);
+                if (v < 0 || v >= vertices) invalid[0] = true;
+                indices[base + k] = v;
+                if (normalIndices != null) {
+                    boolean hasNormal = chunk.normalIndices[k] != Chunk.NO_NORMAL;
+                    int vn = hasNormal ? resolve(chunk.normalIndices[k], (int) normalOffset[i]) : -1;
+                    if (hasNormal && (vn < 0 || vn >= normalCount)) invalid[0] = true;
+                    normalIndices[base + k] = vn;
+                }
+            }
+        });
+        if (invalid[0]) throw new IOException(file.getName() + ": face refers to a vertex or normal that doesn't exist");
+
+        // A triangle is only smooth if all three corners have a normal
+        if (normalIndices != null) {
+            for (int t = 0; t < normalIndices.length; t += 3) {
+                if (normalIndices[t] < 0 || normalIndices[t + 1] < 0 || normalIndices[t + 2] < 0) {
+                    normalIndices[t] = normalIndices[t + 1] = normalIndices[t + 2] = -1;
+                }
+            }
+        }
+        return new TriangleMesh(positions, indices, normals, normalIndices, material, builder);
+    }
+
+    /**
+     * Turns a stored index into a global one: absolute indices are stored as they are, relative ones as
+     * RELATIVE + (index counted from the first vertex of the chunk), which may reach into earlier chunks.
+     */
+    private static int resolve(int stored, int chunkOffset) {
+        return stored >= 0 ? stored : stored - Chunk.RELATIVE + chunkOffset;
+    }
+
+    /**
+     * The lines that start in [start, end) of the file, parsed into growing arrays.
+     */
+    private static class Chunk {
+        static final int NO_NORMAL = Integer.MIN_VALUE;
+        static final int RELATIVE = Integer.MIN_VALUE / 2;
+
+        final long start;
+        final long end;
+        float[] positions = new float[3 * 1024];
+        int vertexCount;
+        float[] normals = new float[0];
+        int normalCount;
+        int[] indices = new int[3 * 1024];
+        int[] normalIndices = new int[3 * 1024];
+        int triangleCount;
+
+        private MappedByteBuffer buffer;
+        private int pos;
+        private int limit;
+        private int lineNumber;
+        // Corners of the current face
+        private int[] faceVertices = new int[16];
+        private int[] faceNormals = new int[16];
+
+        Chunk(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        void parse(FileChannel channel, long size) throws IOException {
+            if (start == end) return;
+            // Map one byte before the chunk to see whether it starts at the beginning of a line, and enough
+            // after it to finish the last line
+            long mapStart = Math.max(0, start - 1);
+            long mapEnd = Math.min(size, end + MAX_LINE);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+            pos = 0;
+            limit = (int) (mapEnd - mapStart);
+            int chunkEnd = (int) (end - mapStart);
+            if (start > 0) {
+                // Lines that started in the previous chunk belong to it
+                while (pos < limit && buffer.get(pos) != '\n') pos++;
+                pos++;
+            }
+            while (pos < chunkEnd) {
+                lineNumber++;
+                line();
+            }
+            if (pos > limit && mapEnd < size) {
+                throw new IOException("line near byte " + end + " is longer than " + MAX_LINE + " bytes");
+            }
+            buffer = null;
+        }
+
+        /**
+         * Parses the line at pos and moves pos past its end.
+         */
+        private void line() throws IOException {
+            skipSpaces();
+            if (pos + 1 < limit && buffer.get(pos) == 'v' && isSpace(buffer.get(pos + 1))) {
+                pos += 2;
+                addVertex(number(), number(), number());
+            } else if (pos + 2 < limit && buffer.get(pos) == 'v' && buffer.get(pos + 1) == 'n'
+                    && isSpace(buffer.get(pos + 2))) {
+                pos += 3;
+                addNormal(number(), number(), number());
+            } else if (pos + 1 < limit && buffer.get(pos) == 'f' && isSpace(buffer.get(pos + 1))) {
+                pos += 2;
+                face();
+            }
+            skipLine();
+        }
+
+        private void face() throws IOException {
+            int corners = 0;
+            while (true) {
+                skipSpaces();
+                if (pos >= limit || isLineEnd(buffer.get(pos))) break;
+                if (corners == faceVertices.length) {
+                    faceVertices = Arrays.copyOf(faceVertices, 2 * corners);
+                    faceNormals = Arrays.copyOf(faceNormals, 2 * corners);
+                }
+                faceVertices[corners] = index(integer(), vertexCount);
+                faceNormals[corners] = NO_NORMAL;
+                if (pos < limit && buffer.get(pos) == '/') {
+                    pos++;
+                    if (pos < limit && buffer.get(pos) != '/') integer(); // Texture coordinate
+                    if (pos < limit && buffer.get(pos) == '/') {
+                        pos++;
+                        faceNormals[corners] = index(integer(), normalCount);
+                    }
+                }
+                corners++;
+            }
+            if (corners < 3) throw error("face with fewer than 3 vertices");
+            for (int k = 1; k < corners - 1; k++) {
+                addTriangle(faceVertices[0], faceVertices[k], faceVertices[k + 1],
+                            faceNormals[0], faceNormals[k], faceNormals[k + 1]);
+            }
+        }
+
+        /**
+         * Converts a 1-based OBJ index into the stored form, see {@link ObjLoader#resolve}.
+         */
+        private int index(int objIndex, int localCount) throws IOException {
+            if (objIndex > 0) return objIndex - 1;
+            if (objIndex == 0) throw error("index 0");
+            if (objIndex < RELATIVE / 2) throw error("relative index " + objIndex + " reaches too far back");
+            return RELATIVE + localCount + objIndex;
+        }
+
+        private void addVertex(double x, double y, double z) {
+            if (3 * vertexCount == positions.length) positions = Arrays.copyOf(positions, 2 * positions.length);
+            positions[3 * vertexCount] = (float) x;
+            positions[3 * vertexCount + 1] = (float) y;
+            positions[3 * vertexCount + 2] = (float) z;
+            vertexCount++;
+        }
+
+        private void addNormal(double x, double y, double z) {
+            if (3 * normalCount == normals.length) normals = Arrays.copyOf(normals, Math.max(3 * 1024, 2 * normals.length));
+            normals[3 * normalCount] = (float) x;
+            normals[3 * normalCount + 1] = (float) y;
+            normals[3 * normalCount + 2] = (float) z;
+            normalCount++;
+        }
+
+        private void addTriangle(int a, int b, int c, int na, int nb, int nc) {
+            if (3 * triangleCount == indices.length) {
+                indices = Arrays.copyOf(indices, 2 * indices.length);
+                normalIndices = Arrays.copyOf(normalIndices, 2 * normalIndices.length);
+            }
+            int o = 3 * triangleCount++;
+            indices[o] = a;
+            indices[o + 1] = b;
+            indices[o + 2] = c;
+            normalIndices[o] = na;
+            normalIndices[o + 1] = nb;
+            normalIndices[o + 2] = nc;
+        }
+
+        private int integer() throws IOException {
+            boolean negative = false;
+            if (pos < limit && buffer.get(pos) == '-') {
+                negative = true;
+                pos++;
+            }
+            int start = pos;
+            long value = 0;
+            while (pos < limit && isDigit(buffer.get(pos))) {
+                value = 10 * value + (buffer.get(pos++) - '0');
+                if (value > Integer.MAX_VALUE) throw error("index out of range");
+            }
+            if (pos == start) throw error("expected an index");
+            return (int) (negative ? -value : value);
+        }
+
+        /**
+         * Parses a decimal number like 1, -0.5, .25 or 1.5e-3 directly from the bytes.
+         */
+        private double number() throws IOException {
+            skipSpaces();
+            boolean negative = false;
+            if (pos < limit && (buffer.get(pos) == '-' || buffer.get(pos) == '+')) {
+                negative = buffer.get(pos) == '-';
+                pos++;
+            }
+            int start = pos;
+            long mantissa = 0;
+            int exponent = 0;
+            int digits = 0;
+            while (pos < limit && isDigit(buffer.get(pos))) {
+                if (digits < 18) {
+                    mantissa = 10 * mantissa + (buffer.get(pos) - '0');
+                    digits += mantissa > 0 ? 1 : 0;
+                } else {
+                    exponent++;
+                }
+                pos++;
+            }
+            if (pos < limit && buffer.get(pos) == '.') {
+                pos++;
+                while (pos < limit && isDigit(buffer.get(pos))) {
+                    if (digits < 18) {
+                        mantissa = 10 * mantissa + (buffer.get(pos) - '0');
+                        digits += mantissa > 0 ? 1 : 0;
+                        exponent--;
+                    }
+                    pos++;
+                }
+            }
+            if (pos == start || (pos == start + 1 && buffer.get(start) == '.')) throw error("expected a number");
+            if (pos < limit && (buffer.get(pos) == 'e' || buffer.get(pos) == 'E')) {
+                pos++;
+                exponent += integerExponent();
+            }
+            double value = exponent >= 0 ? mantissa * pow10(exponent) : mantissa / pow10(-exponent);
+            return negative ? -value : value;
+        }
+
+        private int integerExponent() throws IOException {
+            if (pos < limit && buffer.get(pos) == '+') pos++;
+            int value = integer();
+            return Math.max(-400, Math.min(400, value));
+        }
+
+        private static double pow10(int n) {
+            return n < POWERS.length ? POWERS[n] : Math.pow(10, n);
+        }
+
+        private void skipSpaces() {
+            while (pos < limit && (buffer.get(pos) == ' ' || buffer.get(pos) == '\t')) pos++;
+        }
+
+        private void skipLine() {
+            while (pos < limit && buffer.get(pos) != '\n') pos++;
+            pos++;
+        }
+
+        private static boolean isSpace(byte b) {
+            return b == ' ' || b == '\t';
+        }
+
+        private static boolean isLineEnd(byte b) {
+            return b == '\n' || b == '\r' || b == '#';
+        }
+
+        private static boolean isDigit(byte b) {
+            return b >= '0' && b <= '9';
+        }
+
+        private IOException error(String message) {
+            return new IOException("chunk at byte " + start + ", line " + lineNumber + ": " + message);
+        }
+    }
+
+    private static final double[] POWERS = new double[23];
+
+    static {
+        POWERS[0] = 1;
+        for (int i = 1; i < POWERS.length; i++) POWERS[i] = POWERS[i - 1] * 10;
+    }
+}
@@ -23,27 +23,48 @@ public class Plane implements Hittable {
      * Checks if a ray hits the plane. If it does, it fills the HitRecord with the hit information.
      */
     public boolean hit(Ray r, double tMin, double tMax, HitRecord rec) {
-        double denominator = r.getDirection().dot(normal);
+        double denominator = r.dx * normal.x + r.dy * normal.y + r.dz * normal.z;
 
         if (Math.abs(denominator) < 1e-6) {
             return false;
         }
 
-        double t = (point.sub(r.getOrigin())).dot(normal) / denominator;
+        double t = ((point.x - r.ox) * normal.x + (point.y - r.oy) * normal.y + (point.z - r.oz) * normal.z) / denominator;
 
         if (t < tMin || t > tMax) {
             return false;
         }
 
         rec.t = t;
-        rec.p = r.at(t);
+        rec.p.set(r.ox + t * r.dx, r.oy + t * r.dy, r.oz + t * r.dz);
         
-        rec.setFaceNormal(r, normal);
+        rec.setFaceNormal(r, normal.x, normal.y, normal.z);
         rec.material = material;
 
         return true;
     }
 
+    @Override
+    /**
+     * Checks if the ray crosses the plane within the range, without filling a hit record.
+     */
+    public boolean occluded(Ray r, double tMin, double tMax) {
+        double denominator = r.dx * normal.x + r.dy * normal.y + r.dz * normal.z;
+        if (Math.abs(denominator) < 1e-6) {
+            return false;
+        }
+        double t = ((point.x - r.ox) * normal.x + (point.y - r.oy) * normal.y + (point.z - r.oz) * normal.z) / denominator;
+        return t >= tMin && t <= tMax;
+    }
+
+    @Override
+    /**
+     * The plane is infinite, so it should not be put into a BVH.
+     */
+    public boolean isBounded() {
+        return false;
+    }
+
     @Override
     /**
      * Returns an AABB that encompasses the plane. Since the plane is infinite, we return a very large box.
@@ -0,0 +1,50 @@
+package hittable;
+
+import math.Ray;
+
+/**
+ * Primitives that are stored in bulk, like the triangles of a {@link TriangleMesh}, so a {@link FlatBVH} can be
+ * built over every single one of them without an object per primitive. The BVH addresses them by index, and
+ * its leaves test a whole range at once, so per-ray setup can be shared by all primitives of a leaf.
+ */
+public interface PrimitiveSet {
+    /**
+     * @return The number of primitives.
+     */
+    int size();
+
+    /**
+     * Writes the bounds of a primitive as minX, minY, minZ, maxX, maxY, maxZ.
+     * @param i Index of the primitive.
+     * @param out Array to write to.
+     * @param offset Index of minX in out.
+     */
+    void bounds(int i, double[] out, int offset);
+
+    /**
+     * Rearranges the primitives so that the one at index order[i] ends up at index i. Called once by the
+     * BVH after it is built, so that every leaf covers a contiguous range of primitives.
+     * @param order A permutation of 0 .. size() - 1.
+     */
+    void reorder(int[] order);
+
+    /**
+     * Finds the closest hit among the primitives [first, first + count).
+     * @param first Index of the first primitive to test.
+     * @param count Number of primitives to test.
+     * @param r The ray.
+     * @param tMin Minimum t value for valid intersections.
+     * @param tMax Maximum t value for valid intersections, e.g. the closest hit so far.
+     * @param rec Filled with the closest hit, if there is one closer than tMax.
+     * @param stats Counters to add the primitive tests to, or null.
+     * @return True if one of the primitives was hit.
+     */
+    boolean hit(int first, int count, Ray r, double tMin, double tMax, HitRecord rec, TraversalStats stats);
+
+    /**
+     * Checks if any of the primitives [first, first + count) is hit within the range, stopping at the first one.
+     * @param stats Counters to add the primitive tests to, or null.
+     * @return True if one of the primitives was hit.
+     */
+    boolean occluded(int first, int count, Ray r, double tMin, double tMax, TraversalStats stats);
+}
@@ -0,0 +1,162 @@
+package hittable;
+
+/**
+ * Builds a BVH with the Surface Area Heuristic. Primitive centroids are sorted into a fixed number of bins along
+ * each axis, and every node is split at the bin boundary with the lowest expected cost
+ * <pre>
+ *   TRAVERSAL_COST + INTERSECTION_COST * (N_left * SA(left) + N_right * SA(right)) / SA(node)
+ * </pre>
+ * Ranges that are small enough become multi-primitive leaves when intersecting all of them is cheaper than splitting.
+ */
+public class SAHBuilder implements BVHBuilder {
+    /** Cost of visiting a node, relative to one primitive intersection. */
+    public static final double TRAVERSAL_COST = 0.125;
+    /** Cost of one ray-primitive intersection test. */
+    public static final double INTERSECTION_COST = 1.0;
+
+    private final int binCount;
+    private final int maxLeafSize;
+
+    public SAHBuilder() {
+        this(16, 4);
+    }
+
+    /**
+     * @param binCount Number of centroid bins per axis.
+     * @param maxLeafSize Largest number of primitives allowed in a leaf.
+     */
+    public SAHBuilder(int binCount, int maxLeafSize) {
+        if (binCount < 2) throw new IllegalArgumentException("binCount must be at least 2");
+        if (maxLeafSize < 1) throw new IllegalArgumentException("maxLeafSize must be at least 1");
+        this.binCount = binCount;
+        this.maxLeafSize = maxLeafSize;
+    }
+
+    @Override
+    public BVHBuildNode build(BVHPrimitives prims) {
+        return build(prims, 0, prims.count, new int[binCount], new double[6 * binCount], new double[binCount]);
+    }
+
+    /**
+     * Recursively builds the node for order[start, end) and its children.
+     * The bin arrays are scratch space shared by the whole build.
+     */
+    private BVHBuildNode build(BVHPrimitives prims, int start, int end,
+                               int[] binCounts, double[] binBounds, double[] rightCost) {
+        int count = end - start;
+        double[] bounds = prims.bounds(start, end);
+        if (count == 1) {
+            return BVHBuildNode.leaf(bounds, start, count);
+        }
+
+        double[] c = prims.centroidBounds(start, end);
+        double nodeArea = BVHPrimitives.surfaceArea(bounds, 0);
+
+        double bestCost = Double.POSITIVE_INFINITY;
+        int bestAxis = -1;
+        int bestBin = -1;
+        for (int axis = 0; axis < 3; axis++) {
+            double extent = c[axis + 3] - c[axis];
+            if (extent <= 0) continue;
+
+            fillBins(prims, start, end, axis, c[axis], binCount / extent, binCounts, binBounds);
+
+            // Sweep from the right to get the cost of everything above each split plane
+            double[] acc = BVHPrimitives.emptyBounds();
+            int accCount = 0;
+            for (int i = binCount - 1; i > 0; i--) {
+                accCount += binCounts[i];
+                merge(acc, binBounds, 6 * i);
+                rightCost[i] = accCount * BVHPrimitives.surfaceArea(acc, 0);
+            }
+
+            // Sweep from the left and evaluate the split below bin i
+            acc = BVHPrimitives.emptyBounds();
+            accCount = 0;
+            for (int i = 0; i < binCount - 1; i++) {
+                accCount += binCounts[i];
+                merge(acc, binBounds, 6 * i);
+                if (accCount == 0 || accCount == count) continue;
+
+                double cost = TRAVERSAL_COST + INTERSECTION_COST
+                        * (accCount * BVHPrimitives.surfaceArea(acc, 0) + rightCost[i + 1]) / nodeArea;
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestAxis = axis;
+                    bestBin = i;
+                }
+            }
+        }
+
+        double leafCost = INTERSECTION_COST * count;
+        if (count <= maxLeafSize && leafCost <= bestCost) {
+            return BVHBuildNode.leaf(bounds, start, count);
+        }
+
+        int mid;
+        int axis;
+        if (bestAxis == -1) {
+            // All centroids coincide, no plane separates them: split the range in half
+            axis = 0;
+            mid = start + count / 2;
+        } else {
+            axis = bestAxis;
+            mid = partition(prims, start, end, axis, c[axis], binCount / (c[axis + 3] - c[axis]), bestBin);
+        }
+
+        BVHBuildNode left = build(prims, start, mid, binCounts, binBounds, rightCost);
+        BVHBuildNode right = build(prims, mid, end, binCounts, binBounds, rightCost);
+        return BVHBuildNode.interior(axis, left, right);
+    }
+
+    /**
+     * Counts the primitives per bin and computes the bounds of every bin.
+     */
+    private void fillBins(BVHPrimitives prims, int start, int end, int axis, double min, double scale,
+                          int[] binCounts, double[] binBounds) {
+        for (int i = 0; i < binCount; i++) {
+            binCounts[i] = 0;
+            System.arraycopy(BVHPrimitives.emptyBounds(), 0, binBounds, 6 * i, 6);
+        }
+        for (int i = start; i < end; i++) {
+            int p = prims.order[i];
+            int bin = binIndex(prims.centroids[3 * p + axis], min, scale);
+            binCounts[bin]++;
+            for (int a = 0; a < 3; a++) {
+                binBounds[6 * bin + a] = Math.min(binBounds[6 * bin + a], prims.bounds[6 * p + a]);
+                binBounds[6 * bin + a + 3] = Math.max(binBounds[6 * bin + a + 3], prims.bounds[6 * p + a + 3]);
+            }
+        }
+    }
+
+    /**
+     * Moves the primitives whose bin is at most splitBin to the front of the range.
+     * @return The position of the first primitive of the upper half.
+     */
+    private int partition(BVHPrimitives prims, int start, int end, int axis, double min, double scale, int splitBin) {
+        int[] order = prims.order;
+        int i = start;
+        int j = end - 1;
+        while (i <= j) {
+            if (binIndex(prims.centroids[3 * order[i] + axis], min, scale) <= splitBin) {
+                i++;
+            } else {
+                int temp = order[i]; order[i] = order[j]; order[j] = temp;
+                j--;
+            }
+        }
+        return i;
+    }
+
+    private int binIndex(double centroid, double min, double scale) {
+        int bin = (int) ((centroid - min) * scale);
+        return bin < binCount ? bin : binCount - 1;
+    }
+
+    private static void merge(double[] acc, double[] b, int offset) {
+        for (int a = 0; a < 3; a++) {
+            acc[a] = Math.min(acc[a], b[offset + a]);
+            acc[a + 3] = Math.max(acc[a + 3], b[offset + a + 3]);
+        }
+    }
+}
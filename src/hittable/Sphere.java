@@ -21,11 +21,14 @@ public class Sphere implements Hittable {
     @Override
     // Ray-sphere intersection logic
     public boolean hit(Ray ray, double tMin, double tMax, HitRecord rec) {
-        Vec3 oc = ray.getOrigin().sub(center);
+        // oc = origin - center, kept in locals so nothing is allocated for rays that miss
+        double ocx = ray.ox - center.x;
+        double ocy = ray.oy - center.y;
+        double ocz = ray.oz - center.z;
         
-        double a = ray.getDirection().lengthSquared();
-        double half_b = oc.dot(ray.getDirection());
-        double c = oc.dot(oc) - radius * radius;
+        double a = ray.dx * ray.dx + ray.dy * ray.dy + ray.dz * ray.dz;
+        double half_b = ocx * ray.dx + ocy * ray.dy + ocz * ray.dz;
+        double c = ocx * ocx + ocy * ocy + ocz * ocz - radius * radius;
         double discriminant = half_b * half_b - a * c;
     
         if (discriminant > 0) {
@@ -33,32 +36,55 @@ public class Sphere implements Hittable {
             double temp = (-half_b - root) / a;
 
             if (temp < tMax && temp > tMin) {
-                rec.t = temp;
-                rec.p = ray.at(rec.t);
-                
-                Vec3 outwardNormal = rec.p.sub(center).scale(1.0 / radius);
-
-                rec.setFaceNormal(ray, outwardNormal);
-                
-                rec.material = this.mat;
+                record(ray, temp, rec);
                 return true;
             }
 
             temp = (-half_b + root) / a;
             if (temp < tMax && temp > tMin) {
-                rec.t = temp;
-                rec.p = ray.at(rec.t);
-                Vec3 outwardNormal = rec.p.sub(center).scale(1.0 / radius);
-                
-                rec.setFaceNormal(ray, outwardNormal);
-                
-                rec.material = this.mat;
+                record(ray, temp, rec);
                 return true;
             }
         }
         return false;
     }
 
+    @Override
+    // Same test as hit, but only whether one of the two roots lies in the range
+    public boolean occluded(Ray ray, double tMin, double tMax) {
+        double ocx = ray.ox - center.x;
+        double ocy = ray.oy - center.y;
+        double ocz = ray.oz - center.z;
+
+        double a = ray.dx * ray.dx + ray.dy * ray.dy + ray.dz * ray.dz;
+        double half_b = ocx * ray.dx + ocy * ray.dy + ocz * ray.dz;
+        double c = ocx * ocx + ocy * ocy + ocz * ocz - radius * radius;
+        double discriminant = half_b * half_b - a * c;
+        if (discriminant <= 0) return false;
+
+        double root = Math.sqrt(discriminant);
+        double near = (-half_b - root) / a;
+        if (near < tMax && near > tMin) return true;
+        double far = (-half_b + root) / a;
+        return far < tMax && far > tMin;
+    }
+
+    /**
+     * Fills the hit record for a hit at distance t along the ray.
+     */
+    private void record(Ray ray, double t, HitRecord rec) {
+        rec.t = t;
+        rec.p.set(ray.ox + t * ray.dx, ray.oy + t * ray.dy, ray.oz + t * ray.dz);
+
+        double invRadius = 1.0 / radius;
+        rec.setFaceNormal(ray,
+            (rec.p.x - center.x) * invRadius,
+            (rec.p.y - center.y) * invRadius,
+            (rec.p.z - center.z) * invRadius);
+
+        rec.material = this.mat;
+    }
+
     @Override
     // Axis-Aligned Bounding Box for the sphere
     public AABB boundingBox() {
@@ -0,0 +1,29 @@
+package hittable;
+
+/**
+ * Counters for the work done while intersecting rays with the scene.
+ * Not thread-safe; every thread counts into its own instance.
+ */
+public class TraversalStats {
+    public long rays;
+    public long nodesVisited;
+    public long primitiveTests;
+
+    /**
+     * Adds the counts of another instance to this one.
+     * @param other
+     */
+    public void add(TraversalStats other) {
+        rays += other.rays;
+        nodesVisited += other.nodesVisited;
+        primitiveTests += other.primitiveTests;
+    }
+
+    public double nodesPerRay() {
+        return rays == 0 ? 0 : (double) nodesVisited / rays;
+    }
+
+    public double primitiveTestsPerRay() {
+        return rays == 0 ? 0 : (double) primitiveTests / rays;
+    }
+}
@@ -0,0 +1,239 @@
+package hittable;
+
+import material.Material;
+import math.Ray;
+
+/**
+ * Indexed triangle mesh. All triangles share a few flat arrays instead of being one object each:
+ * <pre>
+ *   positions[3 * v .. 3 * v + 2]     = x, y, z of vertex v
+ *   indices[3 * t .. 3 * t + 2]       = vertices of triangle t
+ *   normals[3 * n .. 3 * n + 2]       = optional vertex normals
+ *   normalIndices[3 * t .. 3 * t + 2] = normals of the corners of triangle t, -1 for a flat triangle
+ * </pre>
+ * That is 12 bytes per triangle plus 12 per vertex; with normals another 12 per triangle (normalIndices) and 12
+ * per normal. So tens of millions of triangles fit in memory. The mesh builds its own {@link FlatBVH} over the
+ * single triangles and is a single object to the scene around it.
+ * <p>
+ * Rays are intersected with the watertight algorithm of Woop, Benthin and Wald ("Watertight Ray/Triangle
+ * Intersection", JCGT 2013): the vertices are transformed into a space where the ray runs along +z, and the
+ * edge functions are evaluated in 2D. Neighboring triangles compute the same edge function for their shared
+ * edge, so rays through edges and vertices never slip between triangles.
+ */
+public class TriangleMesh implements Hittable, PrimitiveSet {
+    private final float[] positions;
+    private final int[] indices;
+    private final float[] normals;
+    private final int[] normalIndices;
+    private final Material material;
+    private final FlatBVH bvh;
+
+    /**
+     * Creates a mesh with flat shaded triangles.
+     */
+    public TriangleMesh(float[] positions, int[] indices, Material material, BVHBuilder builder) {
+        this(positions, indices, null, null, material, builder);
+    }
+
+    /**
+     * Creates a mesh and builds its BVH. The arrays are used directly; the triangles in indices and
+     * normalIndices are reordered for the BVH.
+     * @param positions x, y, z per vertex.
+     * @param indices Three vertex indices per triangle.
+     * @param normals x, y, z per normal, or null for flat shading.
+     * @param normalIndices Three normal indices per triangle (-1 for flat triangles), or null for flat shading.
+     * @param material Material of every triangle.
+     * @param builder Decides how the triangles are partitioned.
+     */
+    public TriangleMesh(float[] positions, int[] indices, float[] normals, int[] normalIndices, Material material,
+                        BVHBuilder builder) {
+        if (indices.length % 3 != 0) throw new IllegalArgumentException("indices must hold three per triangle");
+        if ((normals == null) != (normalIndices == null)) {
+            throw new IllegalArgumentException("normals and normalIndices must both be set or both be null");
+        }
+        if (normalIndices != null && normalIndices.length != indices.length) {
+            throw new IllegalArgumentException("normalIndices must hold three per triangle");
+        }
+        this.positions = positions;
+        this.indices = indices;
+        this.normals = normals;
+        this.normalIndices = normalIndices;
+        this.material = material;
+        this.bvh = new FlatBVH(this, builder);
+    }
+
+    public int triangleCount() {
+        return indices.length / 3;
+    }
+
+    public int vertexCount() {
+        return positions.length / 3;
+    }
+
+    @Override
+    public boolean hit(Ray r, double tMin, double tMax, HitRecord rec) {
+        return bvh.hit(r, tMin, tMax, rec, null);
+    }
+
+    @Override
+    public boolean hit(Ray r, double tMin, double tMax, HitRecord rec, TraversalStats stats) {
+        return bvh.hit(r, tMin, tMax, rec, stats);
+    }
+
+    @Override
+    public boolean occluded(Ray r, double tMin, double tMax) {
+        return bvh.occluded(r, tMin, tMax, null);
+    }
+
+    @Override
+    public boolean occluded(Ray r, double tMin, double tMax, TraversalStats stats) {
+        return bvh.occluded(r, tMin, tMax, stats);
+    }
+
+    @Override
+    public AABB boundingBox() {
+        return bvh.boundingBox();
+    }
+
+    @Override
+    public int size() {
+        return triangleCount();
+    }
+
+    /**
+     * Bounds of triangle i. A triangle in an axis-aligned plane would get a flat box, so axes without extent are
+     * widened by a float ulp of the coordinate on both sides.
+     */
+    @Override
+    public void bounds(int i, double[] out, int offset) {
+        int a = 3 * indices[3 * i], b = 3 * indices[3 * i + 1], c = 3 * indices[3 * i + 2];
+        for (int k = 0; k < 3; k++) {
+            float min = Math.min(positions[a + k], Math.min(positions[b + k], positions[c + k]));
+            float max = Math.max(positions[a + k], Math.max(positions[b + k], positions[c + k]));
+            float pad = min == max ? Math.ulp(min) : 0;
+            out[offset + k] = min - pad;
+            out[offset + 3 + k] = max + pad;
+        }
+    }
+
+    @Override
+    public void reorder(int[] order) {
+        reorderTriangles(indices, order);
+        if (normalIndices != null) reorderTriangles(normalIndices, order);
+    }
+
+    private static void reorderTriangles(int[] triangles, int[] order) {
+        int[] copy = triangles.clone();
+        for (int i = 0; i < order.length; i++) {
+            System.arraycopy(copy, 3 * order[i], triangles, 3 * i, 3);
+        }
+    }
+
+    @Override
+    public boolean hit(int first, int count, Ray r, double tMin, double tMax, HitRecord rec, TraversalStats stats) {
+        return intersect(first, count, r, tMin, tMax, rec, stats);
+    }
+
+    @Override
+    public boolean occluded(int first, int count, Ray r, double tMin, double tMax, TraversalStats stats) {
+        return intersect(first, count, r, tMin, tMax, null, stats);
+    }
+
+    /**
+     * Tests the triangles [first, first + count) against the ray.
+     * @param rec Filled with the closest hit, or null to return at the first hit without filling anything.
+     */
+    private boolean intersect(int first, int count, Ray r, double tMin, double tMax, HitRecord rec,
+                              TraversalStats stats) {
+        // Per-ray setup, shared by the whole leaf: kz is the dominant axis of the direction, kx and ky are
+        // swapped if needed to keep the winding, and the shear maps the direction onto +z
+        int kz = Math.abs(r.dx) > Math.abs(r.dy)
+                ? (Math.abs(r.dx) > Math.abs(r.dz) ? 0 : 2)
+                : (Math.abs(r.dy) > Math.abs(r.dz) ? 1 : 2);
+        int kx = kz == 2 ? 0 : kz + 1;
+        int ky = kx == 2 ? 0 : kx + 1;
+        if (component(r.dx, r.dy, r.dz, kz) < 0) {
+            int swap = kx;
+            kx = ky;
+            ky = swap;
+        }
+        double sz = 1.0 / component(r.dx, r.dy, r.dz, kz);
+        double sx = component(r.dx, r.dy, r.dz, kx) * sz;
+        double sy = component(r.dx, r.dy, r.dz, ky) * sz;
+        double ox = component(r.ox, r.oy, r.oz, kx);
+        double oy = component(r.ox, r.oy, r.oz, ky);
+        double oz = component(r.ox, r.oy, r.oz, kz);
+
+        int hitTriangle = -1;
+        double closest = tMax;
+        double hitU = 0, hitV = 0, hitW = 0;
+
+        for (int t = first; t < first + count; t++) {
+            int a = 3 * indices[3 * t], b = 3 * indices[3 * t + 1], c = 3 * indices[3 * t + 2];
+            // Vertices relative to the ray origin, in the permuted axis order
+            double az = positions[a + kz] - oz, bz = positions[b + kz] - oz, cz = positions[c + kz] - oz;
+            double ax = positions[a + kx] - ox - sx * az, ay = positions[a + ky] - oy - sy * az;
+            double bx = positions[b + kx] - ox - sx * bz, by = positions[b + ky] - oy - sy * bz;
+            double cx = positions[c + kx] - ox - sx * cz, cy = positions[c + ky] - oy - sy * cz;
+
+            // Edge functions; the ray passes through the triangle if all three have the same sign
+            double u = cx * by - cy * bx;
+            double v = ax * cy - ay * cx;
+            double w = bx * ay - by * ax;
+            if ((u < 0 || v < 0 || w < 0) && (u > 0 || v > 0 || w > 0)) continue;
+            double det = u + v + w;
+            if (det == 0) continue;
+
+            double dist = (u * az + v * bz + w * cz) * sz / det;
+            if (dist <= tMin || dist >= closest) continue;
+            if (rec == null) {
+                if (stats != null) stats.primitiveTests += t - first + 1;
+                return true;
+            }
+            closest = dist;
+            hitTriangle = t;
+            hitU = u / det;
+            hitV = v / det;
+            hitW = w / det;
+        }
+        if (stats != null) stats.primitiveTests += count;
+        if (hitTriangle < 0) return false;
+
+        rec.t = closest;
+        rec.p.set(r.ox + closest * r.dx, r.oy + closest * r.dy, r.oz + closest * r.dz);
+        rec.material = material;
+        setNormal(hitTriangle, hitU, hitV, hitW, r, rec);
+        return true;
+    }
+
+    private static double component(double x, double y, double z, int axis) {
+        return axis == 0 ? x : (axis == 1 ? y : z);
+    }
+
+    /**
+     * Sets the interpolated vertex normal of a hit, or the geometric normal for flat triangles.
+     */
+    private void setNormal(int t, double u, double v, double w, Ray r, HitRecord rec) {
+        double nx, ny, nz;
+        if (normalIndices != null && normalIndices[3 * t] >= 0) {
+            int na = 3 * normalIndices[3 * t], nb = 3 * normalIndices[3 * t + 1], nc = 3 * normalIndices[3 * t + 2];
+            nx = u * normals[na] + v * normals[nb] + w * normals[nc];
+            ny = u * normals[na + 1] + v * normals[nb + 1] + w * normals[nc + 1];
+            nz = u * normals[na + 2] + v * normals[nb + 2] + w * normals[nc + 2];
+        } else {
+            int a = 3 * indices[3 * t], b = 3 * indices[3 * t + 1], c = 3 * indices[3 * t + 2];
+            double e1x = positions[b] - positions[a], e1y = positions[b + 1] - positions[a + 1], e1z = positions[b + 2] - positions[a + 2];
+            double e2x = positions[c] - positions[a], e2y = positions[c + 1] - positions[a + 1], e2z = positions[c + 2] - positions[a + 2];
+            nx = e1y * e2z - e1z * e2y;
+            ny = e1z * e2x - e1x * e2z;
+            nz = e1x * e2y - e1y * e2x;
+        }
+        double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (length > 0) {
+            nx /= length;
+            ny /= length;
+            nz /= length;
+        }
+        rec.setFaceNormal(r, nx, ny, nz);
+    }
+}
@@ -0,0 +1,70 @@
+package hittable;
+
+import math.Ray;
+
+/**
+ * The top level of a scene: an acceleration structure over the finite geometry, plus the unbounded objects
+ * (like an infinite floor plane) which are tested directly for every ray. Keeping the unbounded objects out of
+ * the BVH keeps its root bounds tight around the finite geometry.
+ */
+public class World implements Hittable {
+    private final Hittable bounded;
+    private final Hittable[] unbounded;
+
+    /**
+     * @param bounded Acceleration structure over the finite objects, typically a {@link FlatBVH}.
+     * @param unbounded The unbounded objects, see {@link HittableList#unbounded()}.
+     */
+    public World(Hittable bounded, HittableList unbounded) {
+        this.bounded = bounded;
+        this.unbounded = unbounded.objects.toArray(new Hittable[0]);
+    }
+
+    @Override
+    public boolean hit(Ray r, double tMin, double tMax, HitRecord rec) {
+        return hit(r, tMin, tMax, rec, null);
+    }
+
+    @Override
+    /**
+     * Tests the unbounded objects first, so their hit distance already limits the BVH traversal.
+     */
+    public boolean hit(Ray r, double tMin, double tMax, HitRecord rec, TraversalStats stats) {
+        boolean hitAnything = false;
+        double closestSoFar = tMax;
+        for (Hittable object : unbounded) {
+            if (object.hit(r, tMin, closestSoFar, rec, stats)) {
+                hitAnything = true;
+                closestSoFar = rec.t;
+            }
+        }
+        if (bounded.hit(r, tMin, closestSoFar, rec, stats)) {
+            hitAnything = true;
+        }
+        return hitAnything;
+    }
+
+    @Override
+    public boolean occluded(Ray r, double tMin, double tMax) {
+        return occluded(r, tMin, tMax, null);
+    }
+
+    @Override
+    /**
+     * Tests the unbounded objects first: a single plane test often settles the query without traversing the BVH.
+     */
+    public boolean occluded(Ray r, double tMin, double tMax, TraversalStats stats) {
+        for (Hittable object : unbounded) {
+            if (object.occluded(r, tMin, tMax, stats)) return true;
+        }
+        return bounded.occluded(r, tMin, tMax, stats);
+    }
+
+    @Override
+    /**
+     * Returns the bounds of the finite geometry. The unbounded objects are not included.
+     */
+    public AABB boundingBox() {
+        return bounded.boundingBox();
+    }
+}
@@ -0,0 +1,59 @@
+package main;
+
+import hittable.FlatBVH;
+import hittable.Grid;
+import hittable.Hittable;
+import hittable.HittableList;
+import hittable.SAHBuilder;
+
+/**
+ * Acceleration structures the finite objects of a scene can be put into. Which one is fastest depends on the
+ * scene: grids win when the objects are spread evenly and have similar sizes (like the sphere field of the
+ * default scene), the BVH adapts to everything else. Run {@link TraversalBenchmark} to compare them.
+ */
+public enum Accelerator {
+    /** {@link FlatBVH} built with the Surface Area Heuristic. */
+    BVH {
+        @Override
+        public Hittable build(HittableList objects) {
+            return new FlatBVH(objects, new SAHBuilder());
+        }
+    },
+    /** Uniform {@link Grid}. */
+    GRID {
+        @Override
+        public Hittable build(HittableList objects) {
+            return new Grid(objects);
+        }
+    },
+    /** {@link Grid} whose crowded cells get a grid of their own, for scenes with dense clusters. */
+    HGRID {
+        @Override
+        public Hittable build(HittableList objects) {
+            return new Grid(objects, true);
+        }
+    };
+
+    /**
+     * @param objects Bounded objects, see {@link HittableList#bounded()}.
+     * @return The acceleration structure over the objects.
+     */
+    public abstract Hittable build(HittableList objects);
+
+    /**
+     * @return A one-line summary of the structure for the log, like its node or cell count.
+     */
+    public static String describe(Hittable structure) {
+        if (structure instanceof FlatBVH) {
+            FlatBVH bvh = (FlatBVH) structure;
+            return "BVH: " + bvh.nodeCount() + " nodes, SAH cost " + bvh.sahCost();
+        }
+        if (structure instanceof Grid) {
+            Grid grid = (Grid) structure;
+            int[] n = grid.resolution();
+            return String.format("Grid: %dx%dx%d cells, %.2f objects per cell, %d split cells",
+                    n[0], n[1], n[2], grid.objectsPerCell(), grid.childGridCount());
+        }
+        return structure.getClass().getSimpleName();
+    }
+}
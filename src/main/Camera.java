@@ -1,6 +1,7 @@
 package main;
 
 import math.Ray;
+import math.Sampler;
 import math.Vec3;
 
 /**
@@ -46,25 +47,46 @@ public class Camera {
     /**
      * Genererar en stråle som går genom pixeln (s, t) på bildplanet.
      * s och t är i intervallet [0, 1], där (0, 0) är nedre vänstra hörnet och (1, 1) är övre högra hörnet.
+     * The sampler provides the lens position for depth of field.
      */
-    public Ray getRay(double s, double t) {
-        Vec3 rd = randomInUnitDisk().scale(lensRadius);
-        Vec3 offset = u.scale(rd.x).add(v.scale(rd.y));
-        Vec3 rayOrigin = origin.add(offset);
-        Vec3 direction = lowerLeftCorner
-                .add(horizontal.scale(s))
-                .add(vertical.scale(t))
-                .sub(origin)
-                .sub(offset); // Justera riktningen så den träffar fokusplanet
-                
-        return new Ray(rayOrigin, direction);
+    public Ray getRay(double s, double t, Sampler sampler) {
+        return getRay(s, t, sampler, new Ray());
     }
 
-    // Generates a random point within a unit circle (to simulate the aperture)
-    private Vec3 randomInUnitDisk() {
-        while (true) {
-            Vec3 p = new Vec3(Math.random() * 2 - 1, Math.random() * 2 - 1, 0);
-            if (p.lengthSquared() < 1) return p;
+    /**
+     * Same as {@link #getRay(double, double, Sampler)}, but overwrites an existing ray instead of allocating one.
+     * @return out
+     */
+    public Ray getRay(double s, double t, Sampler sampler, Ray out) {
+        // Generates a random point within a unit circle (to simulate the aperture)
+        double a = sampler.get1D() * 2 - 1;
+        double b = sampler.get1D() * 2 - 1;
+        double rdX = 0, rdY = 0;
+        if (a != 0 || b != 0) {
+            // Concentric mapping (Shirley-Chiu): squares around the center become rings, nothing is rejected
+            double radius, phi;
+            if (Math.abs(a) > Math.abs(b)) {
+                radius = a;
+                phi = (Math.PI / 4) * (b / a);
+            } else {
+                radius = b;
+                phi = Math.PI / 2 - (Math.PI / 4) * (a / b);
+            }
+            rdX = radius * Math.cos(phi) * lensRadius;
+            rdY = radius * Math.sin(phi) * lensRadius;
         }
+
+        double offsetX = u.x * rdX + v.x * rdY;
+        double offsetY = u.y * rdX + v.y * rdY;
+        double offsetZ = u.z * rdX + v.z * rdY;
+
+        // Justera riktningen så den träffar fokusplanet
+        return out.set(
+            origin.x + offsetX,
+            origin.y + offsetY,
+            origin.z + offsetZ,
+            lowerLeftCorner.x + horizontal.x * s + vertical.x * t - origin.x - offsetX,
+            lowerLeftCorner.y + horizontal.y * s + vertical.y * t - origin.y - offsetY,
+            lowerLeftCorner.z + horizontal.z * s + vertical.z * t - origin.z - offsetZ);
     }
 }
\ No newline at end of file
@@ -0,0 +1,134 @@
+package main;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory-mapped copy of a {@link Framebuffer}, so a long render can be resumed after the process dies.
+ * The file holds a header and two slots with the pixel data. A save always goes into the slot that is not
+ * current, is forced to disk, and only then becomes current through the header, so a crash during a save
+ * leaves the previous checkpoint intact. Everything is little-endian:
+ * <pre>
+ *   0   int    magic "RTCK"
+ *   4   int    format version
+ *   8   long   scene hash
+ *   16  int    width
+ *   20  int    height
+ *   24  int    current slot (0 or 1), -1 if nothing was saved yet
+ *   32  long   total number of samples in the current slot
+ *   40  long   time of the last save (ms since the epoch)
+ *   64  slot 0, then slot 1: width * height pixels of {@link Framebuffer#BYTES_PER_PIXEL} bytes each,
+ *       row by row from the top: float r, g, b (sums), int samples, double luminance mean, double m2
+ * </pre>
+ * A viewer can map the same file read-only and show the current slot while the render is running,
+ * dividing the sums by the sample counts.
+ */
+public class CheckpointFile implements Closeable {
+    private static final int MAGIC = 0x5254434B;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int CURRENT_SLOT = 24;
+    private static final int TOTAL_SAMPLES = 32;
+    private static final int SAVED_AT = 40;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final MappedByteBuffer[] slots = new MappedByteBuffer[2];
+
+    /**
+     * Opens a checkpoint, or creates a new one if the file is missing or belongs to another scene or size.
+     * @param file The checkpoint file.
+     * @param sceneHash Identifies the scene, camera and settings; a checkpoint with another hash is discarded.
+     * @param width Width of the image in pixels.
+     * @param height Height of the image in pixels.
+     * @throws IOException If the file can't be opened or mapped.
+     */
+    public CheckpointFile(File file, long sceneHash, int width, int height) throws IOException {
+        long slotSize = (long) width * height * Framebuffer.BYTES_PER_PIXEL;
+        if (slotSize > Integer.MAX_VALUE) throw new IllegalArgumentException("Image too large for a checkpoint");
+        long fileSize = HEADER_SIZE + 2 * slotSize;
+
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        boolean matches = channel.size() == fileSize;
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        matches = matches && header.getInt(0) == MAGIC && header.getInt(4) == VERSION
+                && header.getLong(8) == sceneHash && header.getInt(16) == width && header.getInt(20) == height;
+
+        if (!matches) {
+            channel.truncate(HEADER_SIZE);
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            header.putLong(8, sceneHash);
+            header.putInt(16, width);
+            header.putInt(20, height);
+            header.putInt(CURRENT_SLOT, -1);
+            header.putLong(TOTAL_SAMPLES, 0);
+            header.putLong(SAVED_AT, 0);
+        }
+        for (int i = 0; i < 2; i++) {
+            slots[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + i * slotSize, slotSize);
+            slots[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+        header.force();
+    }
+
+    /**
+     * Copies the current slot into the framebuffer.
+     * @param fb Framebuffer of the size the checkpoint was opened with.
+     * @return False if nothing was saved yet, in which case the framebuffer is left untouched.
+     */
+    public boolean load(Framebuffer fb) {
+        int current = header.getInt(CURRENT_SLOT);
+        if (current < 0) return false;
+        fb.load(slots[current]);
+        return true;
+    }
+
+    /**
+     * Saves the framebuffer into the other slot and makes it current once it is on disk.
+     * The framebuffer must not be changed while saving.
+     * @param fb The framebuffer to save.
+     */
+    public void save(Framebuffer fb) {
+        int next = header.getInt(CURRENT_SLOT) == 0 ? 1 : 0;
+        fb.store(slots[next]);
+        slots[next].force();
+
+        header.putLong(TOTAL_SAMPLES, fb.totalSamples());
+        header.putLong(SAVED_AT, System.currentTimeMillis());
+        header.putInt(CURRENT_SLOT, next);
+        header.force();
+    }
+
+    /**
+     * Saves the framebuffer if the last save is at least the given time ago and there are new samples.
+     * @param fb The framebuffer to save.
+     * @param intervalMillis Minimum time between two saves.
+     * @return True if it was saved.
+     */
+    public boolean saveIfDue(Framebuffer fb, long intervalMillis) {
+        if (System.currentTimeMillis() - header.getLong(SAVED_AT) < intervalMillis) return false;
+        if (fb.totalSamples() == totalSamples()) return false;
+        save(fb);
+        return true;
+    }
+
+    /**
+     * @return The number of samples in the current slot.
+     */
+    public long totalSamples() {
+        return header.getLong(TOTAL_SAMPLES);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,192 @@
+package main;
+
+import java.util.stream.IntStream;
+
+/**
+ * Edge-avoiding a-trous wavelet filter (Dammertz et al., "Edge-Avoiding A-Trous Wavelet Transform for fast Global
+ * Illumination Filtering", HPG 2010). Every pass blurs the image with a 5x5 B3-spline kernel whose taps are spread
+ * 2^pass pixels apart, so five passes cover a large neighbourhood with only 25 taps per pixel and pass. Each tap is
+ * weighted down by how different its color and {@link FeatureBuffers features} (normal, albedo, depth) are from the
+ * center pixel, so noise is smoothed within a surface but not across edges.
+ * <p>
+ * The filter works on the lighting alone: colors are divided by the albedo before filtering and multiplied with
+ * it afterwards, so textures like the checker floor stay sharp even where the lighting is blurred. How much two
+ * colors may differ is measured in standard deviations of the center pixel, like in SVGF (Schied et al.,
+ * "Spatiotemporal Variance-Guided Filtering", HPG 2017): the variance comes from the luminance statistics of the
+ * {@link Framebuffer}, is blurred over 3x3 pixels because a single pixel's estimate is noisy itself, and is
+ * filtered along with the colors, so it shrinks with every pass as far as the noise does. Noisy pixels are
+ * therefore smoothed strongly while well converged ones and real edges in the lighting (shadows, highlights) are
+ * kept. Rows are filtered in parallel.
+ */
+public class Denoiser {
+    private static final int PASSES = 5;
+    private static final double[] KERNEL = {1.0 / 16, 1.0 / 4, 3.0 / 8, 1.0 / 4, 1.0 / 16};
+    // Edge-stopping widths; the color width is in standard deviations and scaled by the strength
+    private static final double SIGMA_COLOR = 2;
+    private static final double SIGMA_NORMAL = 0.1;  // On 1 - cos of the angle between the normals
+    private static final double SIGMA_ALBEDO = 0.3;
+    private static final double SIGMA_DEPTH = 0.1;  // Relative depth difference, per step
+    // Keeps the color term finite where the lighting has no variance at all
+    private static final double EPSILON = 1e-6;
+    // Stands in for the unknown variance of pixels with fewer than 2 samples
+    private static final float MAX_VARIANCE = 1e6f;
+    // Albedo below this is not divided out, it would only amplify the noise
+    private static final double MIN_ALBEDO = 0.01;
+
+    private final double strength;
+
+    /**
+     * @param strength How strongly to smooth: 1 is the default, larger values also blur stronger noise (and more
+     *                 detail), smaller values keep more of both.
+     */
+    public Denoiser(double strength) {
+        if (strength <= 0) throw new IllegalArgumentException("strength must be positive");
+        this.strength = strength;
+    }
+
+    /**
+     * Filters the average radiance of every pixel.
+     * @param fb The noisy image.
+     * @param features Features of the same image.
+     * @return A new framebuffer with the filtered radiance as a single sample per pixel.
+     */
+    public Framebuffer denoise(Framebuffer fb, FeatureBuffers features) {
+        int width = fb.width, height = fb.height;
+        if (features.width != width || features.height != height) {
+            throw new IllegalArgumentException("The features must have the size of the image");
+        }
+        float[] albedo = features.albedo();
+        float[] normal = features.normal();
+        float[] depth = features.depth();
+
+        // Divide out the albedo: what is left is the lighting, which is smooth within a surface
+        int n = width * height;
+        float[] modulation = new float[3 * n];
+        float[] lighting = new float[3 * n];
+        float[] variance = new float[n];
+        for (int p = 0; p < n; p++) {
+            for (int c = 0; c < 3; c++) {
+                float a = albedo[3 * p + c];
+                modulation[3 * p + c] = a > MIN_ALBEDO ? a : 1;
+                lighting[3 * p + c] = (float) (fb.mean(p, c) / modulation[3 * p + c]);
+            }
+            // The luminance of the lighting is that of the radiance divided by (about) the albedo's luminance
+            double scale = luminance(modulation, p);
+            variance[p] = (float) Math.min(fb.variance(p) / (scale * scale), MAX_VARIANCE);
+        }
+
+        float[] next = new float[3 * n];
+        float[] nextVariance = new float[n];
+        for (int pass = 0; pass < PASSES; pass++) {
+            int step = 1 << pass;
+            double sigmaColor = SIGMA_COLOR * strength;
+            float[] in = lighting, out = next, inVariance = variance, outVariance = nextVariance;
+            float[] deviation = new float[n];
+            IntStream.range(0, height).parallel().forEach(y -> {
+                for (int x = 0; x < width; x++) {
+                    deviation[y * width + x] = (float) Math.sqrt(blurVariance(inVariance, x, y, width, height));
+                }
+            });
+            IntStream.range(0, height).parallel().forEach(y -> {
+                for (int x = 0; x < width; x++) {
+                    filter(in, inVariance, deviation, out, outVariance, x, y, width, height, step, sigmaColor,
+                            albedo, normal, depth);
+                }
+            });
+            next = lighting;
+            lighting = out;
+            nextVariance = variance;
+            variance = outVariance;
+        }
+
+        Framebuffer result = new Framebuffer(width, height);
+        for (int p = 0; p < n; p++) {
+            double r = lighting[3 * p] * modulation[3 * p];
+            double g = lighting[3 * p + 1] * modulation[3 * p + 1];
+            double b = lighting[3 * p + 2] * modulation[3 * p + 2];
+            result.add(p, r, g, b, 1, 0.2126 * r + 0.7152 * g + 0.0722 * b, 0);
+        }
+        return result;
+    }
+
+    private static double luminance(float[] rgb, int p) {
+        return 0.2126 * rgb[3 * p] + 0.7152 * rgb[3 * p + 1] + 0.0722 * rgb[3 * p + 2];
+    }
+
+    /**
+     * @return The variance of the pixel (x, y) blurred with a 3x3 Gaussian.
+     */
+    private static double blurVariance(float[] variance, int x, int y, int width, int height) {
+        double sum = 0, sumWeight = 0;
+        for (int dy = -1; dy <= 1; dy++) {
+            int qy = y + dy;
+            if (qy < 0 || qy >= height) continue;
+            for (int dx = -1; dx <= 1; dx++) {
+                int qx = x + dx;
+                if (qx < 0 || qx >= width) continue;
+                double weight = KERNEL[2 * dx + 2] * KERNEL[2 * dy + 2];
+                sum += weight * variance[qy * width + qx];
+                sumWeight += weight;
+            }
+        }
+        return sum / sumWeight;
+    }
+
+    /**
+     * One tap pattern of one pass for the pixel (x, y). The variance is filtered with the squared weights, which
+     * is the variance of the weighted average of independent pixels.
+     * @param deviation Standard deviation of the input, blurred.
+     */
+    private static void filter(float[] in, float[] variance, float[] deviation, float[] out, float[] outVariance,
+                               int x, int y, int width, int height, int step, double sigmaColor,
+                               float[] albedo, float[] normal, float[] depth) {
+        int p = y * width + x;
+        if (depth[p] == 0) {
+            // The sky has no noise worth filtering and nothing to be guided by
+            out[3 * p] = in[3 * p];
+            out[3 * p + 1] = in[3 * p + 1];
+            out[3 * p + 2] = in[3 * p + 2];
+            outVariance[p] = variance[p];
+            return;
+        }
+        double colorScale = 1 / (sigmaColor * deviation[p] + EPSILON);
+        double r = in[3 * p], g = in[3 * p + 1], b = in[3 * p + 2];
+        double depthScale = 1 / (SIGMA_DEPTH * step * depth[p]);
+        double sumR = 0, sumG = 0, sumB = 0, sumWeight = 0, sumVariance = 0;
+
+        for (int dy = -2; dy <= 2; dy++) {
+            int qy = y + dy * step;
+            if (qy < 0 || qy >= height) continue;
+            for (int dx = -2; dx <= 2; dx++) {
+                int qx = x + dx * step;
+                if (qx < 0 || qx >= width) continue;
+                int q = qy * width + qx;
+                if (depth[q] == 0) continue;
+
+                double dr = in[3 * q] - r, dg = in[3 * q + 1] - g, db = in[3 * q + 2] - b;
+                double ar = albedo[3 * q] - albedo[3 * p], ag = albedo[3 * q + 1] - albedo[3 * p + 1];
+                double ab = albedo[3 * q + 2] - albedo[3 * p + 2];
+                double cos = normal[3 * q] * normal[3 * p] + normal[3 * q + 1] * normal[3 * p + 1]
+                        + normal[3 * q + 2] * normal[3 * p + 2];
+                double normalTerm = Math.max(0, 1 - cos) / SIGMA_NORMAL;
+                double depthTerm = Math.abs(depth[q] - depth[p]) * depthScale;
+
+                // The RMS of the channel differences, so a change in hue stops the filter like one in brightness
+                double exponent = Math.sqrt((dr * dr + dg * dg + db * db) / 3) * colorScale
+                        + (ar * ar + ag * ag + ab * ab) / (SIGMA_ALBEDO * SIGMA_ALBEDO)
+                        + normalTerm + depthTerm;
+                double weight = KERNEL[dx + 2] * KERNEL[dy + 2] * Math.exp(-exponent);
+                sumR += weight * in[3 * q];
+                sumG += weight * in[3 * q + 1];
+                sumB += weight * in[3 * q + 2];
+                sumWeight += weight;
+                sumVariance += weight * weight * variance[q];
+            }
+        }
+        // The center tap always has weight KERNEL[2]^2, so the sum is never 0
+        out[3 * p] = (float) (sumR / sumWeight);
+        out[3 * p + 1] = (float) (sumG / sumWeight);
+        out[3 * p + 2] = (float) (sumB / sumWeight);
+        outVariance[p] = (float) (sumVariance / (sumWeight * sumWeight));
+    }
+}
@@ -0,0 +1,213 @@
+package main;
+
+import java.util.stream.IntStream;
+import math.MutableVec3;
+import math.Sampler;
+
+/**
+ * The {@link Sky} baked into a latitude-longitude table of radiance, so an escaped ray costs a bilinear table
+ * read instead of evaluating the sky. The rows are spaced evenly in height (y = cos(theta)) rather than in
+ * angle, which makes every texel cover the same solid angle and saves an acos per lookup:
+ * <pre>
+ *   phi = 2 * pi * (i + 0.5) / width - pi   (angle around +y, atan2(z, x))
+ *   y   = 1 - 2 * (j + 0.5) / height        (+1 at the zenith, -1 at the nadir)
+ *   rgb[3 * (j * width + i) .. + 2]         = radiance of texel (i, j)
+ * </pre>
+ * The table also holds a 2D CDF of the texel luminances, so directions can be drawn in proportion to how much
+ * light arrives from them: a marginal distribution picks the row and the conditional distribution of that row
+ * picks the column. That puts most samples into the few texels of the sun.
+ */
+public class Environment {
+    public static final int DEFAULT_WIDTH = 1024;
+    public static final int DEFAULT_HEIGHT = 512;
+
+    private final int width;
+    private final int height;
+    private final float[] rgb;
+    private final float[] weights;         // Luminance per texel, the unnormalized sampling density
+    private final double[] marginalCdf;    // height + 1 entries
+    private final double[] conditionalCdf; // width + 1 entries per row
+    private final double pdfScale;         // width * height / sum of weights, turns a weight into a density in uv
+
+    // The default sky, baked on first use
+    private static final class Default {
+        static final Environment SKY = bake(DEFAULT_WIDTH, DEFAULT_HEIGHT);
+    }
+
+    private Environment(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.rgb = new float[3 * width * height];
+        this.weights = new float[width * height];
+        this.marginalCdf = new double[height + 1];
+        this.conditionalCdf = new double[(width + 1) * height];
+
+        // The rows are independent, so they are filled in parallel
+        double[] rowSums = new double[height];
+        IntStream.range(0, height).parallel().forEach(j -> {
+            double cosTheta = 1 - 2 * (j + 0.5) / height;
+            double sinTheta = Math.sqrt(1 - cosTheta * cosTheta);
+            MutableVec3 radiance = new MutableVec3();
+            int c = j * (width + 1);
+            double sum = 0;
+            for (int i = 0; i < width; i++) {
+                double phi = 2 * Math.PI * (i + 0.5) / width - Math.PI;
+                Sky.color(sinTheta * Math.cos(phi), cosTheta, sinTheta * Math.sin(phi), radiance);
+                int t = j * width + i;
+                rgb[3 * t] = (float) radiance.x;
+                rgb[3 * t + 1] = (float) radiance.y;
+                rgb[3 * t + 2] = (float) radiance.z;
+                weights[t] = (float) (0.2126 * radiance.x + 0.7152 * radiance.y + 0.0722 * radiance.z);
+                conditionalCdf[c + i] = sum;
+                sum += weights[t];
+            }
+            normalize(conditionalCdf, c, width, sum);
+            rowSums[j] = sum;
+        });
+
+        double total = 0;
+        for (int j = 0; j < height; j++) {
+            marginalCdf[j] = total;
+            total += rowSums[j];
+        }
+        normalize(marginalCdf, 0, height, total);
+        this.pdfScale = total > 0 ? width * height / total : 0;
+    }
+
+    /**
+     * Turns running sums into a CDF that ends at exactly 1. A segment without weight becomes uniform.
+     */
+    private static void normalize(double[] cdf, int offset, int n, double sum) {
+        for (int k = 0; k < n; k++) {
+            cdf[offset + k] = sum > 0 ? cdf[offset + k] / sum : (double) k / n;
+        }
+        cdf[offset + n] = 1;
+    }
+
+    /**
+     * Bakes the {@link Sky} into a table.
+     * @param width Texels around the horizon.
+     * @param height Texels from the zenith to the nadir.
+     * @return The baked environment.
+     */
+    public static Environment bake(int width, int height) {
+        if (width < 1 || height < 1) throw new IllegalArgumentException("The table needs at least one texel");
+        return new Environment(width, height);
+    }
+
+    /**
+     * @return The {@link Sky} baked at {@link #DEFAULT_WIDTH} x {@link #DEFAULT_HEIGHT}, shared by every render.
+     */
+    public static Environment sky() {
+        return Default.SKY;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Radiance arriving from a direction, interpolated bilinearly between the four nearest texels.
+     * @param dx
+     * @param dy
+     * @param dz Direction the ray travels in, does not need to be normalized.
+     * @param out Receives the radiance.
+     * @return out
+     */
+    public MutableVec3 radiance(double dx, double dy, double dz, MutableVec3 out) {
+        double invLength = 1.0 / Math.sqrt(dx * dx + dy * dy + dz * dz);
+        // Continuous texel coordinates, with texel centers at whole numbers
+        double x = (atan2(dz, dx) + Math.PI) * (width / (2 * Math.PI)) - 0.5;
+        double y = (1 - dy * invLength) * (0.5 * height) - 0.5;
+        // Both are at least -0.5, so shifting by 1 makes the int cast round down like floor
+        int x0 = (int) (x + 1) - 1, y0 = (int) (y + 1) - 1;
+        double fx = x - x0, fy = y - y0;
+        // Wrap around in phi, clamp at the poles
+        int x1 = x0 + 1 == width ? 0 : x0 + 1;
+        if (x0 < 0) x0 = width - 1;
+        int y1 = Math.min(y0 + 1, height - 1);
+        if (y0 < 0) y0 = 0;
+
+        int t00 = 3 * (y0 * width + x0), t10 = 3 * (y0 * width + x1);
+        int t01 = 3 * (y1 * width + x0), t11 = 3 * (y1 * width + x1);
+        double w00 = (1 - fx) * (1 - fy), w10 = fx * (1 - fy), w01 = (1 - fx) * fy, w11 = fx * fy;
+        return out.set(
+                w00 * rgb[t00] + w10 * rgb[t10] + w01 * rgb[t01] + w11 * rgb[t11],
+                w00 * rgb[t00 + 1] + w10 * rgb[t10 + 1] + w01 * rgb[t01 + 1] + w11 * rgb[t11 + 1],
+                w00 * rgb[t00 + 2] + w10 * rgb[t10 + 2] + w01 * rgb[t01 + 2] + w11 * rgb[t11 + 2]);
+    }
+
+    /**
+     * Picks a direction with a density proportional to the luminance of the table.
+     * @param sampler Provides two random numbers.
+     * @param out Receives the normalized direction.
+     * @return The probability density of the direction per solid angle, see {@link #pdf}.
+     */
+    public double sample(Sampler sampler, MutableVec3 out) {
+        double u1 = sampler.get1D();
+        double u2 = sampler.get1D();
+        int row = find(marginalCdf, 0, height, u1);
+        double v = (row + (u1 - marginalCdf[row]) / (marginalCdf[row + 1] - marginalCdf[row])) / height;
+        int c = row * (width + 1);
+        int column = find(conditionalCdf, c, width, u2);
+        double u = (column + (u2 - conditionalCdf[c + column]) / (conditionalCdf[c + column + 1] - conditionalCdf[c + column])) / width;
+
+        double cosTheta = 1 - 2 * v, phi = 2 * Math.PI * u - Math.PI;
+        double sinTheta = Math.sqrt(Math.max(0, 1 - cosTheta * cosTheta));
+        out.set(sinTheta * Math.cos(phi), cosTheta, sinTheta * Math.sin(phi));
+        // Every texel covers 4 pi / (width * height) steradians
+        return weights[row * width + column] * pdfScale / (4 * Math.PI);
+    }
+
+    /**
+     * @param ux
+     * @param uy
+     * @param uz Normalized direction.
+     * @return The probability density of {@link #sample} picking the direction, per solid angle.
+     */
+    public double pdf(double ux, double uy, double uz) {
+        int i = (int) ((atan2(uz, ux) + Math.PI) * (width / (2 * Math.PI)));
+        int j = (int) ((1 - uy) * (0.5 * height));
+        i = Math.max(0, Math.min(i, width - 1));
+        j = Math.max(0, Math.min(j, height - 1));
+        return weights[j * width + i] * pdfScale / (4 * Math.PI);
+    }
+
+    /**
+     * Polynomial approximation of {@link Math#atan2}, accurate to about 1e-5 radians (a small fraction of a
+     * texel) and several times faster.
+     */
+    static double atan2(double y, double x) {
+        double ax = Math.abs(x), ay = Math.abs(y);
+        double max = Math.max(ax, ay);
+        if (max == 0) return 0;
+        double a = Math.min(ax, ay) / max;
+        double s = a * a;
+        double r = a * (0.99997726 + s * (-0.33262347 + s * (0.19354346 + s * (-0.11643287
+                + s * (0.05265332 + s * -0.01172120)))));
+        if (ay > ax) r = Math.PI / 2 - r;
+        if (x < 0) r = Math.PI - r;
+        return y < 0 ? -r : r;
+    }
+
+    /**
+     * Binary search in the CDF segment cdf[offset .. offset + n].
+     * @return The interval k with cdf[offset + k] &lt;= x &lt; cdf[offset + k + 1], skipping empty intervals.
+     */
+    private static int find(double[] cdf, int offset, int n, double x) {
+        int low = 0, high = n - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (cdf[offset + mid] <= x) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,139 @@
+package main;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import javax.imageio.ImageIO;
+
+/**
+ * Per-pixel features of the surfaces the camera sees, averaged over the samples of the pixel, which guide the
+ * {@link Denoiser} along edges and texture detail:
+ * <ul>
+ *   <li>{@code albedo}: the attenuation of the surface (see {@link material.Wrapper}).</li>
+ *   <li>{@code normal}: the surface normal, facing the ray.</li>
+ *   <li>{@code depth}: the distance from the camera.</li>
+ * </ul>
+ * Perfect mirrors and glass are looked through: the features belong to the first diffuse or rough surface of the
+ * path, with the albedo tinted by the bounces before it, so reflections keep their edges. Rays that escape into
+ * the sky have the tint as albedo, no normal and depth 0. The features of a sample are recorded by the
+ * {@link PathIntegrator} into its {@link TraceContext}.
+ * Like the {@link Framebuffer}, pixels are stored row by row from the top and every tile writes only its own.
+ */
+public class FeatureBuffers {
+    public final int width;
+    public final int height;
+    private final int[] samples;
+    private final float[] albedo;
+    private final float[] normal;
+    private final float[] depth;
+
+    public FeatureBuffers(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.samples = new int[width * height];
+        this.albedo = new float[3 * width * height];
+        this.normal = new float[3 * width * height];
+        this.depth = new float[width * height];
+    }
+
+    /**
+     * Adds the features of a batch of samples of one pixel.
+     * @param pixel Index as returned by {@link Framebuffer#index}.
+     * @param n Number of samples in the batch.
+     * @param sums Sums over the batch: albedo r, g, b, normal x, y, z, depth.
+     */
+    public void add(int pixel, int n, double[] sums) {
+        samples[pixel] += n;
+        for (int c = 0; c < 3; c++) {
+            albedo[3 * pixel + c] += (float) sums[c];
+            normal[3 * pixel + c] += (float) sums[3 + c];
+        }
+        depth[pixel] += (float) sums[6];
+    }
+
+    /**
+     * @return The average albedo of every pixel, three floats per pixel.
+     */
+    public float[] albedo() {
+        return average(albedo, 3);
+    }
+
+    /**
+     * @return The average normal of every pixel, three floats per pixel, renormalized. Zero for the sky.
+     */
+    public float[] normal() {
+        float[] map = average(normal, 3);
+        for (int p = 0; p < samples.length; p++) {
+            float x = map[3 * p], y = map[3 * p + 1], z = map[3 * p + 2];
+            float length = (float) Math.sqrt(x * x + y * y + z * z);
+            if (length > 0) {
+                map[3 * p] = x / length;
+                map[3 * p + 1] = y / length;
+                map[3 * p + 2] = z / length;
+            }
+        }
+        return map;
+    }
+
+    /**
+     * @return The average depth of every pixel.
+     */
+    public float[] depth() {
+        return average(depth, 1);
+    }
+
+    private float[] average(float[] sums, int channels) {
+        float[] map = new float[sums.length];
+        for (int p = 0; p < samples.length; p++) {
+            float scale = samples[p] > 0 ? 1.0f / samples[p] : 0;
+            for (int c = 0; c < channels; c++) map[channels * p + c] = sums[channels * p + c] * scale;
+        }
+        return map;
+    }
+
+    /**
+     * Saves the features as images next to the output file: render1_albedo.png, render1_normal.png (the
+     * components mapped from -1..1 to 0..1) and render1_depth.png (white is near, black is the sky and everything
+     * beyond the 95th percentile of the depths, so a ground plane running to the horizon doesn't squeeze the rest
+     * of the scene into white).
+     * @param outputFile The beauty image.
+     */
+    public void write(File outputFile) throws IOException {
+        float[] albedo = albedo();
+        float[] normal = normal();
+        float[] depth = depth();
+        float[] sorted = depth.clone();
+        Arrays.sort(sorted);
+        float maxDepth = sorted[(int) (0.95 * (sorted.length - 1))];
+
+        int[] albedoPixels = new int[samples.length];
+        int[] normalPixels = new int[samples.length];
+        int[] depthPixels = new int[samples.length];
+        for (int p = 0; p < samples.length; p++) {
+            albedoPixels[p] = rgb(albedo[3 * p], albedo[3 * p + 1], albedo[3 * p + 2]);
+            normalPixels[p] = rgb(0.5 * normal[3 * p] + 0.5, 0.5 * normal[3 * p + 1] + 0.5, 0.5 * normal[3 * p + 2] + 0.5);
+            double near = depth[p] > 0 && maxDepth > 0 ? 1 - depth[p] / maxDepth : 0;
+            depthPixels[p] = rgb(near, near, near);
+        }
+        write(albedoPixels, Renderer.siblingFile(outputFile, "_albedo.png"));
+        write(normalPixels, Renderer.siblingFile(outputFile, "_normal.png"));
+        write(depthPixels, Renderer.siblingFile(outputFile, "_depth.png"));
+        System.out.printf(Locale.ROOT, "Features: albedo, normal and depth (0 - %.2f)%n", maxDepth);
+    }
+
+    private void write(int[] pixels, File file) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, width, height, pixels, 0, width);
+        ImageIO.write(image, "png", file);
+    }
+
+    private static int rgb(double r, double g, double b) {
+        return (toByte(r) << 16) | (toByte(g) << 8) | toByte(b);
+    }
+
+    private static int toByte(double x) {
+        return (int) (255 * Math.max(0, Math.min(1, x)) + 0.5);
+    }
+}
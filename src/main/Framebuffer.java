@@ -0,0 +1,261 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+
+/**
+ * Per-pixel accumulation buffer for linear HDR radiance.
+ * For every pixel it stores the float sums of all samples in one contiguous RGB array, how many samples were
+ * taken and the running mean and variance of their luminance, which the adaptive mode of {@link Renderer} uses
+ * to find the noisy pixels. Nothing is clamped or gamma-corrected here; that happens in a separate
+ * {@link #toneMap} pass, so a finished buffer can also be saved as HDR with {@link #writePFM}.
+ * Pixels are stored row by row starting at the top of the image, like in a {@link java.awt.image.BufferedImage}.
+ * Tiles only ever touch their own pixels, so no locking is needed while rendering.
+ * A framebuffer may also cover just a window of the image (for example one tile rendered on another machine),
+ * in which case {@link #index} still takes image coordinates and {@link #merge} adds it into the full image.
+ */
+public class Framebuffer {
+    // Two-sided 95% confidence interval
+    private static final double Z_95 = 1.96;
+
+    /** Size of one pixel in {@link #store} and {@link #load}: float r, g, b, int samples, double mean, double m2. */
+    public static final int BYTES_PER_PIXEL = 32;
+
+    public final int width;
+    public final int height;
+    public final int offsetX; // Image position of the top left pixel
+    public final int offsetY;
+    private final float[] rgb;
+    private final int[] samples;
+    private final double[] lumMean;
+    private final double[] lumM2;
+
+    public Framebuffer(int width, int height) {
+        this(0, 0, width, height);
+    }
+
+    /**
+     * Creates a framebuffer for a window of the image.
+     * @param offsetX Image column of the left edge of the window.
+     * @param offsetY Image row of the top edge of the window, 0 being the top of the image.
+     * @param width Width of the window in pixels.
+     * @param height Height of the window in pixels.
+     */
+    public Framebuffer(int offsetX, int offsetY, int width, int height) {
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        this.width = width;
+        this.height = height;
+        this.rgb = new float[3 * width * height];
+        this.samples = new int[width * height];
+        this.lumMean = new double[width * height];
+        this.lumM2 = new double[width * height];
+    }
+
+    /**
+     * @param x Image column, 0 is the left edge.
+     * @param y Image row, 0 is the top edge.
+     * @return The index of the pixel.
+     */
+    public int index(int x, int y) {
+        return (y - offsetY) * width + (x - offsetX);
+    }
+
+    /**
+     * Adds a batch of samples to a pixel. The luminance statistics are merged with Chan's parallel variance
+     * formula, so a pixel can be refined over several rounds without keeping its individual samples.
+     * @param pixel Index of the pixel.
+     * @param r Sum of the red components of the batch.
+     * @param g Sum of the green components of the batch.
+     * @param b Sum of the blue components of the batch.
+     * @param n Number of samples in the batch.
+     * @param mean Mean luminance of the batch.
+     * @param m2 Sum of squared luminance deviations from the batch mean.
+     */
+    public void add(int pixel, double r, double g, double b, int n, double mean, double m2) {
+        if (n == 0) return;
+        rgb[3 * pixel] += (float) r;
+        rgb[3 * pixel + 1] += (float) g;
+        rgb[3 * pixel + 2] += (float) b;
+
+        int na = samples[pixel];
+        int total = na + n;
+        double delta = mean - lumMean[pixel];
+        lumMean[pixel] += delta * n / total;
+        lumM2[pixel] += m2 + delta * delta * ((double) na * n / total);
+        samples[pixel] = total;
+    }
+
+    /**
+     * Adds all samples of another framebuffer, typically a window of this one, into the matching pixels.
+     * Since the statistics are merged like any other batch, it does not matter whether the other buffer
+     * holds whole pixels or just a range of their samples.
+     * @param other The framebuffer to add, which must lie inside this one.
+     */
+    public void merge(Framebuffer other) {
+        for (int y = 0; y < other.height; y++) {
+            for (int x = 0; x < other.width; x++) {
+                int src = y * other.width + x;
+                other.addTo(this, src, index(other.offsetX + x, other.offsetY + y));
+            }
+        }
+    }
+
+    private void addTo(Framebuffer target, int src, int dst) {
+        target.add(dst, rgb[3 * src], rgb[3 * src + 1], rgb[3 * src + 2], samples[src], lumMean[src], lumM2[src]);
+    }
+
+    /**
+     * @param pixel Index of the pixel.
+     * @param channel 0 = red, 1 = green, 2 = blue.
+     * @return The sum of all samples of the pixel in that channel.
+     */
+    public double sum(int pixel, int channel) {
+        return rgb[3 * pixel + channel];
+    }
+
+    /**
+     * @param pixel Index of the pixel.
+     * @param channel 0 = red, 1 = green, 2 = blue.
+     * @return The average radiance of the pixel in that channel, 0 without samples.
+     */
+    public double mean(int pixel, int channel) {
+        int n = samples[pixel];
+        return n > 0 ? rgb[3 * pixel + channel] / (double) n : 0;
+    }
+
+    public int sampleCount(int pixel) {
+        return samples[pixel];
+    }
+
+    /**
+     * @param pixel Index of the pixel.
+     * @return The variance of the mean luminance of the pixel (the squared standard error), which shrinks with
+     *         every sample; infinity with fewer than 2 samples.
+     */
+    public double variance(int pixel) {
+        int n = samples[pixel];
+        return n < 2 ? Double.POSITIVE_INFINITY : lumM2[pixel] / (n - 1) / n;
+    }
+
+    /**
+     * Estimates how far the displayed value of a pixel may still be off. The 95% confidence interval of the
+     * mean luminance is mapped through the gamma 2 curve and the clamp to white used for the output image,
+     * so dark pixels (where the curve is steep) need a tighter interval than bright ones, and a pixel whose
+     * whole interval lies above white is done.
+     * @param pixel Index of the pixel.
+     * @return Half the width of the interval in display units [0, 1], or infinity with fewer than 2 samples.
+     */
+    public double error(int pixel) {
+        int n = samples[pixel];
+        if (n < 2) return Double.POSITIVE_INFINITY;
+        double variance = lumM2[pixel] / (n - 1);
+        double halfWidth = Z_95 * Math.sqrt(variance / n);
+        double mean = lumMean[pixel];
+        double low = Math.sqrt(Math.min(Math.max(mean - halfWidth, 0), 1));
+        double high = Math.sqrt(Math.min(Math.max(mean + halfWidth, 0), 1));
+        return 0.5 * (high - low);
+    }
+
+    /**
+     * @return The highest number of samples any pixel has received.
+     */
+    public int maxSampleCount() {
+        int max = 0;
+        for (int n : samples) max = Math.max(max, n);
+        return max;
+    }
+
+    /**
+     * @return The total number of samples taken over all pixels.
+     */
+    public long totalSamples() {
+        long total = 0;
+        for (int n : samples) total += n;
+        return total;
+    }
+
+    /**
+     * Copies every pixel into a buffer, {@link #BYTES_PER_PIXEL} bytes each, starting at index 0.
+     * The byte order of the buffer is used as is.
+     * @param buf Buffer with room for width * height pixels.
+     */
+    public void store(ByteBuffer buf) {
+        for (int p = 0; p < samples.length; p++) {
+            int o = p * BYTES_PER_PIXEL;
+            buf.putFloat(o, rgb[3 * p]);
+            buf.putFloat(o + 4, rgb[3 * p + 1]);
+            buf.putFloat(o + 8, rgb[3 * p + 2]);
+            buf.putInt(o + 12, samples[p]);
+            buf.putDouble(o + 16, lumMean[p]);
+            buf.putDouble(o + 24, lumM2[p]);
+        }
+    }
+
+    /**
+     * Replaces every pixel with the contents of a buffer written by {@link #store}.
+     * @param buf Buffer holding width * height pixels, starting at index 0.
+     */
+    public void load(ByteBuffer buf) {
+        for (int p = 0; p < samples.length; p++) {
+            int o = p * BYTES_PER_PIXEL;
+            rgb[3 * p] = buf.getFloat(o);
+            rgb[3 * p + 1] = buf.getFloat(o + 4);
+            rgb[3 * p + 2] = buf.getFloat(o + 8);
+            samples[p] = buf.getInt(o + 12);
+            lumMean[p] = buf.getDouble(o + 16);
+            lumM2[p] = buf.getDouble(o + 24);
+        }
+    }
+
+    /**
+     * Tone maps the whole buffer into packed 8-bit RGB values. Rows are processed in parallel, and the inner
+     * loop only reads the primitive arrays, so it is cheap compared to rendering and can be rerun with other
+     * settings on a finished buffer.
+     * @param mapper The curve to use.
+     * @param exposure Scale applied to the radiance before the curve.
+     * @return The pixels as 0xRRGGBB, row by row from the top, ready for {@code BufferedImage.setRGB}.
+     */
+    public int[] toneMap(ToneMapper mapper, double exposure) {
+        int[] pixels = new int[width * height];
+        IntStream.range(0, height).parallel().forEach(y -> {
+            for (int p = y * width; p < (y + 1) * width; p++) {
+                int n = samples[p];
+                double scale = n > 0 ? 1.0 / n : 0;
+                pixels[p] = mapper.toRGB(rgb[3 * p] * scale, rgb[3 * p + 1] * scale, rgb[3 * p + 2] * scale, exposure);
+            }
+        });
+        return pixels;
+    }
+
+    /**
+     * Saves the average linear radiance as a Portable Float Map (PFM): a short text header followed by
+     * little-endian 32-bit floats, three per pixel, with the bottom row first.
+     * @param file The file to write.
+     * @throws IOException If the file can't be written.
+     */
+    public void writePFM(File file) throws IOException {
+        byte[] header = ("PF\n" + width + " " + height + "\n-1.0\n").getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer row = ByteBuffer.allocate(12 * width).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(header));
+            for (int y = height - 1; y >= 0; y--) {
+                row.clear();
+                for (int p = y * width; p < (y + 1) * width; p++) {
+                    int n = samples[p];
+                    float scale = n > 0 ? 1.0f / n : 0;
+                    row.putFloat(rgb[3 * p] * scale).putFloat(rgb[3 * p + 1] * scale).putFloat(rgb[3 * p + 2] * scale);
+                }
+                row.flip();
+                while (row.hasRemaining()) channel.write(row);
+            }
+        }
+    }
+}
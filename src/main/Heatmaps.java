@@ -0,0 +1,156 @@
+package main;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import javax.imageio.ImageIO;
+
+/**
+ * Per-pixel diagnostic images (AOVs) that show where the render time goes, enabled with
+ * {@link Renderer#setHeatmapOutput}:
+ * <ul>
+ *   <li>{@code nodes}: BVH nodes visited per camera ray.</li>
+ *   <li>{@code prims}: primitive intersection tests per camera ray.</li>
+ *   <li>{@code time}: wall-clock time spent on the pixel, in microseconds, over all of its samples.</li>
+ *   <li>{@code depth}: average number of rays per path.</li>
+ * </ul>
+ * Every map is saved as a false-color PNG and as a single-channel PFM with the raw values. The colors are
+ * scaled to the 99.5th percentile of the map, so a few extreme pixels don't wash out the rest of the image.
+ * Like the {@link Framebuffer}, pixels are stored row by row from the top and every tile writes only its own.
+ */
+public class Heatmaps {
+    // The colors of a map go up to this percentile of its values
+    private static final double SCALE_PERCENTILE = 0.995;
+
+    public final int width;
+    public final int height;
+    private final long[] samples;
+    private final long[] nodes;
+    private final long[] primitiveTests;
+    private final long[] rays;
+    private final long[] nanos;
+
+    public Heatmaps(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.samples = new long[width * height];
+        this.nodes = new long[width * height];
+        this.primitiveTests = new long[width * height];
+        this.rays = new long[width * height];
+        this.nanos = new long[width * height];
+    }
+
+    /**
+     * Adds the work done for a batch of samples of one pixel.
+     * @param pixel Index as returned by {@link Framebuffer#index}.
+     * @param n Number of samples (camera rays) in the batch.
+     * @param nodes BVH nodes visited by the camera rays.
+     * @param primitiveTests Primitive tests of the camera rays.
+     * @param rays Rays traced for all paths of the batch.
+     * @param nanos Wall-clock time spent on the batch.
+     */
+    public void add(int pixel, int n, long nodes, long primitiveTests, long rays, long nanos) {
+        this.samples[pixel] += n;
+        this.nodes[pixel] += nodes;
+        this.primitiveTests[pixel] += primitiveTests;
+        this.rays[pixel] += rays;
+        this.nanos[pixel] += nanos;
+    }
+
+    public float[] nodesPerRay() {
+        return perSample(nodes);
+    }
+
+    public float[] primitiveTestsPerRay() {
+        return perSample(primitiveTests);
+    }
+
+    public float[] pathDepth() {
+        return perSample(rays);
+    }
+
+    public float[] microseconds() {
+        float[] map = new float[width * height];
+        for (int p = 0; p < map.length; p++) map[p] = nanos[p] / 1e3f;
+        return map;
+    }
+
+    private float[] perSample(long[] values) {
+        float[] map = new float[width * height];
+        for (int p = 0; p < map.length; p++) {
+            map[p] = samples[p] > 0 ? (float) values[p] / samples[p] : 0;
+        }
+        return map;
+    }
+
+    /**
+     * Saves every map next to the output file, e.g. render1.png -> render1_nodes.png and render1_nodes.pfm.
+     * @param outputFile The beauty image.
+     */
+    public void write(File outputFile) throws IOException {
+        write(nodesPerRay(), "nodes", outputFile);
+        write(primitiveTestsPerRay(), "prims", outputFile);
+        write(microseconds(), "time", outputFile);
+        write(pathDepth(), "depth", outputFile);
+    }
+
+    private void write(float[] map, String name, File outputFile) throws IOException {
+        float max = percentile(map, SCALE_PERCENTILE);
+        int[] pixels = new int[map.length];
+        for (int p = 0; p < map.length; p++) {
+            pixels[p] = falseColor(max > 0 ? map[p] / max : 0);
+        }
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, width, height, pixels, 0, width);
+        ImageIO.write(image, "png", Renderer.siblingFile(outputFile, "_" + name + ".png"));
+        writePFM(map, Renderer.siblingFile(outputFile, "_" + name + ".pfm"));
+        System.out.printf(Locale.ROOT, "Heatmap %s: 0 - %.2f (99.5%%), max %.2f%n", name, max, percentile(map, 1));
+    }
+
+    private static float percentile(float[] map, double fraction) {
+        float[] sorted = Arrays.copyOf(map, map.length);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.min(sorted.length - 1, Math.floor(fraction * sorted.length))];
+    }
+
+    /**
+     * Maps 0..1 to the Turbo color map (Mikhailov's polynomial fit): dark blue, cyan, green, yellow, red.
+     * Values above 1 stay dark red.
+     */
+    static int falseColor(double t) {
+        t = Math.max(0, Math.min(1, t));
+        double r = 0.13572138 + t * (4.61539260 + t * (-42.66032258 + t * (132.13108234 + t * (-152.94239396 + t * 59.28637943))));
+        double g = 0.09140261 + t * (2.19418839 + t * (4.84296658 + t * (-14.18503333 + t * (4.27729857 + t * 2.82956604))));
+        double b = 0.10667330 + t * (12.64194608 + t * (-60.58204836 + t * (110.36276771 + t * (-89.90310912 + t * 27.34824973))));
+        return (toByte(r) << 16) | (toByte(g) << 8) | toByte(b);
+    }
+
+    private static int toByte(double x) {
+        return (int) (255 * Math.max(0, Math.min(1, x)) + 0.5);
+    }
+
+    /**
+     * Saves a map as a grayscale ("Pf") PFM: little-endian floats, bottom row first.
+     */
+    private void writePFM(float[] map, File file) throws IOException {
+        byte[] header = ("Pf\n" + width + " " + height + "\n-1.0\n").getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer row = ByteBuffer.allocate(4 * width).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(header));
+            for (int y = height - 1; y >= 0; y--) {
+                row.clear();
+                for (int p = y * width; p < (y + 1) * width; p++) row.putFloat(map[p]);
+                row.flip();
+                while (row.hasRemaining()) channel.write(row);
+            }
+        }
+    }
+}
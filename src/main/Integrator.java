@@ -0,0 +1,18 @@
+package main;
+
+import hittable.Hittable;
+import math.Ray;
+
+/**
+ * Computes the radiance arriving along a camera ray. Implementations must be thread-safe, since all tiles share
+ * one integrator; per-sample state lives in the {@link TraceContext} of the calling thread.
+ */
+public interface Integrator {
+    /**
+     * Calculates the color seen along a ray and stores it in {@code ctx.color}.
+     * @param r The camera ray. Not modified.
+     * @param world The scene.
+     * @param ctx The context of the calling thread, providing the sampler and scratch objects.
+     */
+    void rayColor(Ray r, Hittable world, TraceContext ctx);
+}
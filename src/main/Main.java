@@ -1,16 +1,26 @@
 package main;
 
+import hittable.Hittable;
 import hittable.HittableList;
+import hittable.Instance;
 import hittable.Sphere;
+import hittable.World;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 import material.Dielectric; // Don't forget this import!
 import material.Lambertian;
 import material.Material;
 import material.Metal;
+import math.Track;
+import math.Transform;
 import math.Vec3;
 
 /**
  * Main class to set up the scene and start rendering.
+ * Renders the built-in scene, or the scene file given as the first argument (see {@link SceneParser}).
  */
 public class Main {
 
@@ -19,11 +29,177 @@ public class Main {
         int imageWidth = 1200; 
         int samplesPerPixel = 500; // Higher samples for better quality (especially for metal)
         int maxDepth = 50;
+        int threads = Runtime.getRuntime().availableProcessors(); // 1 = render on the main thread
+        int tileSize = 16;
+        long seed = 0; // Same seed = bit-identical image, regardless of thread count
+        ToneMapper toneMapper = ToneMapper.CLAMP; // ACES or REINHARD keep the sun highlights
+        double exposure = 1.0;
+        boolean hdrOutput = false; // true = also save the linear radiance as renderN.pfm
+        boolean checkpoint = false; // true = keep images/render.checkpoint up to date and resume from it
+        boolean adaptiveSampling = false; // true = samplesPerPixel is the average, noisy pixels get more
+        boolean metrics = false; // true = count rays and traversal work, save them as renderN_stats.json
+        boolean heatmaps = false; // true = also save traversal cost heatmaps (renderN_nodes.png, ...)
+        double denoise = 0; // > 0 = denoise with this strength (1 = default), then ~4x fewer samples on smooth surfaces
+        boolean keepNoisy = false; // true = also save the image before denoising as renderN_noisy.png
+        boolean features = false; // true = also save the denoiser's guides (renderN_albedo.png, _normal, _depth)
+        Accelerator accelerator = Accelerator.BVH; // GRID is faster for the evenly spread default spheres
+        SamplerType sampler = SamplerType.INDEPENDENT; // SOBOL = less noise at the same sample count
+        int frames = 0; // > 0 = render an animation of the default scene with this many frames (see createSequence)
         
         double aspectRatio = 16.0 / 9.0;
+
+        // A scene file brings its own render settings, camera and objects
+        SceneDescription scene = null;
+        File sceneFile = args.length > 0 ? new File(args[0]) : null;
+        if (sceneFile != null) {
+            long loadStart = System.nanoTime();
+            scene = SceneCache.load(sceneFile);
+            System.out.printf("Scene %s: %d spheres, %d planes, %d meshes, loaded in %.1f ms%n", sceneFile.getName(),
+                    scene.sphereCount(), scene.planeCount(), scene.meshCount(), (System.nanoTime() - loadStart) / 1e6);
+            imageWidth = scene.imageWidth;
+            samplesPerPixel = scene.samplesPerPixel;
+            maxDepth = scene.maxDepth;
+            seed = scene.seed;
+            toneMapper = scene.toneMapper;
+            exposure = scene.exposure;
+            aspectRatio = scene.aspectRatio;
+            accelerator = scene.accelerator;
+            sampler = scene.sampler;
+        }
         int imageHeight = (int)(imageWidth / aspectRatio);
 
         // --- CREATE THE WORLD ---
+        int worldRange = 60;
+        long worldSeed = 42; // Same seed = same sphere layout, so a checkpoint can be resumed
+        HittableList world = scene != null ? scene.createWorld() : createWorld(worldRange, worldSeed);
+
+        // --- CAMERA ---
+        Camera cam = scene != null ? scene.createCamera() : createCamera(aspectRatio);
+
+        // --- RENDERING ---
+        String folderName = "images";
+        File directory = new File(folderName);
+        if (!directory.exists()) directory.mkdirs();
+
+        Renderer renderer;
+        if (scene != null) {
+            renderer = scene.createRenderer();
+        } else {
+            renderer = new Renderer(imageWidth, imageHeight, samplesPerPixel, maxDepth);
+            renderer.setSampler(sampler.create(seed));
+            renderer.setToneMapping(toneMapper, exposure);
+        }
+        renderer.setThreads(threads);
+        renderer.setTileSize(tileSize);
+        renderer.setHdrOutput(hdrOutput);
+        if (adaptiveSampling) {
+            renderer.setAdaptiveSampling(32, 4 * samplesPerPixel, 0.004);
+        }
+        renderer.setHeatmapOutput(heatmaps);
+        renderer.setDenoising(denoise, keepNoisy);
+        renderer.setFeatureOutput(features);
+        RenderStats stats = metrics ? new RenderStats() : null;
+        renderer.setMetrics(stats);
+
+        if (frames > 0 && scene != null) {
+            System.err.println("Warning: frames is ignored, the animation only exists for the built-in scene");
+        }
+        if (frames > 0 && scene == null) {
+            // --- ANIMATION --- Every frame goes into its own file in images/sequenceN
+            int counter = 1;
+            while (new File(directory, "sequence" + counter).exists()) counter++;
+            File sequenceDirectory = new File(directory, "sequence" + counter);
+            System.out.println("Starting sequence of " + frames + " frames! Output target: " + sequenceDirectory);
+            createSequence(world, frames, aspectRatio).render(renderer, sequenceDirectory);
+            return;
+        }
+
+        // Acceleration structure (Optimization) over the finite objects only, a BVH built with the Surface Area
+        // Heuristic by default. Infinite objects like the floor plane are tested directly next to it.
+        long buildStart = System.nanoTime();
+        Hittable structure = accelerator.build(world.bounded());
+        if (stats != null) stats.buildNanos = System.nanoTime() - buildStart;
+        World bvhWorld = new World(structure, world.unbounded());
+        System.out.println(Accelerator.describe(structure));
+
+        int counter = 1;
+        File outputFile;
+        while (true) {
+            outputFile = new File(directory, "render" + counter + ".png");
+            if (!outputFile.exists()) break;
+            counter++;
+        }
+
+        System.out.println("Starting render! Output target: " + outputFile.getName());
+        if (checkpoint) {
+            // Everything that decides what the image looks like goes into the hash
+            long sceneHash = Arrays.hashCode(new long[] {
+                worldRange, worldSeed, maxDepth, seed, sampler.ordinal(), Double.doubleToLongBits(aspectRatio),
+                sceneFile != null ? sceneFile.length() : 0, sceneFile != null ? sceneFile.lastModified() : 0
+            });
+            renderer.setCheckpoint(new File(directory, "render.checkpoint"), sceneHash, 60_000);
+        }
+        renderer.render(bvhWorld, cam, outputFile);
+    }
+
+    /**
+     * Creates the default animation for the default scene: one turn of the camera around the scene while the
+     * three big spheres bounce. The big spheres (the last three objects of {@link #createWorld(int, long)}) are
+     * replaced by instances so they can move.
+     * @param world The default scene, modified.
+     * @param frames Number of frames.
+     * @param aspectRatio Width divided by height of the image.
+     * @return The sequence, ready to render.
+     */
+    public static Sequence createSequence(HittableList world, int frames, double aspectRatio) {
+        double duration = 4; // Seconds, one turn of the camera and four bounces per sphere
+        List<Instance> heroes = new ArrayList<>();
+        for (int i = world.objects.size() - 3; i < world.objects.size(); i++) {
+            Instance hero = new Instance(world.objects.get(i), Transform.identity(), null);
+            world.objects.set(i, hero);
+            heroes.add(hero);
+        }
+
+        Sequence sequence = new Sequence(world, frames, duration);
+        for (int i = 0; i < heroes.size(); i++) {
+            // Up and down every half second, each sphere a quarter bounce after the previous one
+            Track bounce = new Track();
+            for (double t = -0.25 * i; t <= duration + 0.5; t += 0.5) {
+                bounce.key(t, new Vec3(0, Math.round((t + 0.25 * i) / 0.5) % 2 == 0 ? 0 : 1.2, 0));
+            }
+            sequence.animate(heroes.get(i), bounce);
+        }
+
+        // The view of the still image, circling around the point it looks at
+        double radius = Math.hypot(13, 3);
+        double startAngle = Math.atan2(3, 13);
+        sequence.setCamera(time -> {
+            double angle = startAngle + 2 * Math.PI * time / duration;
+            Vec3 from = new Vec3(radius * Math.cos(angle), 4, radius * Math.sin(angle));
+            Vec3 at = new Vec3(0, 0.2, 0);
+            return new Camera(from, at, new Vec3(0, 1, 0), 20, aspectRatio, 0.0, from.sub(at).length());
+        });
+        return sequence;
+    }
+
+    /**
+     * Creates the default scene: a wooden floor, a grid of small random spheres and three big hero spheres.
+     * @param range The small spheres cover the grid cells from -range to range on both the x and z axis.
+     * @return The list of all objects in the scene.
+     */
+    public static HittableList createWorld(int range) {
+        return createWorld(range, new Random().nextLong());
+    }
+
+    /**
+     * Creates the default scene with the small spheres drawn from a seeded generator, so the same seed
+     * always gives the same scene (needed to resume a render from a checkpoint).
+     * @param range The small spheres cover the grid cells from -range to range on both the x and z axis.
+     * @param seed Seed for the placement and materials of the small spheres.
+     * @return The list of all objects in the scene.
+     */
+    public static HittableList createWorld(int range, long seed) {
+        Random rnd = new Random(seed);
         HittableList world = new HittableList();
 
         // FLOOR (Plane)
@@ -31,12 +207,11 @@ public class Main {
         world.add(new hittable.Plane(new Vec3(0, 0, 0), new Vec3(0, 1, 0), woodGround));
 
         // SMALL SPHERES
-        int range = 60;
         for (int a = -range; a < range; a++) {
             for (int b = -range; b < range; b++) {
-                double chooseMat = Math.random();
+                double chooseMat = rnd.nextDouble();
                 double radius = 0.2; // Radius
-                Vec3 center = new Vec3(a + 0.9 * Math.random(), radius, b + 0.9 * Math.random());
+                Vec3 center = new Vec3(a + 0.9 * rnd.nextDouble(), radius, b + 0.9 * rnd.nextDouble());
 
                 // Avoid placing small spheres inside the big ones
                 if (center.sub(new Vec3(4, 0.2, 0)).length() > 0.9) {
@@ -44,12 +219,12 @@ public class Main {
                     
                     if (chooseMat < 0.8) {
                         // Matte / Diffuse
-                        Vec3 albedo = Vec3.random().scale(Math.random());
+                        Vec3 albedo = Vec3.random(rnd).scale(rnd.nextDouble());
                         sphereMaterial = new Lambertian(albedo);
                     } else if (chooseMat < 0.95) {
                         // Metal
-                        Vec3 albedo = Vec3.random(0.5, 1);
-                        double fuzz = Math.random() * 0.5;
+                        Vec3 albedo = Vec3.random(0.5, 1, rnd);
+                        double fuzz = rnd.nextDouble() * 0.5;
                         sphereMaterial = new Metal(albedo, fuzz);
                     } else {
                         // Glass
@@ -76,10 +251,15 @@ public class Main {
         Material material3 = new Metal(new Vec3(0.7, 0.6, 0.5), 0.0);
         world.add(new Sphere(new Vec3(4, 1, 0), 1.0, material3));
 
-        // BVH (Optimization)
-        hittable.BVHNode bvhWorld = new hittable.BVHNode(world);
+        return world;
+    }
 
-        // --- CAMERA ---
+    /**
+     * Creates the default camera: an elevated 3/4 view focused on the front metal sphere.
+     * @param aspectRatio Width divided by height of the image.
+     * @return The camera.
+     */
+    public static Camera createCamera(double aspectRatio) {
         // Position: Elevated 3/4 view
         Vec3 lookFrom = new Vec3(13, 4, 3); 
         
@@ -94,23 +274,6 @@ public class Main {
         // Aperture (Depth of Field). 0.1 gives a nice blur to the background.
         double aperture = 0.1; 
 
-        Camera cam = new Camera(lookFrom, lookAt, vup, 20, aspectRatio, aperture, distToFocus);
-
-        // --- RENDERING ---
-        String folderName = "images";
-        File directory = new File(folderName);
-        if (!directory.exists()) directory.mkdirs();
-
-        int counter = 1;
-        File outputFile;
-        while (true) {
-            outputFile = new File(directory, "render" + counter + ".png");
-            if (!outputFile.exists()) break;
-            counter++;
-        }
-
-        System.out.println("Starting render! Output target: " + outputFile.getName());
-        Renderer renderer = new Renderer(imageWidth, imageHeight, samplesPerPixel, maxDepth);
-        renderer.render(bvhWorld, cam, outputFile);
+        return new Camera(lookFrom, lookAt, vup, 20, aspectRatio, aperture, distToFocus);
     }
-}
\ No newline at end of file
+}
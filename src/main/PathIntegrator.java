@@ -0,0 +1,261 @@
+package main;
+
+import hittable.HitRecord;
+import hittable.Hittable;
+import material.ScatterType;
+import material.Wrapper;
+import math.MutableVec3;
+import math.Ray;
+import math.Sampler;
+
+/**
+ * Iterative path tracer. Instead of recursing, it follows the path in a loop and keeps the product of all
+ * attenuations so far (the throughput). Once the throughput drops below a threshold, Russian roulette ends the
+ * path with a probability proportional to how little it can still contribute, and scales up the surviving paths
+ * so the image stays unbiased. Diffuse, specular and transmission bounces can each have their own depth limit.
+ * All intermediate state lives in the caller's {@link TraceContext}, so tracing a path does not allocate.
+ * When the context carries a {@link RenderStats}, rays, path lengths and trace/shade times are counted into it.
+ * Every path also leaves the features of the first surface it meets that isn't a perfect mirror or glass in the
+ * context, see {@link FeatureBuffers}.
+ * <p>
+ * Escaped rays read the sky from an {@link Environment}. Its sun is small and very bright, so a diffuse bounce
+ * rarely finds it by chance. At every diffuse surface the integrator therefore also aims a shadow ray at a
+ * direction drawn from the environment ({@link Environment#sample}, which mostly picks the sun) and combines both
+ * ways of reaching the sky with multiple importance sampling (power heuristic): each is weighted by how likely it
+ * was to pick that direction, so the sky is counted exactly once and neither strategy's noise dominates.
+ * <p>
+ * Every bounce reads its random numbers from its own fixed {@link Sampler#setDimension dimensions}, after the four
+ * the camera uses (pixel and lens position), so a quasi-Monte Carlo sampler stratifies e.g. the directions of the
+ * first bounce no matter how many numbers a material used before.
+ */
+public class PathIntegrator implements Integrator {
+    // Sampler dimensions: the camera uses the first ones, then every bounce gets a block of its own
+    private static final int CAMERA_DIMENSIONS = 4;
+    private static final int BOUNCE_DIMENSIONS = 6;
+    private static final int SCATTER_DIMENSION = 0;  // Up to three numbers for the material
+    private static final int ROULETTE_DIMENSION = 3;
+    private static final int LIGHT_DIMENSION = 4;    // Two numbers for the environment sample
+
+    private final int maxDepth;
+    private int maxDiffuseDepth;
+    private int maxSpecularDepth;
+    private int maxTransmissionDepth;
+    private double rouletteThreshold = 0.5;
+    private int rouletteMinDepth = 3;
+    private Environment environment = Environment.sky();
+    private boolean environmentSampling = true;
+
+    /**
+     * @param maxDepth Maximum number of bounces of any kind. Also the initial limit for every bounce type.
+     */
+    public PathIntegrator(int maxDepth) {
+        this.maxDepth = maxDepth;
+        this.maxDiffuseDepth = maxDepth;
+        this.maxSpecularDepth = maxDepth;
+        this.maxTransmissionDepth = maxDepth;
+    }
+
+    /**
+     * Sets the depth limits per bounce type. A path is terminated when one of them is exceeded.
+     * @param diffuse Maximum number of diffuse bounces.
+     * @param specular Maximum number of specular (mirror or glossy) bounces.
+     * @param transmission Maximum number of refractions.
+     */
+    public void setMaxDepths(int diffuse, int specular, int transmission) {
+        this.maxDiffuseDepth = diffuse;
+        this.maxSpecularDepth = specular;
+        this.maxTransmissionDepth = transmission;
+    }
+
+    /**
+     * Configures Russian roulette.
+     * @param threshold Paths whose largest throughput component is below this value may be terminated. 0 disables it.
+     * @param minDepth Number of bounces that are always traced before roulette starts.
+     */
+    public void setRussianRoulette(double threshold, int minDepth) {
+        this.rouletteThreshold = threshold;
+        this.rouletteMinDepth = minDepth;
+    }
+
+    /**
+     * Sets the light arriving from every direction that escapes the scene. Defaults to {@link Environment#sky()}.
+     * @param environment
+     */
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * Enables or disables sampling the environment directly at diffuse surfaces. Without it the sun is only found
+     * by bounces that happen to escape towards it, which converges to the same image but much more slowly.
+     */
+    public void setEnvironmentSampling(boolean environmentSampling) {
+        this.environmentSampling = environmentSampling;
+    }
+
+    @Override
+    public void rayColor(Ray r, Hittable world, TraceContext ctx) {
+        RenderStats stats = ctx.stats;
+        if (stats == null) {
+            trace(r, world, ctx, null);
+            return;
+        }
+        long start = System.nanoTime();
+        long traceNanos = stats.traceNanos;
+        int rays = trace(r, world, ctx, stats);
+        stats.recordPath(rays, System.nanoTime() - start - (stats.traceNanos - traceNanos));
+    }
+
+    /**
+     * Follows one path and leaves its color in {@code ctx.color} and its features in {@code ctx.albedo},
+     * {@code ctx.normal} and {@code ctx.depth}.
+     * @param stats Where to count rays and intersection work, or null to count nothing.
+     * @return The number of rays traced.
+     */
+    private int trace(Ray r, Hittable world, TraceContext ctx, RenderStats stats) {
+        MutableVec3 throughput = ctx.throughput.set(1, 1, 1);
+        MutableVec3 color = ctx.color.set(0, 0, 0);
+        HitRecord rec = ctx.rec;
+        Wrapper wrapper = ctx.wrapper;
+        Sampler sampler = ctx.sampler;
+        Ray ray = ctx.ray.set(r);
+        int diffuse = 0;
+        int specular = 0;
+        int transmission = 0;
+        double bouncePdf = 0; // Density of the last bounce direction if environment sampling could also have picked it
+        boolean featuresDone = false; // Set at the first surface that isn't a perfect mirror or glass
+        ctx.albedo.set(0, 0, 0);
+        ctx.normal.set(0, 0, 0);
+        ctx.depth = 0;
+
+        for (int depth = 0; depth < maxDepth; depth++) {
+            boolean hit;
+            if (stats == null) {
+                hit = world.hit(ray, 0.001, Double.POSITIVE_INFINITY, rec);
+            } else {
+                stats.countRay(depth);
+                long nodes = stats.traversal.nodesVisited;
+                long primitiveTests = stats.traversal.primitiveTests;
+                long start = System.nanoTime();
+                hit = world.hit(ray, 0.001, Double.POSITIVE_INFINITY, rec, stats.traversal);
+                stats.traceNanos += System.nanoTime() - start;
+                if (depth == 0) {
+                    stats.primaryNodesVisited += stats.traversal.nodesVisited - nodes;
+                    stats.primaryPrimitiveTests += stats.traversal.primitiveTests - primitiveTests;
+                }
+            }
+            if (!hit) {
+                if (!featuresDone) {
+                    // Sky, also when seen in a mirror: no surface, so no normal and no depth
+                    ctx.albedo.set(throughput);
+                    ctx.normal.set(0, 0, 0);
+                    ctx.depth = 0;
+                }
+                environment.radiance(ray.dx, ray.dy, ray.dz, ctx.radiance).multiply(throughput);
+                if (bouncePdf > 0) {
+                    double invLength = 1.0 / Math.sqrt(ray.dx * ray.dx + ray.dy * ray.dy + ray.dz * ray.dz);
+                    double lightPdf = environment.pdf(ray.dx * invLength, ray.dy * invLength, ray.dz * invLength);
+                    ctx.radiance.scale(powerHeuristic(bouncePdf, lightPdf));
+                }
+                color.add(ctx.radiance);
+                return depth + 1;
+            }
+
+            if (!featuresDone) {
+                ctx.normal.set(rec.normal);
+                ctx.depth += rec.t * Math.sqrt(ray.dx * ray.dx + ray.dy * ray.dy + ray.dz * ray.dz);
+            }
+
+            int dimension = CAMERA_DIMENSIONS + depth * BOUNCE_DIMENSIONS;
+            sampler.setDimension(dimension + SCATTER_DIMENSION);
+            if (!rec.material.scatter(ray, rec, wrapper, sampler)) {
+                return depth + 1;
+            }
+            if (!featuresDone && (wrapper.type == ScatterType.DIFFUSE || wrapper.roughness > 0)) {
+                ctx.albedo.set(throughput).multiply(wrapper.attenuation);
+                featuresDone = true;
+            }
+
+            switch (wrapper.type) {
+                case DIFFUSE:
+                    if (++diffuse > maxDiffuseDepth) return depth + 1;
+                    break;
+                case SPECULAR:
+                    if (++specular > maxSpecularDepth) return depth + 1;
+                    break;
+                default:
+                    if (++transmission > maxTransmissionDepth) return depth + 1;
+                    break;
+            }
+
+            bouncePdf = 0;
+            if (environmentSampling && wrapper.type == ScatterType.DIFFUSE && depth + 1 < maxDepth) {
+                sampler.setDimension(dimension + LIGHT_DIMENSION);
+                sampleEnvironment(world, ctx, stats);
+                Ray scattered = wrapper.scatteredRay;
+                double cos = (scattered.dx * rec.normal.x + scattered.dy * rec.normal.y + scattered.dz * rec.normal.z)
+                        / Math.sqrt(scattered.dx * scattered.dx + scattered.dy * scattered.dy + scattered.dz * scattered.dz);
+                bouncePdf = Math.max(cos, 0) / Math.PI;
+            }
+
+            throughput.multiply(wrapper.attenuation);
+
+            // Russian roulette: survive with probability maxComponent / threshold and compensate for the lost paths
+            if (depth + 1 >= rouletteMinDepth) {
+                double maxComponent = Math.max(throughput.x, Math.max(throughput.y, throughput.z));
+                if (maxComponent < rouletteThreshold) {
+                    double survival = Math.max(maxComponent / rouletteThreshold, 0.05);
+                    sampler.setDimension(dimension + ROULETTE_DIMENSION);
+                    if (sampler.get1D() >= survival) return depth + 1;
+                    throughput.scale(1.0 / survival);
+                }
+            }
+
+            ray.set(wrapper.scatteredRay);
+        }
+        return maxDepth;
+    }
+
+    /**
+     * Next event estimation at the diffuse surface in {@code ctx.rec}: picks a direction from the environment and,
+     * if nothing blocks it, adds the light it brings to {@code ctx.color}, weighted against finding the same
+     * direction by a diffuse bounce. Must be called before the throughput includes the attenuation of this surface.
+     */
+    private void sampleEnvironment(Hittable world, TraceContext ctx, RenderStats stats) {
+        HitRecord rec = ctx.rec;
+        MutableVec3 direction = ctx.lightDirection;
+        double lightPdf = environment.sample(ctx.sampler, direction);
+        double cos = direction.dot(rec.normal);
+        if (cos <= 0 || lightPdf <= 0) return;
+
+        Ray shadowRay = ctx.shadowRay.set(rec.p, direction);
+        boolean occluded;
+        if (stats == null) {
+            occluded = world.occluded(shadowRay, 0.001, Double.POSITIVE_INFINITY);
+        } else {
+            stats.countShadowRay();
+            long start = System.nanoTime();
+            occluded = world.occluded(shadowRay, 0.001, Double.POSITIVE_INFINITY, stats.traversal);
+            stats.traceNanos += System.nanoTime() - start;
+        }
+        if (occluded) return;
+
+        // Lambertian: f * cos = albedo * cos / pi, and the bounce would have picked the direction with cos / pi
+        double bsdfPdf = cos / Math.PI;
+        double weight = powerHeuristic(lightPdf, bsdfPdf);
+        environment.radiance(direction.x, direction.y, direction.z, ctx.radiance)
+                .multiply(ctx.wrapper.attenuation)
+                .multiply(ctx.throughput)
+                .scale(bsdfPdf * weight / lightPdf);
+        ctx.color.add(ctx.radiance);
+    }
+
+    /**
+     * Multiple importance sampling weight of a sample taken with density {@code pdf} when {@code otherPdf} is the
+     * density the other strategy would have had for it.
+     */
+    private static double powerHeuristic(double pdf, double otherPdf) {
+        double a = pdf * pdf;
+        return a / (a + otherPdf * otherPdf);
+    }
+}
@@ -0,0 +1,56 @@
+package main;
+
+import hittable.HitRecord;
+import hittable.Hittable;
+import material.Wrapper;
+import math.Ray;
+import math.Sampler;
+import math.Vec3;
+
+/**
+ * The original recursive integrator: follows a path until it escapes into the {@link Sky}, is absorbed,
+ * or reaches the maximum depth. Kept as a reference for {@link PathIntegrator}; allocates on every bounce.
+ */
+public class RecursiveIntegrator implements Integrator {
+    private final int maxDepth;
+
+    public RecursiveIntegrator(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    @Override
+    public void rayColor(Ray r, Hittable world, TraceContext ctx) {
+        ctx.color.set(rayColor(r, world, maxDepth, ctx.sampler));
+    }
+
+    /**
+     * Calculates the color seen along a ray.
+     * @param r
+     * @param world
+     * @param depth
+     * @param sampler
+     * @return
+     */
+    private Vec3 rayColor(Ray r, Hittable world, int depth, Sampler sampler) {
+        // Limit recursion
+        if (depth <= 0) {
+            return new Vec3(0, 0, 0);
+        }
+
+        HitRecord rec = new HitRecord();
+        
+        if (world.hit(r, 0.001, Double.POSITIVE_INFINITY, rec)) {
+            Ray scattered = new Ray();
+            Vec3 attenuation = new Vec3(0,0,0);
+            
+            Wrapper wrapper = new Wrapper(scattered, attenuation);
+            
+            if (rec.material.scatter(r, rec, wrapper, sampler)) {
+                return wrapper.attenuation.multiply(rayColor(wrapper.scatteredRay, world, depth - 1, sampler));
+            }
+            return new Vec3(0, 0, 0);
+        }
+
+        return Sky.color(r.getDirection());
+    }
+}
@@ -0,0 +1,224 @@
+package main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Renders a {@link RenderJob} on {@link RenderWorker}s running in other JVMs, on this machine or others.
+ * Workers connect over TCP, one connection per worker thread. Each connection receives the job, rebuilds the
+ * scene and reports its BVH fingerprint; after that it is handed one tile at a time and sends back the tile's
+ * framebuffer, which is merged into the image.
+ * <p>
+ * Rebalancing:
+ * <ul>
+ *   <li>If a connection fails or a tile takes longer than the timeout, the tile goes back to the front of
+ *       the queue and the connection is dropped.</li>
+ *   <li>Once the queue is empty, idle connections also take tiles that are still running elsewhere, oldest
+ *       first. The first result wins, so one slow worker can't hold up the end of the frame.</li>
+ * </ul>
+ * Every node traces the same BVH with the same per-pixel sample sequences, so the merged image is identical
+ * to one rendered by a single {@link Renderer}.
+ * <p>
+ * Protocol (big-endian, as written by {@link DataOutputStream}):
+ * <pre>
+ *   worker: int MAGIC, int VERSION
+ *   coord:  RenderJob
+ *   worker: long fingerprint
+ *   repeat:
+ *     coord:  int x0, y0, x1, y1 (renderer coordinates, y up)   or   int END
+ *     worker: width * height pixels of the tile framebuffer, see {@link Framebuffer#store}
+ * </pre>
+ *
+ * Run with: java -cp bin main.RenderCoordinator port [imageWidth] [samplesPerPixel]
+ * and on every worker: java -cp bin main.RenderWorker host port [threads]
+ */
+public class RenderCoordinator {
+    static final int MAGIC = 0x52544457; // "RTDW"
+    static final int VERSION = 1;
+    static final int END = -1;
+    // A tile is rendered by at most this many connections at the same time
+    private static final int MAX_COPIES = 2;
+
+    private final RenderJob job;
+    private final int port;
+    private int tileTimeoutMillis = 10 * 60 * 1000;
+
+    private List<Tile> tiles;
+    private ArrayDeque<Integer> pending;
+    private boolean[] done;
+    private int[] running;
+    private int remaining;
+    private Framebuffer fb;
+
+    public RenderCoordinator(RenderJob job, int port) {
+        this.job = job;
+        this.port = port;
+    }
+
+    /**
+     * Sets how long a worker may take for one tile (and for building the scene) before it is considered dead.
+     * @param tileTimeoutMillis
+     */
+    public void setTileTimeout(int tileTimeoutMillis) {
+        if (tileTimeoutMillis < 1) throw new IllegalArgumentException("tileTimeoutMillis must be positive");
+        this.tileTimeoutMillis = tileTimeoutMillis;
+    }
+
+    /**
+     * Listens for workers and hands out tiles until every tile has been merged.
+     * @return The finished framebuffer.
+     * @throws IOException If the port can't be opened.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for the workers.
+     */
+    public Framebuffer render() throws IOException, InterruptedException {
+        long expected = job.fingerprint();
+        tiles = Tile.hilbertOrder(job.imageWidth, job.imageHeight, job.tileSize);
+        pending = new ArrayDeque<>();
+        for (int i = 0; i < tiles.size(); i++) pending.add(i);
+        done = new boolean[tiles.size()];
+        running = new int[tiles.size()];
+        remaining = tiles.size();
+        fb = new Framebuffer(job.imageWidth, job.imageHeight);
+
+        try (ServerSocket server = new ServerSocket(port)) {
+            System.out.println("Waiting for workers on port " + server.getLocalPort());
+            Thread acceptor = new Thread(() -> acceptWorkers(server, expected), "coordinator-accept");
+            acceptor.setDaemon(true);
+            acceptor.start();
+            synchronized (this) {
+                while (remaining > 0) wait();
+            }
+        }
+        return fb;
+    }
+
+    private void acceptWorkers(ServerSocket server, long expected) {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                Thread handler = new Thread(() -> serve(socket, expected), "coordinator-" + socket.getRemoteSocketAddress());
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                // Closed after the last tile came in
+            }
+        }
+    }
+
+    /**
+     * Talks to one worker connection until the frame is done or the connection breaks.
+     */
+    private void serve(Socket socket, long expected) {
+        int tile = -1;
+        try (Socket s = socket) {
+            s.setSoTimeout(tileTimeoutMillis);
+            s.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("not a compatible worker");
+            job.write(out);
+            out.flush();
+            if (in.readLong() != expected) throw new IOException("worker built a different BVH");
+
+            while (true) {
+                tile = nextTile();
+                if (tile < 0) {
+                    out.writeInt(END);
+                    out.flush();
+                    return;
+                }
+                Tile t = tiles.get(tile);
+                out.writeInt(t.x0);
+                out.writeInt(t.y0);
+                out.writeInt(t.x1);
+                out.writeInt(t.y1);
+                out.flush();
+
+                byte[] data = new byte[t.width() * t.height() * Framebuffer.BYTES_PER_PIXEL];
+                in.readFully(data);
+                Framebuffer result = new Framebuffer(t.x0, job.imageHeight - t.y1, t.width(), t.height());
+                result.load(ByteBuffer.wrap(data));
+                finish(tile, result);
+                tile = -1;
+            }
+        } catch (IOException e) {
+            System.out.println("Lost worker " + socket.getRemoteSocketAddress() + ": " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (tile >= 0) fail(tile);
+        }
+    }
+
+    /**
+     * @return The next tile to render, or -1 when the frame is done. Blocks while every tile that is not done
+     *         already runs on MAX_COPIES connections.
+     */
+    private synchronized int nextTile() throws InterruptedException {
+        while (remaining > 0) {
+            Integer queued = pending.pollFirst();
+            if (queued != null) {
+                if (done[queued]) continue;
+                running[queued]++;
+                return queued;
+            }
+            // Nothing queued: help with the oldest tile that is still running
+            for (int i = 0; i < tiles.size(); i++) {
+                if (!done[i] && running[i] < MAX_COPIES) {
+                    running[i]++;
+                    return i;
+                }
+            }
+            wait();
+        }
+        return -1;
+    }
+
+    private synchronized void finish(int tile, Framebuffer result) {
+        running[tile]--;
+        if (!done[tile]) {
+            fb.merge(result);
+            done[tile] = true;
+            remaining--;
+            int total = tiles.size();
+            int finished = total - remaining;
+            if (finished * 100 / total != (finished - 1) * 100 / total) {
+                System.out.println("Progress: " + finished * 100 / total + "% (" + remaining + " tiles remaining)");
+            }
+        }
+        notifyAll();
+    }
+
+    private synchronized void fail(int tile) {
+        running[tile]--;
+        if (!done[tile]) pending.addFirst(tile);
+        notifyAll();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = Integer.parseInt(args[0]);
+        int imageWidth = args.length > 1 ? Integer.parseInt(args[1]) : 1200;
+        int samplesPerPixel = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        double aspectRatio = 16.0 / 9.0;
+        int imageHeight = (int)(imageWidth / aspectRatio);
+        RenderJob job = new RenderJob(imageWidth, imageHeight, aspectRatio, samplesPerPixel, 50, 16, 0, 60, 42);
+
+        long start = System.nanoTime();
+        Framebuffer result = new RenderCoordinator(job, port).render();
+        System.out.printf("Rendered in %.1f s%n", (System.nanoTime() - start) / 1e9);
+
+        File directory = new File("images");
+        if (!directory.exists()) directory.mkdirs();
+        job.createRenderer().writeImages(result, new File(directory, "render_distributed.png"));
+    }
+}
@@ -0,0 +1,116 @@
+package main;
+
+import hittable.FlatBVH;
+import hittable.Hittable;
+import hittable.HittableList;
+import hittable.SAHBuilder;
+import hittable.World;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import math.IndependentSampler;
+
+/**
+ * Everything needed to render the default scene of {@link Main}, small enough to be sent over the network.
+ * The scene itself is not shipped: every node rebuilds it from the seeds, and {@link #fingerprint()} lets
+ * the coordinator check that a worker ended up with exactly the same BVH.
+ */
+public class RenderJob {
+    public final int imageWidth;
+    public final int imageHeight;
+    public final double aspectRatio;
+    public final int samplesPerPixel;
+    public final int maxDepth;
+    public final int tileSize;
+    public final long samplerSeed;
+    public final int worldRange;
+    public final long worldSeed;
+
+    private World world;
+    private long fingerprint;
+
+    public RenderJob(int imageWidth, int imageHeight, double aspectRatio, int samplesPerPixel, int maxDepth,
+                     int tileSize, long samplerSeed, int worldRange, long worldSeed) {
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+        this.aspectRatio = aspectRatio;
+        this.samplesPerPixel = samplesPerPixel;
+        this.maxDepth = maxDepth;
+        this.tileSize = tileSize;
+        this.samplerSeed = samplerSeed;
+        this.worldRange = worldRange;
+        this.worldSeed = worldSeed;
+    }
+
+    /**
+     * Builds the scene and its SAH BVH the first time it is called, later calls return the same world.
+     * @return The scene, safe to trace from several threads.
+     */
+    public synchronized Hittable world() {
+        if (world == null) {
+            HittableList list = Main.createWorld(worldRange, worldSeed);
+            FlatBVH bvh = new FlatBVH(list.bounded(), new SAHBuilder());
+            world = new World(bvh, list.unbounded());
+            fingerprint = Double.doubleToLongBits(bvh.sahCost()) * 31 + bvh.nodeCount();
+        }
+        return world;
+    }
+
+    /**
+     * Identifies the built BVH: two nodes with the same fingerprint trace the same tree.
+     * @return A hash of the SAH cost and node count of the BVH.
+     */
+    public synchronized long fingerprint() {
+        world();
+        return fingerprint;
+    }
+
+    public Camera createCamera() {
+        return Main.createCamera(aspectRatio);
+    }
+
+    /**
+     * @return A renderer for this job. Callers still set threads, tone mapping and so on.
+     */
+    public Renderer createRenderer() {
+        Renderer renderer = new Renderer(imageWidth, imageHeight, samplesPerPixel, maxDepth);
+        renderer.setTileSize(tileSize);
+        renderer.setSampler(new IndependentSampler(samplerSeed));
+        return renderer;
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(imageWidth);
+        out.writeInt(imageHeight);
+        out.writeDouble(aspectRatio);
+        out.writeInt(samplesPerPixel);
+        out.writeInt(maxDepth);
+        out.writeInt(tileSize);
+        out.writeLong(samplerSeed);
+        out.writeInt(worldRange);
+        out.writeLong(worldSeed);
+    }
+
+    public static RenderJob read(DataInputStream in) throws IOException {
+        return new RenderJob(in.readInt(), in.readInt(), in.readDouble(), in.readInt(), in.readInt(),
+                in.readInt(), in.readLong(), in.readInt(), in.readLong());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof RenderJob)) return false;
+        RenderJob other = (RenderJob) o;
+        return imageWidth == other.imageWidth && imageHeight == other.imageHeight
+                && Double.compare(aspectRatio, other.aspectRatio) == 0 && samplesPerPixel == other.samplesPerPixel
+                && maxDepth == other.maxDepth && tileSize == other.tileSize && samplerSeed == other.samplerSeed
+                && worldRange == other.worldRange && worldSeed == other.worldSeed;
+    }
+
+    @Override
+    public int hashCode() {
+        return java.util.Arrays.hashCode(new long[] {
+            imageWidth, imageHeight, Double.doubleToLongBits(aspectRatio), samplesPerPixel, maxDepth, tileSize,
+            samplerSeed, worldRange, worldSeed
+        });
+    }
+}
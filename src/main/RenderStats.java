@@ -0,0 +1,160 @@
+package main;
+
+import hittable.TraversalStats;
+import java.util.Locale;
+
+/**
+ * Counters and timers for one render, collected when enabled with {@link Renderer#setMetrics}.
+ * Every render thread counts into its own instance (and every tile into a fresh one, which is then added to the
+ * thread's), so counting needs no synchronization; the instances are summed when the render is done.
+ * <p>
+ * Rays and path lengths are recorded by {@link PathIntegrator}. Every BVH node visited is one AABB test, so
+ * {@code traversal.nodesVisited} doubles as the AABB test count. The time spent in shading is the time of a
+ * path minus the time spent in {@code Hittable.hit}, so it includes material scatter, sky lookups and sampling.
+ */
+public class RenderStats {
+    /** Paths with this many rays or more all go into the last bucket of {@link #pathLengths}. */
+    public static final int PATH_LENGTH_BUCKETS = 64;
+
+    public long tiles;
+    public long samples;
+    public long primaryRays;
+    public long secondaryRays;
+    public long shadowRays;
+    public final TraversalStats traversal = new TraversalStats();
+    // The part of traversal spent on camera rays
+    public long primaryNodesVisited;
+    public long primaryPrimitiveTests;
+    // pathLengths[n] = number of paths that traced n rays
+    public final long[] pathLengths = new long[PATH_LENGTH_BUCKETS];
+
+    public long buildNanos;
+    public long traceNanos;
+    public long shadeNanos;
+    public long encodeNanos;
+    public long renderNanos; // Wall-clock time of the whole render, without encoding
+
+    /**
+     * Counts one ray about to be traced.
+     * @param depth 0 for camera rays, the bounce number otherwise.
+     */
+    public void countRay(int depth) {
+        if (depth == 0) primaryRays++;
+        else secondaryRays++;
+        traversal.rays++;
+    }
+
+    /**
+     * Counts one shadow ray about to be traced.
+     */
+    public void countShadowRay() {
+        shadowRays++;
+        traversal.rays++;
+    }
+
+    /**
+     * Records a finished path.
+     * @param rays Number of rays traced for the path.
+     * @param shadeNanos Time the path spent outside of intersection tests.
+     */
+    public void recordPath(int rays, long shadeNanos) {
+        pathLengths[Math.min(rays, PATH_LENGTH_BUCKETS - 1)]++;
+        this.shadeNanos += shadeNanos;
+    }
+
+    /**
+     * Adds everything counted by another instance. The wall-clock times (build, encode, render) are added too,
+     * so only merge instances that did not overlap in time if those should stay meaningful.
+     * @param other
+     */
+    public void add(RenderStats other) {
+        tiles += other.tiles;
+        samples += other.samples;
+        primaryRays += other.primaryRays;
+        secondaryRays += other.secondaryRays;
+        shadowRays += other.shadowRays;
+        traversal.add(other.traversal);
+        primaryNodesVisited += other.primaryNodesVisited;
+        primaryPrimitiveTests += other.primaryPrimitiveTests;
+        for (int i = 0; i < PATH_LENGTH_BUCKETS; i++) pathLengths[i] += other.pathLengths[i];
+        buildNanos += other.buildNanos;
+        traceNanos += other.traceNanos;
+        shadeNanos += other.shadeNanos;
+        encodeNanos += other.encodeNanos;
+        renderNanos += other.renderNanos;
+    }
+
+    public long rays() {
+        return primaryRays + secondaryRays + shadowRays;
+    }
+
+    /**
+     * @return Rays per second of wall-clock render time.
+     */
+    public double raysPerSecond() {
+        return renderNanos == 0 ? 0 : rays() * 1e9 / renderNanos;
+    }
+
+    /**
+     * @return The average number of rays per path.
+     */
+    public double averagePathLength() {
+        long paths = 0;
+        long rays = 0;
+        for (int i = 0; i < PATH_LENGTH_BUCKETS; i++) {
+            paths += pathLengths[i];
+            rays += i * pathLengths[i];
+        }
+        return paths == 0 ? 0 : (double) rays / paths;
+    }
+
+    /**
+     * @return A one-line human readable summary.
+     */
+    public String summary() {
+        return String.format(Locale.ROOT,
+                "%d primary + %d secondary + %d shadow rays, %.2f Mrays/s, %.2f rays/path, %.1f nodes and %.2f primitives per ray, "
+                        + "build %.2f s, render %.2f s (trace %.2f s, shade %.2f s CPU), encode %.2f s",
+                primaryRays, secondaryRays, shadowRays, raysPerSecond() / 1e6, averagePathLength(),
+                traversal.nodesPerRay(), traversal.primitiveTestsPerRay(),
+                buildNanos / 1e9, renderNanos / 1e9, traceNanos / 1e9, shadeNanos / 1e9, encodeNanos / 1e9);
+    }
+
+    /**
+     * @return All counters as a JSON object.
+     */
+    public String toJson() {
+        StringBuilder histogram = new StringBuilder();
+        for (int i = 0; i < PATH_LENGTH_BUCKETS; i++) {
+            if (i > 0) histogram.append(", ");
+            histogram.append(pathLengths[i]);
+        }
+        return String.format(Locale.ROOT, "{%n"
+                        + "  \"tiles\": %d,%n"
+                        + "  \"samples\": %d,%n"
+                        + "  \"primaryRays\": %d,%n"
+                        + "  \"secondaryRays\": %d,%n"
+                        + "  \"shadowRays\": %d,%n"
+                        + "  \"raysPerSecond\": %.1f,%n"
+                        + "  \"nodesVisited\": %d,%n"
+                        + "  \"aabbTests\": %d,%n"
+                        + "  \"primitiveTests\": %d,%n"
+                        + "  \"nodesPerRay\": %.3f,%n"
+                        + "  \"primitiveTestsPerRay\": %.3f,%n"
+                        + "  \"primaryNodesVisited\": %d,%n"
+                        + "  \"primaryPrimitiveTests\": %d,%n"
+                        + "  \"averagePathLength\": %.3f,%n"
+                        + "  \"pathLengthHistogram\": [%s],%n"
+                        + "  \"buildSeconds\": %.4f,%n"
+                        + "  \"renderSeconds\": %.4f,%n"
+                        + "  \"traceCpuSeconds\": %.4f,%n"
+                        + "  \"shadeCpuSeconds\": %.4f,%n"
+                        + "  \"encodeSeconds\": %.4f%n"
+                        + "}%n",
+                tiles, samples, primaryRays, secondaryRays, shadowRays, raysPerSecond(), traversal.nodesVisited,
+                traversal.nodesVisited, traversal.primitiveTests, traversal.nodesPerRay(),
+                traversal.primitiveTestsPerRay(), primaryNodesVisited, primaryPrimitiveTests, averagePathLength(),
+                histogram, buildNanos / 1e9, renderNanos / 1e9, traceNanos / 1e9, shadeNanos / 1e9,
+                encodeNanos / 1e9);
+    }
+}
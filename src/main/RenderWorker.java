@@ -0,0 +1,96 @@
+package main;
+
+import hittable.Hittable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Worker process for a {@link RenderCoordinator}. Opens one connection per thread, and every connection
+ * renders the tiles it is handed on its own. The connections share the scene, so it is built only once per
+ * job even though every connection receives the job.
+ *
+ * Run with: java -cp bin main.RenderWorker host port [threads]
+ */
+public class RenderWorker {
+    private final String host;
+    private final int port;
+    private final int threads;
+    private RenderJob job;
+
+    public RenderWorker(String host, int port, int threads) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+        this.host = host;
+        this.port = port;
+        this.threads = threads;
+    }
+
+    /**
+     * Connects to the coordinator and renders until it has no more tiles.
+     * @throws InterruptedException If interrupted while waiting for the connections to finish.
+     */
+    public void run() throws InterruptedException {
+        List<Thread> connections = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread t = new Thread(this::serve, "worker-" + i);
+            t.start();
+            connections.add(t);
+        }
+        for (Thread t : connections) t.join();
+    }
+
+    private void serve() {
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(RenderCoordinator.MAGIC);
+            out.writeInt(RenderCoordinator.VERSION);
+            out.flush();
+
+            RenderJob job = sharedJob(RenderJob.read(in));
+            Hittable world = job.world();
+            Camera cam = job.createCamera();
+            Renderer renderer = job.createRenderer();
+            renderer.setThreads(1);
+            out.writeLong(job.fingerprint());
+            out.flush();
+
+            while (true) {
+                int x0 = in.readInt();
+                if (x0 == RenderCoordinator.END) break;
+                Tile tile = new Tile(x0, in.readInt(), in.readInt(), in.readInt());
+                Framebuffer fb = new Framebuffer(tile.x0, job.imageHeight - tile.y1, tile.width(), tile.height());
+                renderer.renderTile(tile, world, cam, fb);
+
+                ByteBuffer data = ByteBuffer.allocate(tile.width() * tile.height() * Framebuffer.BYTES_PER_PIXEL);
+                fb.store(data);
+                out.write(data.array());
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.out.println("Connection to " + host + ":" + port + " closed: " + e);
+        }
+    }
+
+    /**
+     * Returns the job the other connections already use if it is the same one, so the scene is built once.
+     */
+    private synchronized RenderJob sharedJob(RenderJob received) {
+        if (!received.equals(job)) job = received;
+        return job;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = args[0];
+        int port = Integer.parseInt(args[1]);
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        new RenderWorker(host, port, threads).run();
+    }
+}
@@ -1,29 +1,219 @@
 package main;
 
-import hittable.HitRecord;
 import hittable.Hittable;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import javax.imageio.ImageIO; // Important: Make sure Wrapper.java exists in the material package
-import material.Wrapper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+import math.IndependentSampler;
 import math.Ray;
-import math.Vec3;
+import math.Sampler;
 
 /**
  * Renderer class responsible for rendering the scene and saving the output image.
  */
 public class Renderer {
+    // Adaptive sampling: how many times its current count a pixel may get in one round
+    private static final double MAX_GROWTH = 3;
+    // With a checkpoint, a fixed sample count is rendered in passes of this many samples per pixel
+    private static final int CHECKPOINT_PASS_SAMPLES = 16;
 
     private int imageWidth;
     private int imageHeight;
     private int samplesPerPixel;
     private int maxDepth;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int tileSize = 16;
+    private Sampler sampler = new IndependentSampler(0);
+    private Integrator integrator;
+    private ToneMapper toneMapper = ToneMapper.CLAMP;
+    private double exposure = 1.0;
+    private boolean hdrOutput = false;
+    private boolean adaptive = false;
+    private int minSamples;
+    private int maxSamples;
+    private double targetError;
+    private File checkpointFile;
+    private long sceneHash;
+    private long checkpointIntervalMillis;
+    private int progressStep = 1;
+    private boolean reportProgress = true;
+    private RenderStats metrics;
+    // Per-thread counters of the running render, null when metrics are disabled
+    private ThreadLocal<RenderStats> threadStats;
+    private boolean heatmapOutput = false;
+    private Heatmaps heatmaps; // Of the last render, null when heatmaps are disabled
+    private double denoiseStrength = 0;
+    private boolean keepNoisy = false;
+    private boolean featureOutput = false;
+    private FeatureBuffers features; // Of the last render, null when neither denoising nor feature output is enabled
 
     public Renderer(int w, int h, int s, int d) {
         this.imageWidth = w;
         this.imageHeight = h;
         this.samplesPerPixel = s;
         this.maxDepth = d;
+        this.integrator = new PathIntegrator(d);
+    }
+
+    /**
+     * Sets the number of worker threads. 1 renders on the calling thread.
+     * @param threads
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the edge length in pixels of the square tiles the image is split into.
+     * @param tileSize
+     */
+    public void setTileSize(int tileSize) {
+        if (tileSize < 1) throw new IllegalArgumentException("tileSize must be at least 1");
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Turns the progress messages printed while rendering on or off.
+     * @param reportProgress
+     */
+    public void setReportProgress(boolean reportProgress) {
+        this.reportProgress = reportProgress;
+    }
+
+    /**
+     * Sets the sampler that drives pixel jitter, lens and scattering decisions. Each tile renders with its own copy,
+     * and the sequences are keyed by pixel and sample index, so the image is identical at any thread count.
+     * @param sampler
+     */
+    public void setSampler(Sampler sampler) {
+        this.sampler = sampler;
+    }
+
+    /**
+     * Sets the integrator that computes the color of each camera ray. Defaults to a {@link PathIntegrator}
+     * with the maximum depth given to the constructor.
+     * @param integrator
+     */
+    public void setIntegrator(Integrator integrator) {
+        this.integrator = integrator;
+    }
+
+    /**
+     * Sets how the linear radiance is mapped to the 8-bit output image. Defaults to {@link ToneMapper#CLAMP}
+     * with exposure 1.
+     * @param toneMapper
+     * @param exposure Scale applied to the radiance before the curve.
+     */
+    public void setToneMapping(ToneMapper toneMapper, double exposure) {
+        if (exposure <= 0) throw new IllegalArgumentException("exposure must be positive");
+        this.toneMapper = toneMapper;
+        this.exposure = exposure;
+    }
+
+    /**
+     * Also saves the unclamped linear radiance as a PFM file next to the output file (render1.png -> render1.pfm).
+     * @param hdrOutput
+     */
+    public void setHdrOutput(boolean hdrOutput) {
+        this.hdrOutput = hdrOutput;
+    }
+
+    /**
+     * Keeps the framebuffer in a memory-mapped {@link CheckpointFile} while rendering. The image is rendered
+     * in passes and saved after a pass whenever the interval has passed. If the file already holds a
+     * checkpoint with the same hash and size, the render continues from it: sample indices pick up where
+     * each pixel stopped, so the result is the same as an uninterrupted render. The file is kept afterwards,
+     * so a later run with more samples per pixel only renders the missing ones.
+     * @param file The checkpoint file.
+     * @param sceneHash Must change whenever the scene, camera or settings change.
+     * @param intervalMillis Minimum time between two saves.
+     */
+    public void setCheckpoint(File file, long sceneHash, long intervalMillis) {
+        this.checkpointFile = file;
+        this.sceneHash = sceneHash;
+        this.checkpointIntervalMillis = intervalMillis;
+    }
+
+    /**
+     * Switches to adaptive sampling. The samples per pixel given to the constructor become the average budget:
+     * every pixel first gets minSamples, then the image is rendered in rounds and only pixels whose estimated
+     * error (see {@link Framebuffer#error(int)}) is still above the target get more samples, until the budget
+     * is spent or every pixel has converged. The final sample count per pixel is saved as a grayscale image
+     * next to the output file ("_samples.png").
+     * @param minSamples Samples every pixel gets before its error is trusted.
+     * @param maxSamples Upper limit for a single pixel.
+     * @param targetError Error in display units at which a pixel stops, e.g. 0.004 (about one 8-bit step).
+     */
+    public void setAdaptiveSampling(int minSamples, int maxSamples, double targetError) {
+        if (minSamples < 2) throw new IllegalArgumentException("minSamples must be at least 2");
+        if (maxSamples < minSamples) throw new IllegalArgumentException("maxSamples must be at least minSamples");
+        if (targetError <= 0) throw new IllegalArgumentException("targetError must be positive");
+        this.adaptive = true;
+        this.minSamples = minSamples;
+        this.maxSamples = maxSamples;
+        this.targetError = targetError;
+    }
+
+    /**
+     * Enables render metrics: rays, BVH nodes and primitive tests, path lengths and the time spent tracing,
+     * shading and encoding are added to the given stats, and every tile is recorded as a JFR {@link TileEvent}.
+     * Only the {@link PathIntegrator} counts rays. When saving to a file, the stats are also written as JSON
+     * next to it ("_stats.json"). Metrics are off by default and cost nothing then.
+     * @param metrics Counters to add to, or null to disable metrics.
+     */
+    public void setMetrics(RenderStats metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return The counters metrics are added to, or null if metrics are disabled.
+     */
+    public RenderStats getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Also saves per-pixel heatmaps of the traversal cost next to the output file: BVH nodes visited and
+     * primitive tests per camera ray, time spent per pixel and average path depth (see {@link Heatmaps}).
+     * Like the metrics, the heatmaps are counted by the {@link PathIntegrator}.
+     * @param heatmapOutput
+     */
+    public void setHeatmapOutput(boolean heatmapOutput) {
+        this.heatmapOutput = heatmapOutput;
+    }
+
+    /**
+     * Denoises the image before tone mapping with an edge-aware {@link Denoiser}, guided by the features of every
+     * pixel (see {@link FeatureBuffers}), so diffuse and glossy surfaces need fewer samples per pixel. The PFM
+     * output is denoised as well. The features are recorded by the {@link PathIntegrator}; with other integrators
+     * every pixel counts as sky and is left as it is.
+     * @param strength How strongly to smooth, 1 for the default, 0 to disable denoising.
+     * @param keepNoisy Also save the image before denoising next to the output file ("_noisy.png").
+     */
+    public void setDenoising(double strength, boolean keepNoisy) {
+        if (strength < 0) throw new IllegalArgumentException("strength must not be negative");
+        this.denoiseStrength = strength;
+        this.keepNoisy = keepNoisy;
+    }
+
+    /**
+     * Also saves the features the denoiser is guided by next to the output file ("_albedo.png", "_normal.png"
+     * and "_depth.png").
+     * @param featureOutput
+     */
+    public void setFeatureOutput(boolean featureOutput) {
+        this.featureOutput = featureOutput;
     }
 
     /**
@@ -33,133 +223,388 @@ public class Renderer {
      * @param outputFile
      */
     public void render(Hittable world, Camera cam, File outputFile) {
-        BufferedImage image = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_RGB);
+        writeImages(render(world, cam), outputFile);
+        if (metrics != null) writeMetrics(siblingFile(outputFile, "_stats.json"));
+    }
 
-        for (int j = imageHeight - 1; j >= 0; j--) {
-             System.out.println("Scanlines remaining: " + j);
-             for (int i = 0; i < imageWidth; i++) {
-                 Vec3 pixelColor = new Vec3(0, 0, 0);
-                 for (int s = 0; s < samplesPerPixel; s++) {
-                     double u = (i + Math.random()) / (imageWidth - 1);
-                     double v = (j + Math.random()) / (imageHeight - 1);
-                     Ray r = cam.getRay(u, v);
-                     pixelColor = pixelColor.add(rayColor(r, world, maxDepth));
-                 }
-                 writeColor(image, i, imageHeight - j - 1, pixelColor, samplesPerPixel);
-             }
+    /**
+     * Renders the scene into a new framebuffer without writing any files.
+     * The image is split into tiles which are ordered along a Hilbert curve and rendered on a work-stealing pool.
+     * @param world
+     * @param cam
+     * @return The linear radiance of every pixel.
+     */
+    public Framebuffer render(Hittable world, Camera cam) {
+        Framebuffer fb = new Framebuffer(imageWidth, imageHeight);
+        List<Tile> tiles = Tile.hilbertOrder(imageWidth, imageHeight, tileSize);
+        int[] targets = new int[imageWidth * imageHeight];
+        ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        CheckpointFile checkpoint = null;
+        List<RenderStats> stripes = new ArrayList<>();
+        if (metrics != null) {
+            threadStats = ThreadLocal.withInitial(() -> {
+                RenderStats stats = new RenderStats();
+                synchronized (stripes) {
+                    stripes.add(stats);
+                }
+                return stats;
+            });
         }
+        heatmaps = heatmapOutput ? new Heatmaps(imageWidth, imageHeight) : null;
+        features = denoiseStrength > 0 || featureOutput ? new FeatureBuffers(imageWidth, imageHeight) : null;
+        long start = System.nanoTime();
+
         try {
-            ImageIO.write(image, "png", outputFile);
+            if (checkpointFile != null) {
+                checkpoint = new CheckpointFile(checkpointFile, sceneHash, imageWidth, imageHeight);
+                if (checkpoint.load(fb)) {
+                    System.out.println("Resuming from " + checkpointFile.getName() + " with "
+                            + checkpoint.totalSamples() + " samples");
+                }
+            }
+
+            // Several passes would print a full progress report each, so report in coarser steps then
+            boolean multiPass = adaptive || (checkpoint != null && CHECKPOINT_PASS_SAMPLES < samplesPerPixel);
+            progressStep = multiPass ? 10 : 1;
+            if (adaptive) {
+                renderAdaptive(tiles, world, cam, fb, targets, pool, checkpoint);
+            } else {
+                // Without a checkpoint everything is one pass; with one, passes give points to save at
+                int step = checkpoint != null ? CHECKPOINT_PASS_SAMPLES : samplesPerPixel;
+                for (int n = Math.min(step, samplesPerPixel); ; n = Math.min(n + step, samplesPerPixel)) {
+                    Arrays.fill(targets, n);
+                    renderPass(tiles, world, cam, fb, targets, pool, checkpoint);
+                    if (n == samplesPerPixel) break;
+                }
+            }
+            if (checkpoint != null) checkpoint.save(fb);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't use checkpoint " + checkpointFile, e);
+        } finally {
+            if (pool != null) pool.shutdown();
+            if (metrics != null) {
+                // Every tile task has returned, so the stripes are no longer written to
+                synchronized (stripes) {
+                    for (RenderStats stats : stripes) metrics.add(stats);
+                }
+                metrics.renderNanos += System.nanoTime() - start;
+                threadStats = null;
+            }
+            if (checkpoint != null) {
+                try {
+                    checkpoint.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        return fb;
+    }
+
+    /**
+     * Tone maps a finished framebuffer into the output PNG, plus the PFM, the sample count image, the heatmaps
+     * and the features if those are enabled. With denoising, the denoised image is saved instead of the noisy one.
+     * @param fb
+     * @param outputFile
+     */
+    public void writeImages(Framebuffer fb, File outputFile) {
+        long start = System.nanoTime();
+        try {
+            Framebuffer output = fb;
+            if (denoiseStrength > 0 && features != null) {
+                if (keepNoisy) writePNG(fb, siblingFile(outputFile, "_noisy.png"));
+                long denoiseStart = System.nanoTime();
+                output = new Denoiser(denoiseStrength).denoise(fb, features);
+                System.out.printf("Denoised in %.1f ms%n", (System.nanoTime() - denoiseStart) / 1e6);
+            }
+            writePNG(output, outputFile);
+            if (hdrOutput) output.writePFM(siblingFile(outputFile, ".pfm"));
+            if (adaptive) writeSampleCounts(fb, siblingFile(outputFile, "_samples.png"));
+            if (heatmaps != null) heatmaps.write(outputFile);
+            if (featureOutput && features != null) features.write(outputFile);
+            if (metrics != null) metrics.encodeNanos += System.nanoTime() - start;
             System.out.println("Done!");
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
-    // --- SKY AND LIGHTING CALCULATION (GOLDEN HOUR EDITION) ---
+    private void writePNG(Framebuffer fb, File file) throws IOException {
+        int[] pixels = fb.toneMap(toneMapper, exposure);
+        BufferedImage image = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, imageWidth, imageHeight, pixels, 0, imageWidth);
+        ImageIO.write(image, "png", file);
+    }
+
+    /**
+     * Renders minSamples everywhere, then spends the rest of the budget in rounds on the pixels that are
+     * still noisy, in proportion to how many samples each of them is estimated to need.
+     */
+    private void renderAdaptive(List<Tile> tiles, Hittable world, Camera cam, Framebuffer fb, int[] targets,
+                                ForkJoinPool pool, CheckpointFile checkpoint) {
+        long budget = (long) samplesPerPixel * targets.length;
+        int[] active = new int[targets.length];
+
+        Arrays.fill(targets, minSamples);
+        System.out.println("Adaptive round 1: " + targets.length + " pixels, " + minSamples + " samples each");
+        renderPass(tiles, world, cam, fb, targets, pool, checkpoint);
+        long spent = fb.totalSamples();
+
+        for (int round = 2; spent < budget; round++) {
+            // The error falls with 1/sqrt(n), so a pixel at error e with n samples needs about
+            // n * ((e / target)^2 - 1) more. Needs are stored in targets first and then turned into counts.
+            int activeCount = 0;
+            long needed = 0;
+            for (int p = 0; p < targets.length; p++) {
+                int n = fb.sampleCount(p);
+                double ratio = fb.error(p) / targetError;
+                if (n >= maxSamples || ratio <= 1) continue;
+                int need = (int) Math.min(Math.ceil(n * (ratio * ratio - 1)), maxSamples - n);
+                targets[p] = need;
+                needed += need;
+                active[activeCount++] = p;
+            }
+            if (activeCount == 0) break;
+
+            // Share what is left of the budget in proportion to the needs. A round at most multiplies a
+            // count by 1 + MAX_GROWTH, so the estimate is refreshed before too much goes into one pixel.
+            double scale = Math.min(1.0, (double) (budget - spent) / needed);
+            for (int k = 0; k < activeCount; k++) {
+                int p = active[k];
+                int n = fb.sampleCount(p);
+                targets[p] = n + (int) Math.max(1, Math.min(targets[p] * scale, MAX_GROWTH * n));
+            }
+            System.out.println("Adaptive round " + round + ": " + activeCount + " noisy pixels, "
+                    + (budget - spent) + " samples left");
+            renderPass(tiles, world, cam, fb, targets, pool, checkpoint);
+            spent = fb.totalSamples();
+        }
+        System.out.printf("Adaptive sampling: %.1f samples per pixel on average, %d at most%n",
+                (double) spent / targets.length, fb.maxSampleCount());
+    }
+
     /**
-     * Calculates the color seen along a ray, including the new golden hour sky and sun effects.
-     * @param r
+     * Brings every pixel up to its target sample count, on the calling thread or on the pool, and saves a
+     * checkpoint afterwards if one is due. Between passes no tile is running, so the saved state is consistent.
+     */
+    private void renderPass(List<Tile> tiles, Hittable world, Camera cam, Framebuffer fb, int[] targets,
+                            ForkJoinPool pool, CheckpointFile checkpoint) {
+        AtomicInteger tilesDone = new AtomicInteger();
+        if (pool == null) {
+            for (Tile tile : tiles) {
+                renderTile(tile, world, cam, fb, targets);
+                reportProgress(tilesDone.incrementAndGet(), tiles.size());
+            }
+        } else {
+            pool.invoke(new TileTask(tiles, 0, tiles.size(), world, cam, fb, targets, tilesDone));
+        }
+        if (checkpoint != null && checkpoint.saveIfDue(fb, checkpointIntervalMillis)) {
+            System.out.println("Checkpoint saved: " + fb.totalSamples() + " samples");
+        }
+    }
+
+    /**
+     * Renders all samples per pixel of a single tile on the calling thread, for example on a
+     * {@link RenderWorker}. The framebuffer may be just the window covered by the tile.
+     * @param tile
      * @param world
-     * @param depth
-     * @return
+     * @param cam
+     * @param fb
      */
-    private Vec3 rayColor(Ray r, Hittable world, int depth) {
-        // Limit recursion
-        if (depth <= 0) {
-            return new Vec3(0, 0, 0);
+    public void renderTile(Tile tile, Hittable world, Camera cam, Framebuffer fb) {
+        renderTile(tile, world, cam, fb, null);
+    }
+
+    /**
+     * Renders the missing samples of every pixel of a tile into the framebuffer. Sample indices continue where
+     * the previous round stopped, so the image does not depend on how the samples were split into rounds.
+     * @param tile
+     * @param world
+     * @param cam
+     * @param fb
+     * @param targets Number of samples each pixel should have after this pass, null for samplesPerPixel.
+     */
+    private void renderTile(Tile tile, Hittable world, Camera cam, Framebuffer fb, int[] targets) {
+        TraceContext ctx = new TraceContext(sampler.copy());
+        Sampler tileSampler = ctx.sampler;
+        ThreadLocal<RenderStats> threadStats = this.threadStats;
+        boolean fullImage = fb.width == imageWidth && fb.height == imageHeight;
+        Heatmaps heatmaps = fullImage ? this.heatmaps : null;
+        FeatureBuffers features = fullImage ? this.features : null;
+        double[] featureSums = features != null ? new double[7] : null;
+        RenderStats stats = threadStats != null || heatmaps != null ? new RenderStats() : null;
+        ctx.stats = stats;
+        TileEvent event = null;
+        if (threadStats != null) {
+            event = new TileEvent();
+            event.begin();
         }
+        for (int j = tile.y1 - 1; j >= tile.y0; j--) {
+            for (int i = tile.x0; i < tile.x1; i++) {
+                int pixel = fb.index(i, imageHeight - j - 1);
+                int first = fb.sampleCount(pixel);
+                int last = targets != null ? targets[pixel] : samplesPerPixel;
+                if (first >= last) continue;
+
+                long startNanos = 0, startNodes = 0, startPrimitiveTests = 0, startRays = 0;
+                if (heatmaps != null) {
+                    startNanos = System.nanoTime();
+                    startNodes = stats.primaryNodesVisited;
+                    startPrimitiveTests = stats.primaryPrimitiveTests;
+                    startRays = stats.rays();
+                }
+                double r = 0, g = 0, b = 0;
+                double mean = 0, m2 = 0; // Welford's running luminance variance
+                for (int s = first; s < last; s++) {
+                    tileSampler.startPixelSample(i, j, s);
+                    double u = (i + tileSampler.get1D()) / (imageWidth - 1);
+                    double v = (j + tileSampler.get1D()) / (imageHeight - 1);
+                    Ray ray = cam.getRay(u, v, tileSampler, ctx.cameraRay);
+                    integrator.rayColor(ray, world, ctx);
+                    r += ctx.color.x;
+                    g += ctx.color.y;
+                    b += ctx.color.z;
+                    if (features != null) {
+                        featureSums[0] += ctx.albedo.x;
+                        featureSums[1] += ctx.albedo.y;
+                        featureSums[2] += ctx.albedo.z;
+                        featureSums[3] += ctx.normal.x;
+                        featureSums[4] += ctx.normal.y;
+                        featureSums[5] += ctx.normal.z;
+                        featureSums[6] += ctx.depth;
+                    }
 
-        HitRecord rec = new HitRecord();
-        
-        if (world.hit(r, 0.001, Double.POSITIVE_INFINITY, rec)) {
-            Ray scattered = new Ray(new Vec3(0,0,0), new Vec3(0,0,0));
-            Vec3 attenuation = new Vec3(0,0,0);
-            
-            Wrapper wrapper = new Wrapper(scattered, attenuation);
-            
-            if (rec.material.scatter(r, rec, wrapper)) {
-                return wrapper.attenuation.multiply(rayColor(wrapper.scatteredRay, world, depth - 1));
+                    double lum = 0.2126 * ctx.color.x + 0.7152 * ctx.color.y + 0.0722 * ctx.color.z;
+                    double delta = lum - mean;
+                    mean += delta / (s - first + 1);
+                    m2 += delta * (lum - mean);
+                }
+                fb.add(pixel, r, g, b, last - first, mean, m2);
+                if (features != null) {
+                    features.add(pixel, last - first, featureSums);
+                    Arrays.fill(featureSums, 0);
+                }
+                if (stats != null) stats.samples += last - first;
+                if (heatmaps != null) {
+                    heatmaps.add(pixel, last - first, stats.primaryNodesVisited - startNodes,
+                            stats.primaryPrimitiveTests - startPrimitiveTests, stats.rays() - startRays,
+                            System.nanoTime() - startNanos);
+                }
             }
-            return new Vec3(0, 0, 0);
         }
+        if (threadStats != null) finishTile(tile, stats, event, threadStats.get());
+    }
+
+    /**
+     * Commits the JFR event of a tile and adds its counters to those of the thread that rendered it.
+     */
+    private static void finishTile(Tile tile, RenderStats stats, TileEvent event, RenderStats stripe) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.x = tile.x0;
+            event.y = tile.y0;
+            event.width = tile.width();
+            event.height = tile.height();
+            event.samples = stats.samples;
+            event.primaryRays = stats.primaryRays;
+            event.secondaryRays = stats.secondaryRays;
+            event.shadowRays = stats.shadowRays;
+            event.nodesVisited = stats.traversal.nodesVisited;
+            event.primitiveTests = stats.traversal.primitiveTests;
+            event.commit();
+        }
+        stats.tiles = 1;
+        stripe.add(stats);
+    }
+
+    /**
+     * Prints a summary of the metrics and saves all of them as JSON.
+     */
+    private void writeMetrics(File file) {
+        System.out.println("Stats: " + metrics.summary());
+        try {
+            Files.write(file.toPath(), metrics.toJson().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
-        // --- NEW ATMOSPHERE SETTINGS ---
-        
-        Vec3 unitDirection = r.getDirection().normalize();
-        
-        // 1. SUN POSITION
-        // We lower the Y-value from 0.3 to 0.15. 
-        // This puts the sun very close to the horizon (Long shadows, golden light).
-        Vec3 sunDir = new Vec3(-1.0, 0.15, -1.0).normalize();
-        
-        // 2. SUN SIZE AND HAZINESS
-        double sunFocus = unitDirection.dot(sunDir);
-        
-        // Changed from 400 to 100.
-        // Lower number = Bigger sun disk on the sky = More "glow" around the sun.
-        double sunIntensity = Math.pow(Math.max(0, sunFocus), 100); 
-        
-        // 3. SUN BRIGHTNESS (THE NUCLEAR OPTION) ☀️
-        // Increased from (8, 6, 4) to (50, 35, 20).
-        // This is physically impossibly bright, but it creates the "glare" effect
-        // on the shiny spheres.
-        Vec3 sunColor = new Vec3(100.0, 70.0, 40.0); 
-
-        // 4. BRIGHTER SKY GRADIENT
-        double t = 0.5 * (unitDirection.y + 1.0);
-        
-        // Brighter horizon (White-Gold instead of just Orange)
-        Vec3 horizonColor = new Vec3(4, 3, 2); 
-        
-        // Brighter zenith (Blue but glowing)
-        Vec3 zenithColor = new Vec3(0.5, 0.7, 1.0); 
-
-        Vec3 skyColor = horizonColor.scale(1.0 - t).add(zenithColor.scale(t));
-
-        return skyColor.add(sunColor.scale(sunIntensity));
-    }
-
-    // --- HELPER METHODS FOR WRITING COLORS (These were missing!) ---
-
-    /**
-     * Writes the color to the image, applying gamma correction and scaling by the number of samples.
-     * @param image
-     * @param x
-     * @param y
-     * @param pixelColor
-     * @param samples
-     */
-    private void writeColor(BufferedImage image, int x, int y, Vec3 pixelColor, int samples) {
-        double r = pixelColor.x;
-        double g = pixelColor.y;
-        double b = pixelColor.z;
-
-        // Divide the color by the number of samples and gamma-correct for gamma=2.0.
-        double scale = 1.0 / samples;
-        r = Math.sqrt(scale * r);
-        g = Math.sqrt(scale * g);
-        b = Math.sqrt(scale * b);
-
-        // Write the translated [0,255] value of each color component.
-        int ir = (int)(256 * clamp(r, 0.0, 0.999));
-        int ig = (int)(256 * clamp(g, 0.0, 0.999));
-        int ib = (int)(256 * clamp(b, 0.0, 0.999));
-
-        int color = (ir << 16) | (ig << 8) | ib;
-        image.setRGB(x, y, color);
-    }
-
-    /**
-     * Clamps a value between a minimum and maximum.
-     * @param x
-     * @param min
-     * @param max
-     * @return
-     */
-    private double clamp(double x, double min, double max) {
-        if (x < min) return min;
-        if (x > max) return max;
-        return x;
-    }
-}
\ No newline at end of file
+    /**
+     * Prints progress every progressStep percent instead of once per tile.
+     * @param done
+     * @param total
+     */
+    private void reportProgress(int done, int total) {
+        if (!reportProgress) return;
+        int percent = done * 100 / total / progressStep * progressStep;
+        if (percent != (done - 1) * 100 / total / progressStep * progressStep) {
+            System.out.println("Progress: " + percent + "% (" + (total - done) + " tiles remaining)");
+        }
+    }
+
+    /**
+     * Saves the number of samples per pixel as a grayscale image, white being the most sampled pixel.
+     */
+    private void writeSampleCounts(Framebuffer fb, File file) throws IOException {
+        double scale = 255.0 / Math.max(1, fb.maxSampleCount());
+        int[] pixels = new int[imageWidth * imageHeight];
+        for (int p = 0; p < pixels.length; p++) {
+            int gray = (int) (fb.sampleCount(p) * scale);
+            pixels[p] = (gray << 16) | (gray << 8) | gray;
+        }
+        BufferedImage image = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, imageWidth, imageHeight, pixels, 0, imageWidth);
+        ImageIO.write(image, "png", file);
+    }
+
+    /**
+     * Returns a file in the same folder as the output file, e.g. render1.png -> render1_samples.png.
+     */
+    static File siblingFile(File outputFile, String suffix) {
+        String name = outputFile.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return new File(outputFile.getAbsoluteFile().getParentFile(), base + suffix);
+    }
+
+    /**
+     * Fork-join task over a range of tiles. Ranges are split in half until a single tile remains, so idle
+     * workers steal large, spatially coherent chunks of the Hilbert-ordered tile list.
+     */
+    private class TileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Tile> tiles;
+        private final int start;
+        private final int end;
+        private final Hittable world;
+        private final Camera cam;
+        private final Framebuffer fb;
+        private final int[] targets;
+        private final AtomicInteger tilesDone;
+
+        TileTask(List<Tile> tiles, int start, int end, Hittable world, Camera cam, Framebuffer fb, int[] targets,
+                 AtomicInteger tilesDone) {
+            this.tiles = tiles;
+            this.start = start;
+            this.end = end;
+            this.world = world;
+            this.cam = cam;
+            this.fb = fb;
+            this.targets = targets;
+            this.tilesDone = tilesDone;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start == 1) {
+                renderTile(tiles.get(start), world, cam, fb, targets);
+                reportProgress(tilesDone.incrementAndGet(), tiles.size());
+                return;
+            }
+            int mid = start + (end - start) / 2;
+            invokeAll(new TileTask(tiles, start, mid, world, cam, fb, targets, tilesDone),
+                      new TileTask(tiles, mid, end, world, cam, fb, targets, tilesDone));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package main;
+
+import math.IndependentSampler;
+import math.Sampler;
+import math.SobolSampler;
+
+/**
+ * The random number sources a render can use. Both give the same image on average; the Sobol sampler spreads the
+ * samples of a pixel more evenly and so has less noise at the same sample count.
+ */
+public enum SamplerType {
+    /** {@link IndependentSampler}: independent uniform numbers. */
+    INDEPENDENT {
+        @Override
+        public Sampler create(long seed) {
+            return new IndependentSampler(seed);
+        }
+    },
+    /** {@link SobolSampler}: Owen-scrambled Sobol points. */
+    SOBOL {
+        @Override
+        public Sampler create(long seed) {
+            return new SobolSampler(seed);
+        }
+    };
+
+    /**
+     * @param seed Same seed = bit-identical image, regardless of thread count.
+     * @return A sampler of this type.
+     */
+    public abstract Sampler create(long seed);
+}
@@ -0,0 +1,267 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import math.Transform;
+import math.Vec3;
+
+/**
+ * Binary form of a parsed {@link SceneDescription}, saved next to the scene file (scene.txt -> scene.txt.bin).
+ * The whole file is read with one bulk read and the primitive arrays are copied out of the buffer in one go,
+ * so even scenes with millions of primitives load in milliseconds. The cache remembers the size and
+ * modification time of the scene file it was made from and is rebuilt when either of them changes.
+ * Everything is little-endian:
+ * <pre>
+ *   int    magic "RTSC"
+ *   int    format version
+ *   long   size of the scene file
+ *   long   modification time of the scene file
+ *   int    width, double aspect ratio, int samples per pixel, int max depth, long seed,
+ *   int    tone mapper ordinal, double exposure, int accelerator ordinal, int sampler ordinal
+ *   double look from x y z, look at x y z, up x y z, fov, aperture, focus distance
+ *   int    material count, then per material: int type ordinal, 6 doubles of parameters
+ *   int    plane count, then the plane doubles (6 per plane) and material indices
+ *   int    sphere count, then the sphere doubles (4 per sphere) and material indices
+ *   int    mesh count, then per mesh: int material index, 12 doubles of the transform, int length,
+ *          UTF-8 bytes of the OBJ path as written in the scene file
+ * </pre>
+ * Meshes are loaded from their OBJ files every time, so only their paths are cached.
+ * <p>
+ * A new cache is written to a temporary file and then renamed over the old one, so a reader never sees a half
+ * written file. A cache that is cut short or damaged anyway counts as out of date and is rebuilt.
+ */
+public class SceneCache {
+    private static final int MAGIC = 0x52545343;
+    private static final int VERSION = 6;
+
+    private SceneCache() {
+    }
+
+    /**
+     * Loads a scene file through its cache: reads the cache if it is up to date, otherwise parses the scene
+     * file and writes a new cache. A cache that can't be written (e.g. in a read-only folder) is skipped.
+     * @param sceneFile
+     * @return The scene.
+     * @throws IOException If the scene file can't be read or parsed.
+     */
+    public static SceneDescription load(File sceneFile) throws IOException {
+        File cacheFile = cacheFile(sceneFile);
+        if (cacheFile.isFile()) {
+            SceneDescription cached = read(cacheFile, sceneFile.length(), sceneFile.lastModified());
+            if (cached != null) {
+                cached.directory = sceneFile.getAbsoluteFile().getParentFile();
+                return cached;
+            }
+        }
+        SceneDescription scene = SceneParser.parse(sceneFile);
+        try {
+            write(scene, cacheFile, sceneFile.length(), sceneFile.lastModified());
+        } catch (IOException e) {
+            System.out.println("Can't write scene cache " + cacheFile + ": " + e);
+        }
+        return scene;
+    }
+
+    public static File cacheFile(File sceneFile) {
+        return new File(sceneFile.getPath() + ".bin");
+    }
+
+    /**
+     * Writes the binary form of a scene. The file is replaced atomically, see the class comment.
+     * @param scene
+     * @param file
+     * @param sourceSize Size of the scene file the scene was parsed from.
+     * @param sourceModified Modification time of that file.
+     * @throws IOException
+     */
+    public static void write(SceneDescription scene, File file, long sourceSize, long sourceModified) throws IOException {
+        long size = 4 + 4 + 8 + 8
+                + 4 + 8 + 4 + 4 + 8 + 4 + 8 + 4 + 4
+                + 12 * 8
+                + 4 + (long) scene.materialCount * (4 + SceneDescription.MATERIAL_STRIDE * 8)
+                + 4 + (long) scene.planeCount * (SceneDescription.PLANE_STRIDE * 8 + 4)
+                + 4 + (long) scene.sphereCount * (SceneDescription.SPHERE_STRIDE * 8 + 4)
+                + 4;
+        byte[][] meshFiles = new byte[scene.meshCount][];
+        for (int i = 0; i < scene.meshCount; i++) {
+            meshFiles[i] = scene.meshFiles[i].getBytes(StandardCharsets.UTF_8);
+            size += 8 + SceneDescription.MESH_STRIDE * 8 + meshFiles[i].length;
+        }
+        if (size > Integer.MAX_VALUE) throw new IOException("Scene too large for a cache file");
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(sourceSize).putLong(sourceModified);
+        buffer.putInt(scene.imageWidth).putDouble(scene.aspectRatio).putInt(scene.samplesPerPixel)
+                .putInt(scene.maxDepth).putLong(scene.seed).putInt(scene.toneMapper.ordinal())
+                .putDouble(scene.exposure).putInt(scene.accelerator.ordinal())
+                .putInt(scene.sampler.ordinal());
+        putVector(buffer, scene.lookFrom);
+        putVector(buffer, scene.lookAt);
+        putVector(buffer, scene.vup);
+        buffer.putDouble(scene.vfov).putDouble(scene.aperture).putDouble(scene.focusDistance);
+
+        buffer.putInt(scene.materialCount);
+        for (int i = 0; i < scene.materialCount; i++) {
+            buffer.putInt(scene.materialTypes[i].ordinal());
+            for (int k = 0; k < SceneDescription.MATERIAL_STRIDE; k++) {
+                buffer.putDouble(scene.materialParameters[i * SceneDescription.MATERIAL_STRIDE + k]);
+            }
+        }
+        putPrimitives(buffer, scene.planeCount, scene.planes, SceneDescription.PLANE_STRIDE, scene.planeMaterials);
+        putPrimitives(buffer, scene.sphereCount, scene.spheres, SceneDescription.SPHERE_STRIDE, scene.sphereMaterials);
+        buffer.putInt(scene.meshCount);
+        for (int i = 0; i < scene.meshCount; i++) {
+            buffer.putInt(scene.meshMaterials[i]);
+            for (int k = 0; k < SceneDescription.MESH_STRIDE; k++) {
+                buffer.putDouble(scene.meshTransforms[i * SceneDescription.MESH_STRIDE + k]);
+            }
+            buffer.putInt(meshFiles[i].length).put(meshFiles[i]);
+        }
+
+        buffer.flip();
+        Path target = file.toPath().toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), file.getName(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) channel.write(buffer);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads a cache file.
+     * @return The scene, or null if the file is not a cache of this version, was made from another
+     *         version of the scene file or is damaged (cut short, counts or indexes out of range).
+     * @throws IOException If the file can't be read.
+     */
+    public static SceneDescription read(File file, long sourceSize, long sourceModified) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 24 || size > Integer.MAX_VALUE) return null;
+            buffer = ByteBuffer.allocateDirect((int) size).order(ByteOrder.LITTLE_ENDIAN);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Read the whole file
+            }
+        }
+        buffer.flip();
+        try {
+            return read(buffer, sourceSize, sourceModified);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static SceneDescription read(ByteBuffer buffer, long sourceSize, long sourceModified) {
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != sourceSize
+                || buffer.getLong() != sourceModified) {
+            return null;
+        }
+
+        SceneDescription scene = new SceneDescription();
+        scene.imageWidth = buffer.getInt();
+        scene.aspectRatio = buffer.getDouble();
+        scene.samplesPerPixel = buffer.getInt();
+        scene.maxDepth = buffer.getInt();
+        scene.seed = buffer.getLong();
+        scene.toneMapper = ToneMapper.values()[buffer.getInt()];
+        scene.exposure = buffer.getDouble();
+        scene.accelerator = Accelerator.values()[buffer.getInt()];
+        scene.sampler = SamplerType.values()[buffer.getInt()];
+        scene.lookFrom = getVector(buffer);
+        scene.lookAt = getVector(buffer);
+        scene.vup = getVector(buffer);
+        scene.vfov = buffer.getDouble();
+        scene.aperture = buffer.getDouble();
+        scene.focusDistance = buffer.getDouble();
+
+        int materials = count(buffer, 4 + SceneDescription.MATERIAL_STRIDE * 8);
+        scene.materialTypes = new SceneDescription.MaterialType[Math.max(1, materials)];
+        scene.materialParameters = new double[Math.max(1, materials) * SceneDescription.MATERIAL_STRIDE];
+        for (int i = 0; i < materials; i++) {
+            scene.materialTypes[i] = SceneDescription.MaterialType.values()[buffer.getInt()];
+            buffer.asDoubleBuffer().get(scene.materialParameters, i * SceneDescription.MATERIAL_STRIDE,
+                    SceneDescription.MATERIAL_STRIDE);
+            buffer.position(buffer.position() + SceneDescription.MATERIAL_STRIDE * 8);
+        }
+        scene.materialCount = materials;
+
+        scene.planeCount = count(buffer, SceneDescription.PLANE_STRIDE * 8 + 4);
+        scene.planes = getDoubles(buffer, scene.planeCount, SceneDescription.PLANE_STRIDE);
+        scene.planeMaterials = getMaterials(buffer, scene.planeCount, materials);
+        scene.sphereCount = count(buffer, SceneDescription.SPHERE_STRIDE * 8 + 4);
+        scene.spheres = getDoubles(buffer, scene.sphereCount, SceneDescription.SPHERE_STRIDE);
+        scene.sphereMaterials = getMaterials(buffer, scene.sphereCount, materials);
+        int meshes = count(buffer, 8 + SceneDescription.MESH_STRIDE * 8);
+        for (int i = 0; i < meshes; i++) {
+            int material = buffer.getInt();
+            double[] transform = new double[SceneDescription.MESH_STRIDE];
+            for (int k = 0; k < transform.length; k++) transform[k] = buffer.getDouble();
+            byte[] path = new byte[count(buffer, 1)];
+            buffer.get(path);
+            scene.addMesh(new String(path, StandardCharsets.UTF_8), Transform.of(transform), material);
+        }
+        return scene;
+    }
+
+    private static void putVector(ByteBuffer buffer, Vec3 v) {
+        buffer.putDouble(v.x).putDouble(v.y).putDouble(v.z);
+    }
+
+    private static Vec3 getVector(ByteBuffer buffer) {
+        return new Vec3(buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+    }
+
+    private static void putPrimitives(ByteBuffer buffer, int count, double[] data, int stride, int[] materials) {
+        buffer.putInt(count);
+        buffer.asDoubleBuffer().put(data, 0, count * stride);
+        buffer.position(buffer.position() + count * stride * 8);
+        buffer.asIntBuffer().put(materials, 0, count);
+        buffer.position(buffer.position() + count * 4);
+    }
+
+    // The arrays get room for at least one primitive, so the add methods of SceneDescription can grow them by doubling
+    private static double[] getDoubles(ByteBuffer buffer, int count, int stride) {
+        double[] values = new double[Math.max(count, 1) * stride];
+        buffer.asDoubleBuffer().get(values, 0, count * stride);
+        buffer.position(buffer.position() + count * stride * 8);
+        return values;
+    }
+
+    private static int[] getMaterials(ByteBuffer buffer, int count, int materials) {
+        int[] values = new int[Math.max(count, 1)];
+        buffer.asIntBuffer().get(values, 0, count);
+        buffer.position(buffer.position() + count * 4);
+        for (int i = 0; i < count; i++) {
+            if (values[i] < 0 || values[i] >= materials) throw new IllegalArgumentException("No material " + values[i]);
+        }
+        return values;
+    }
+
+    /**
+     * Reads the count of a section and checks it against what is left of the file before anything is allocated.
+     * @param bytesEach Size of one element of the section, at least.
+     */
+    private static int count(ByteBuffer buffer, int bytesEach) {
+        int count = buffer.getInt();
+        if (count < 0 || (long) count * bytesEach > buffer.remaining()) throw new BufferUnderflowException();
+        return count;
+    }
+}
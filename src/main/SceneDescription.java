@@ -0,0 +1,265 @@
+package main;
+
+import hittable.HittableList;
+import hittable.Instance;
+import hittable.ObjLoader;
+import hittable.Plane;
+import hittable.SAHBuilder;
+import hittable.Sphere;
+import hittable.TriangleMesh;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import material.CheckerMaterial;
+import material.Dielectric;
+import material.Lambertian;
+import material.Material;
+import material.Metal;
+import material.WoodCheckerMaterial;
+import math.Transform;
+import math.Vec3;
+
+/**
+ * A scene as read from a scene file by {@link SceneParser} or from its binary cache by {@link SceneCache}:
+ * render settings, camera, materials and primitives. Primitives are kept as flat arrays of numbers with a
+ * material index each, so a scene with millions of spheres is a handful of arrays that can be read and
+ * written in bulk. Triangle meshes are kept as paths of OBJ files with a transform. {@link #createWorld()} turns it all into
+ * objects.
+ */
+public class SceneDescription {
+    /** Material types with the number of parameters each of them takes. */
+    public enum MaterialType {
+        LAMBERTIAN(3),  // albedo r g b
+        METAL(4),       // albedo r g b, fuzz
+        DIELECTRIC(1),  // index of refraction
+        CHECKER(6),     // odd color r g b, even color r g b
+        WOOD(0);
+
+        public final int parameters;
+
+        MaterialType(int parameters) {
+            this.parameters = parameters;
+        }
+    }
+
+    // Room for the parameters of any material type
+    static final int MATERIAL_STRIDE = 6;
+    static final int PLANE_STRIDE = 6;  // point x y z, normal x y z
+    static final int SPHERE_STRIDE = 4; // center x y z, radius
+    static final int MESH_STRIDE = 12;  // transform matrix, see Transform
+
+    // Render settings
+    public int imageWidth = 1200;
+    public double aspectRatio = 16.0 / 9.0;
+    public int samplesPerPixel = 500;
+    public int maxDepth = 50;
+    public long seed = 0;
+    public ToneMapper toneMapper = ToneMapper.CLAMP;
+    public double exposure = 1.0;
+    public Accelerator accelerator = Accelerator.BVH;
+    public SamplerType sampler = SamplerType.INDEPENDENT;
+
+    // Camera
+    public Vec3 lookFrom = new Vec3(13, 4, 3);
+    public Vec3 lookAt = new Vec3(0, 0.2, 0);
+    public Vec3 vup = new Vec3(0, 1, 0);
+    public double vfov = 20;
+    public double aperture = 0;
+    public double focusDistance = 0; // 0 = focus on lookAt
+
+    MaterialType[] materialTypes = new MaterialType[4];
+    double[] materialParameters = new double[4 * MATERIAL_STRIDE];
+    int materialCount;
+
+    double[] planes = new double[PLANE_STRIDE];
+    int[] planeMaterials = new int[1];
+    int planeCount;
+
+    double[] spheres = new double[64 * SPHERE_STRIDE];
+    int[] sphereMaterials = new int[64];
+    int sphereCount;
+
+    String[] meshFiles = new String[1]; // As written in the scene file, see directory
+    double[] meshTransforms = new double[MESH_STRIDE];
+    int[] meshMaterials = new int[1];
+    int meshCount;
+
+    // Folder that relative mesh paths are resolved against, null for the working directory. Not part of the
+    // cache: it is set from wherever the scene file is loaded from, so a scene folder can be moved or copied.
+    File directory;
+
+    /**
+     * Adds a material.
+     * @param type
+     * @param parameters type.parameters values, see {@link MaterialType}.
+     * @return The index to refer to the material with.
+     */
+    public int addMaterial(MaterialType type, double... parameters) {
+        if (parameters.length != type.parameters) {
+            throw new IllegalArgumentException(type + " takes " + type.parameters + " parameters");
+        }
+        if (materialCount == materialTypes.length) {
+            materialTypes = Arrays.copyOf(materialTypes, 2 * materialCount);
+            materialParameters = Arrays.copyOf(materialParameters, 2 * materialCount * MATERIAL_STRIDE);
+        }
+        materialTypes[materialCount] = type;
+        System.arraycopy(parameters, 0, materialParameters, materialCount * MATERIAL_STRIDE, parameters.length);
+        return materialCount++;
+    }
+
+    public void addPlane(double px, double py, double pz, double nx, double ny, double nz, int material) {
+        checkMaterial(material);
+        if (planeCount == planeMaterials.length) {
+            planes = Arrays.copyOf(planes, 2 * planeCount * PLANE_STRIDE);
+            planeMaterials = Arrays.copyOf(planeMaterials, 2 * planeCount);
+        }
+        int o = planeCount * PLANE_STRIDE;
+        planes[o] = px;
+        planes[o + 1] = py;
+        planes[o + 2] = pz;
+        planes[o + 3] = nx;
+        planes[o + 4] = ny;
+        planes[o + 5] = nz;
+        planeMaterials[planeCount++] = material;
+    }
+
+    public void addSphere(double cx, double cy, double cz, double radius, int material) {
+        checkMaterial(material);
+        if (sphereCount == sphereMaterials.length) {
+            spheres = Arrays.copyOf(spheres, 2 * sphereCount * SPHERE_STRIDE);
+            sphereMaterials = Arrays.copyOf(sphereMaterials, 2 * sphereCount);
+        }
+        int o = sphereCount * SPHERE_STRIDE;
+        spheres[o] = cx;
+        spheres[o + 1] = cy;
+        spheres[o + 2] = cz;
+        spheres[o + 3] = radius;
+        sphereMaterials[sphereCount++] = material;
+    }
+
+    /**
+     * Adds a triangle mesh. The file is only read by {@link #createWorld()}, so it is never part of the cache.
+     * @param objFile Path of a Wavefront OBJ file, absolute or relative to the folder of the scene file.
+     * @param transform Places the mesh in the scene.
+     * @param material
+     */
+    public void addMesh(String objFile, Transform transform, int material) {
+        checkMaterial(material);
+        if (meshCount == meshMaterials.length) {
+            meshFiles = Arrays.copyOf(meshFiles, 2 * meshCount);
+            meshTransforms = Arrays.copyOf(meshTransforms, 2 * meshCount * MESH_STRIDE);
+            meshMaterials = Arrays.copyOf(meshMaterials, 2 * meshCount);
+        }
+        meshFiles[meshCount] = objFile;
+        transform.get(meshTransforms, meshCount * MESH_STRIDE);
+        meshMaterials[meshCount++] = material;
+    }
+
+    private void checkMaterial(int material) {
+        if (material < 0 || material >= materialCount) throw new IllegalArgumentException("No material " + material);
+    }
+
+    public int materialCount() {
+        return materialCount;
+    }
+
+    public int planeCount() {
+        return planeCount;
+    }
+
+    public int sphereCount() {
+        return sphereCount;
+    }
+
+    public int meshCount() {
+        return meshCount;
+    }
+
+    public int imageHeight() {
+        return (int) (imageWidth / aspectRatio);
+    }
+
+    /**
+     * Creates the materials and primitives of the scene. Primitives that use the same material share it.
+     * Every OBJ file is loaded once and gets its own SAH BVH over its triangles; a file that is used more than
+     * once, or with a transform, is added as {@link Instance}s of that one mesh.
+     * @return The list of all objects in the scene.
+     * @throws IOException If a mesh can't be loaded.
+     */
+    public HittableList createWorld() throws IOException {
+        Material[] materials = new Material[materialCount];
+        for (int i = 0; i < materialCount; i++) materials[i] = createMaterial(i);
+
+        HittableList world = new HittableList();
+        for (int i = 0; i < planeCount; i++) {
+            int o = i * PLANE_STRIDE;
+            world.add(new Plane(new Vec3(planes[o], planes[o + 1], planes[o + 2]),
+                    new Vec3(planes[o + 3], planes[o + 4], planes[o + 5]), materials[planeMaterials[i]]));
+        }
+        for (int i = 0; i < sphereCount; i++) {
+            int o = i * SPHERE_STRIDE;
+            world.add(new Sphere(new Vec3(spheres[o], spheres[o + 1], spheres[o + 2]), spheres[o + 3],
+                    materials[sphereMaterials[i]]));
+        }
+        // Count the uses of every file first, a mesh can only be added directly if nothing else refers to it
+        File[] files = new File[meshCount];
+        Map<File, Integer> uses = new HashMap<>();
+        for (int i = 0; i < meshCount; i++) {
+            File file = new File(meshFiles[i]);
+            if (!file.isAbsolute() && directory != null) file = new File(directory, meshFiles[i]);
+            files[i] = file.getCanonicalFile();
+            uses.merge(files[i], 1, Integer::sum);
+        }
+        Map<File, TriangleMesh> meshes = new HashMap<>();
+        for (int i = 0; i < meshCount; i++) {
+            Material material = materials[meshMaterials[i]];
+            TriangleMesh mesh = meshes.get(files[i]);
+            if (mesh == null) {
+                mesh = ObjLoader.load(files[i], material, new SAHBuilder());
+                meshes.put(files[i], mesh);
+            }
+            Transform transform = Transform.of(Arrays.copyOfRange(meshTransforms, i * MESH_STRIDE,
+                    (i + 1) * MESH_STRIDE));
+            if (transform.isIdentity() && uses.get(files[i]) == 1) {
+                world.add(mesh);
+            } else {
+                world.add(new Instance(mesh, transform, material));
+            }
+        }
+        return world;
+    }
+
+    private Material createMaterial(int index) {
+        double[] p = materialParameters;
+        int o = index * MATERIAL_STRIDE;
+        switch (materialTypes[index]) {
+            case LAMBERTIAN:
+                return new Lambertian(new Vec3(p[o], p[o + 1], p[o + 2]));
+            case METAL:
+                return new Metal(new Vec3(p[o], p[o + 1], p[o + 2]), p[o + 3]);
+            case DIELECTRIC:
+                return new Dielectric(p[o]);
+            case CHECKER:
+                return new CheckerMaterial(new Vec3(p[o], p[o + 1], p[o + 2]), new Vec3(p[o + 3], p[o + 4], p[o + 5]));
+            default:
+                return new WoodCheckerMaterial();
+        }
+    }
+
+    public Camera createCamera() {
+        double focus = focusDistance > 0 ? focusDistance : lookFrom.sub(lookAt).length();
+        return new Camera(lookFrom, lookAt, vup, vfov, aspectRatio, aperture, focus);
+    }
+
+    /**
+     * @return A renderer with the render settings of the scene. Callers still set threads, tile size and so on.
+     */
+    public Renderer createRenderer() {
+        Renderer renderer = new Renderer(imageWidth, imageHeight(), samplesPerPixel, maxDepth);
+        renderer.setSampler(sampler.create(seed));
+        renderer.setToneMapping(toneMapper, exposure);
+        return renderer;
+    }
+}
@@ -0,0 +1,370 @@
+package main;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import math.Transform;
+import math.Vec3;
+
+/**
+ * Reads the text scene format into a {@link SceneDescription}. The file is read line by line and every
+ * statement goes straight into the description, so nothing but the current line is held in memory.
+ * <p>
+ * One statement per line, words separated by whitespace, {@code #} starts a comment:
+ * <pre>
+ *   render   [width N] [aspect W:H | aspect X] [spp N] [depth N] [seed N] [tonemap clamp|reinhard|aces] [exposure X]
+ *            [accelerator bvh|grid|hgrid] [sampler independent|sobol]
+ *   camera   [from x y z] [at x y z] [up x y z] [fov degrees] [aperture X] [focus distance]
+ *   material name lambertian r g b
+ *   material name metal r g b fuzz
+ *   material name dielectric ior
+ *   material name checker r g b r g b
+ *   material name wood
+ *   plane    px py pz nx ny nz material
+ *   sphere   cx cy cz radius material
+ *   mesh     file.obj material [translate x y z] [rotate x|y|z degrees] [scale x y z]
+ * </pre>
+ * Materials must be defined before they are used, and mesh paths are relative to the folder of the scene file.
+ * The transforms of a mesh are applied in the order they are written; a file that is used by several mesh
+ * statements is loaded only once.
+ * Settings that are left out keep the defaults of {@link SceneDescription}; without a focus distance (or with
+ * {@code focus 0}) the camera focuses on the point it looks at. Values are checked here, so a zero width, a
+ * negative radius or a camera without a direction is reported with file and line instead of failing while
+ * rendering.
+ */
+public class SceneParser {
+    private final String source;
+    private final SceneDescription scene = new SceneDescription();
+    private final Map<String, Integer> materials = new HashMap<>();
+    private final List<String> words = new ArrayList<>();
+    private int lineNumber;
+    private int position; // Next word of the current line
+    // Last render and camera statement, for errors in settings that are only checked at the end
+    private int renderLine;
+    private int cameraLine;
+
+    private SceneParser(String source, File directory) {
+        this.source = source;
+        scene.directory = directory;
+    }
+
+    /**
+     * Parses a scene file. Prefer {@link SceneCache#load}, which skips the parsing when the file has not changed.
+     * @param file
+     * @return The scene.
+     * @throws IOException If the file can't be read or has a syntax error.
+     */
+    public static SceneDescription parse(File file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            return parse(reader, file.getName(), file.getAbsoluteFile().getParentFile());
+        }
+    }
+
+    /**
+     * Parses a scene from a reader.
+     * @param reader
+     * @param source Name used in error messages.
+     * @param directory Folder that mesh paths are relative to, null for the working directory.
+     * @return The scene.
+     * @throws IOException If the reader fails or the scene has a syntax error.
+     */
+    public static SceneDescription parse(Reader reader, String source, File directory) throws IOException {
+        SceneParser parser = new SceneParser(source, directory);
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            parser.lineNumber++;
+            parser.statement(line);
+        }
+        parser.finish();
+        return parser.scene;
+    }
+
+    private void statement(String line) throws IOException {
+        split(line);
+        if (words.isEmpty()) return;
+        try {
+            String keyword = word();
+            switch (keyword) {
+                case "render":
+                    render();
+                    break;
+                case "camera":
+                    camera();
+                    break;
+                case "material":
+                    material();
+                    break;
+                case "plane":
+                    double px = number(), py = number(), pz = number();
+                    double nx = number(), ny = number(), nz = number();
+                    if (nx == 0 && ny == 0 && nz == 0) throw error("the normal of a plane must not be zero");
+                    scene.addPlane(px, py, pz, nx, ny, nz, materialRef());
+                    break;
+                case "sphere":
+                    scene.addSphere(number(), number(), number(), positiveNumber("radius"), materialRef());
+                    break;
+                case "mesh":
+                    String mesh = word();
+                    int material = materialRef();
+                    scene.addMesh(mesh, transform(), material);
+                    break;
+                default:
+                    throw error("unknown statement '" + keyword + "'");
+            }
+            if (position < words.size()) throw error("unexpected '" + words.get(position) + "'");
+        } catch (IllegalArgumentException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    private void render() throws IOException {
+        renderLine = lineNumber;
+        while (position < words.size()) {
+            String key = word();
+            switch (key) {
+                case "width":
+                    scene.imageWidth = positiveInteger("width");
+                    break;
+                case "aspect":
+                    String aspect = word();
+                    int colon = aspect.indexOf(':');
+                    double ratio = colon < 0 ? parseNumber(aspect)
+                            : parseNumber(aspect.substring(0, colon)) / parseNumber(aspect.substring(colon + 1));
+                    if (!(ratio > 0) || Double.isInfinite(ratio)) {
+                        throw error("aspect must be positive, got '" + aspect + "'");
+                    }
+                    scene.aspectRatio = ratio;
+                    break;
+                case "spp":
+                    scene.samplesPerPixel = positiveInteger("spp");
+                    break;
+                case "depth":
+                    scene.maxDepth = positiveInteger("depth");
+                    break;
+                case "seed":
+                    scene.seed = integer();
+                    break;
+                case "tonemap":
+                    String mapper = word();
+                    try {
+                        scene.toneMapper = ToneMapper.valueOf(mapper.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        throw error("unknown tone mapper '" + mapper + "'");
+                    }
+                    break;
+                case "exposure":
+                    scene.exposure = positiveNumber("exposure");
+                    break;
+                case "accelerator":
+                    String accelerator = word();
+                    try {
+                        scene.accelerator = Accelerator.valueOf(accelerator.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        throw error("unknown accelerator '" + accelerator + "'");
+                    }
+                    break;
+                case "sampler":
+                    String sampler = word();
+                    try {
+                        scene.sampler = SamplerType.valueOf(sampler.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        throw error("unknown sampler '" + sampler + "'");
+                    }
+                    break;
+                default:
+                    throw error("unknown render setting '" + key + "'");
+            }
+        }
+    }
+
+    private void camera() throws IOException {
+        cameraLine = lineNumber;
+        while (position < words.size()) {
+            String key = word();
+            switch (key) {
+                case "from":
+                    scene.lookFrom = vector();
+                    break;
+                case "at":
+                    scene.lookAt = vector();
+                    break;
+                case "up":
+                    scene.vup = vector();
+                    break;
+                case "fov":
+                    String fov = word();
+                    scene.vfov = parseNumber(fov);
+                    if (!(scene.vfov > 0 && scene.vfov < 180)) {
+                        throw error("fov must be between 0 and 180 degrees, got '" + fov + "'");
+                    }
+                    break;
+                case "aperture":
+                    scene.aperture = nonNegativeNumber("aperture");
+                    break;
+                case "focus":
+                    scene.focusDistance = nonNegativeNumber("focus");
+                    break;
+                default:
+                    throw error("unknown camera setting '" + key + "'");
+            }
+        }
+    }
+
+    /**
+     * Reads the transforms at the end of a statement and combines them into one.
+     */
+    private Transform transform() throws IOException {
+        Transform transform = Transform.identity();
+        while (position < words.size()) {
+            String key = word();
+            switch (key) {
+                case "translate":
+                    transform = transform.then(Transform.translation(number(), number(), number()));
+                    break;
+                case "rotate":
+                    String axis = word();
+                    int index = "xyz".indexOf(axis);
+                    if (axis.length() != 1 || index < 0) throw error("expected x, y or z, got '" + axis + "'");
+                    transform = transform.then(Transform.rotation(index, number()));
+                    break;
+                case "scale":
+                    transform = transform.then(Transform.scaling(number(), number(), number()));
+                    break;
+                default:
+                    throw error("unknown transform '" + key + "'");
+            }
+        }
+        return transform;
+    }
+
+    private void material() throws IOException {
+        String name = word();
+        if (materials.containsKey(name)) throw error("material '" + name + "' is already defined");
+        String type = word();
+        SceneDescription.MaterialType materialType;
+        try {
+            materialType = SceneDescription.MaterialType.valueOf(type.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw error("unknown material type '" + type + "'");
+        }
+        double[] parameters = new double[materialType.parameters];
+        for (int i = 0; i < parameters.length; i++) parameters[i] = number();
+        materials.put(name, scene.addMaterial(materialType, parameters));
+    }
+
+    private int materialRef() throws IOException {
+        String name = word();
+        Integer index = materials.get(name);
+        if (index == null) throw error("undefined material '" + name + "'");
+        return index;
+    }
+
+    private Vec3 vector() throws IOException {
+        return new Vec3(number(), number(), number());
+    }
+
+    private long integer() throws IOException {
+        String word = word();
+        try {
+            return Long.parseLong(word);
+        } catch (NumberFormatException e) {
+            throw error("expected an integer, got '" + word + "'");
+        }
+    }
+
+    private int positiveInteger(String name) throws IOException {
+        int start = position;
+        long value = integer();
+        if (value < 1 || value > Integer.MAX_VALUE) {
+            throw error(name + " must be a positive integer, got '" + words.get(start) + "'");
+        }
+        return (int) value;
+    }
+
+    private double number() throws IOException {
+        return parseNumber(word());
+    }
+
+    private double positiveNumber(String name) throws IOException {
+        String word = word();
+        double value = parseNumber(word);
+        if (value <= 0) throw error(name + " must be positive, got '" + word + "'");
+        return value;
+    }
+
+    private double nonNegativeNumber(String name) throws IOException {
+        String word = word();
+        double value = parseNumber(word);
+        if (value < 0) throw error(name + " must not be negative, got '" + word + "'");
+        return value;
+    }
+
+    private double parseNumber(String word) throws IOException {
+        double value;
+        try {
+            value = Double.parseDouble(word);
+        } catch (NumberFormatException e) {
+            throw error("expected a number, got '" + word + "'");
+        }
+        if (!Double.isFinite(value)) throw error("expected a finite number, got '" + word + "'");
+        return value;
+    }
+
+    private String word() throws IOException {
+        if (position == words.size()) throw error("unexpected end of line");
+        return words.get(position++);
+    }
+
+    /**
+     * Splits a line into words, dropping the comment.
+     */
+    private void split(String line) {
+        words.clear();
+        position = 0;
+        int start = -1;
+        for (int i = 0; i <= line.length(); i++) {
+            char c = i < line.length() ? line.charAt(i) : ' ';
+            if (c == '#') {
+                if (start >= 0) words.add(line.substring(start, i));
+                return;
+            }
+            if (Character.isWhitespace(c)) {
+                if (start >= 0) words.add(line.substring(start, i));
+                start = -1;
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+    }
+
+    /**
+     * Checks the settings that may be spread over several statements, once the whole file is read.
+     */
+    private void finish() throws IOException {
+        if (scene.imageHeight() < 1) {
+            throw error(renderLine, "width " + scene.imageWidth + " with this aspect is less than one pixel high");
+        }
+        Vec3 direction = scene.lookFrom.sub(scene.lookAt);
+        if (direction.lengthSquared() == 0) throw error(cameraLine, "the camera looks at its own position");
+        if (scene.vup.cross(direction).lengthSquared() == 0) {
+            throw error(cameraLine, "up must not point along the viewing direction");
+        }
+    }
+
+    private IOException error(String message) {
+        return error(lineNumber, message);
+    }
+
+    private IOException error(int line, String message) {
+        return new IOException(source + ":" + line + ": " + message);
+    }
+}
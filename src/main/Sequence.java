@@ -0,0 +1,141 @@
+package main;
+
+import hittable.FlatBVH;
+import hittable.HittableList;
+import hittable.Instance;
+import hittable.SAHBuilder;
+import hittable.World;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleFunction;
+import math.Track;
+import math.Transform;
+import math.Vec3;
+
+/**
+ * Renders an animation, frame by frame, in one process: a camera that moves along a path and objects that move
+ * along keyframed offsets. The scene is created once; moving objects are {@link Instance}s, so a frame only
+ * changes their transforms and refits the bounds of the BVH instead of rebuilding it. A refitted tree gets
+ * worse as the objects drift away from where it was built, so it is rebuilt once its SAH cost has grown past
+ * a threshold.
+ * <p>
+ * Frames are written as frame0000.png, frame0001.png, ... and can be joined with e.g.
+ * {@code ffmpeg -i frame%04d.png}.
+ */
+public class Sequence {
+    private final HittableList bounded;
+    private final HittableList unbounded;
+    private final List<Instance> animated = new ArrayList<>();
+    private final List<Transform> baseTransforms = new ArrayList<>();
+    private final List<Track> offsets = new ArrayList<>();
+    private final int frames;
+    private final double duration;
+    private DoubleFunction<Camera> camera;
+    private double rebuildThreshold = 1.3;
+    private FlatBVH bvh;
+    private double builtCost; // SAH cost of the BVH right after it was built
+
+    /**
+     * @param world All objects of the scene; the ones that move must be {@link Instance}s.
+     * @param frames Number of frames to render.
+     * @param duration Time of the last frame; the first frame is at time 0.
+     */
+    public Sequence(HittableList world, int frames, double duration) {
+        if (frames < 1) throw new IllegalArgumentException("A sequence needs at least one frame");
+        this.bounded = world.bounded();
+        this.unbounded = world.unbounded();
+        this.frames = frames;
+        this.duration = duration;
+    }
+
+    /**
+     * Sets the camera of every frame.
+     * @param camera Creates the camera for a point in time.
+     */
+    public void setCamera(DoubleFunction<Camera> camera) {
+        this.camera = camera;
+    }
+
+    /**
+     * Creates a camera path that looks from one track to another and keeps the point it looks at in focus.
+     */
+    public static DoubleFunction<Camera> cameraPath(Track lookFrom, Track lookAt, Vec3 vup, double vfov,
+                                                    double aspectRatio, double aperture) {
+        return time -> {
+            Vec3 from = lookFrom.at(time);
+            Vec3 at = lookAt.at(time);
+            return new Camera(from, at, vup, vfov, aspectRatio, aperture, from.sub(at).length());
+        };
+    }
+
+    /**
+     * Moves an object: at every frame it is placed at its current transform followed by the offset of the track.
+     * @param instance One of the objects of the world.
+     * @param offset Translation over time.
+     */
+    public void animate(Instance instance, Track offset) {
+        animated.add(instance);
+        baseTransforms.add(instance.getTransform());
+        offsets.add(offset);
+    }
+
+    /**
+     * Sets how much worse than right after a build the refitted BVH may get before it is rebuilt.
+     * @param rebuildThreshold Ratio of SAH costs, e.g. 1.3 = rebuild when the cost has grown by 30%.
+     */
+    public void setRebuildThreshold(double rebuildThreshold) {
+        this.rebuildThreshold = rebuildThreshold;
+    }
+
+    /**
+     * Renders every frame into a folder.
+     * With metrics enabled, every frame is counted into fresh stats (frame0000_stats.json, ...) whose build time
+     * is the time of that frame's build or refit; the renderer's own stats are left as they were.
+     * @param renderer Renders and saves every frame with its own settings.
+     * @param directory Folder for the frames, created if needed.
+     */
+    public void render(Renderer renderer, File directory) {
+        if (camera == null) throw new IllegalStateException("The sequence has no camera");
+        directory.mkdirs();
+        RenderStats metrics = renderer.getMetrics();
+        try {
+            for (int frame = 0; frame < frames; frame++) {
+                double time = frames == 1 ? 0 : duration * frame / (frames - 1);
+                long start = System.nanoTime();
+                boolean rebuilt = update(time);
+                long updateNanos = System.nanoTime() - start;
+                System.out.printf("Frame %d/%d at t=%.3f: %s in %.2f ms, SAH cost %.2f%n", frame + 1, frames, time,
+                        rebuilt ? "BVH built" : "BVH refitted", updateNanos / 1e6, bvh.sahCost());
+                if (metrics != null) {
+                    RenderStats frameStats = new RenderStats();
+                    frameStats.buildNanos = updateNanos;
+                    renderer.setMetrics(frameStats);
+                }
+                World world = new World(bvh, unbounded);
+                renderer.render(world, camera.apply(time),
+                        new File(directory, String.format("frame%04d.png", frame)));
+            }
+        } finally {
+            renderer.setMetrics(metrics);
+        }
+    }
+
+    /**
+     * Moves the animated objects to a point in time and brings the BVH up to date.
+     * @return True if the BVH was built from scratch, false if it was only refitted.
+     */
+    private boolean update(double time) {
+        for (int i = 0; i < animated.size(); i++) {
+            Vec3 offset = offsets.get(i).at(time);
+            animated.get(i).setTransform(baseTransforms.get(i).then(Transform.translation(offset.x, offset.y, offset.z)));
+        }
+        if (bvh != null) {
+            bvh.refit();
+            if (bvh.sahCost() <= rebuildThreshold * builtCost) return false;
+        }
+        bvh = new FlatBVH(bounded, new SAHBuilder());
+        builtCost = bvh.sahCost();
+        return true;
+    }
+}
@@ -0,0 +1,69 @@
+package main;
+
+import math.MutableVec3;
+import math.Vec3;
+
+/**
+ * The background of the scene: a golden hour sky gradient with a very bright sun close to the horizon.
+ * This is the only light source, so every path ends by escaping into the sky.
+ * <p>
+ * This is the exact definition of the sky. Renders look it up in an {@link Environment}, the same sky baked
+ * into a table that is cheaper to read and can be importance sampled.
+ */
+public class Sky {
+
+    // --- NEW ATMOSPHERE SETTINGS ---
+
+    // 1. SUN POSITION
+    // We lower the Y-value from 0.3 to 0.15. 
+    // This puts the sun very close to the horizon (Long shadows, golden light).
+    private static final Vec3 SUN_DIR = new Vec3(-1.0, 0.15, -1.0).normalize();
+
+    // 3. SUN BRIGHTNESS (THE NUCLEAR OPTION) ☀️
+    // Increased from (8, 6, 4) to (50, 35, 20).
+    // This is physically impossibly bright, but it creates the "glare" effect
+    // on the shiny spheres.
+    private static final Vec3 SUN_COLOR = new Vec3(100.0, 70.0, 40.0);
+
+    // Brighter horizon (White-Gold instead of just Orange)
+    private static final Vec3 HORIZON_COLOR = new Vec3(4, 3, 2);
+
+    // Brighter zenith (Blue but glowing)
+    private static final Vec3 ZENITH_COLOR = new Vec3(0.5, 0.7, 1.0);
+
+    // --- SKY AND LIGHTING CALCULATION (GOLDEN HOUR EDITION) ---
+    /**
+     * Calculates the radiance arriving from a direction, including the golden hour sky and sun effects.
+     * @param direction Direction the ray travels in, does not need to be normalized.
+     * @return
+     */
+    public static Vec3 color(Vec3 direction) {
+        return color(direction.x, direction.y, direction.z, new MutableVec3()).toVec3();
+    }
+
+    /**
+     * Same as {@link #color(Vec3)}, but writes the radiance into out instead of allocating.
+     * @return out
+     */
+    public static MutableVec3 color(double dx, double dy, double dz, MutableVec3 out) {
+        double invLength = 1.0 / Math.sqrt(dx * dx + dy * dy + dz * dz);
+        double ux = dx * invLength;
+        double uy = dy * invLength;
+        double uz = dz * invLength;
+        
+        // 2. SUN SIZE AND HAZINESS
+        double sunFocus = ux * SUN_DIR.x + uy * SUN_DIR.y + uz * SUN_DIR.z;
+        
+        // Changed from 400 to 100.
+        // Lower number = Bigger sun disk on the sky = More "glow" around the sun.
+        double sunIntensity = Math.pow(Math.max(0, sunFocus), 100); 
+
+        // 4. BRIGHTER SKY GRADIENT
+        double t = 0.5 * (uy + 1.0);
+
+        return out.set(
+            HORIZON_COLOR.x * (1.0 - t) + ZENITH_COLOR.x * t + SUN_COLOR.x * sunIntensity,
+            HORIZON_COLOR.y * (1.0 - t) + ZENITH_COLOR.y * t + SUN_COLOR.y * sunIntensity,
+            HORIZON_COLOR.z * (1.0 - t) + ZENITH_COLOR.z * t + SUN_COLOR.z * sunIntensity);
+    }
+}
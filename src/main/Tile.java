@@ -0,0 +1,88 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A rectangular block of pixels that is rendered as one unit of work.
+ * Pixel coordinates use the same convention as the renderer: x grows to the right and
+ * y grows upwards, so row 0 is the bottom scanline of the image.
+ */
+public class Tile {
+    public final int x0, y0; // inclusive
+    public final int x1, y1; // exclusive
+
+    public Tile(int x0, int y0, int x1, int y1) {
+        this.x0 = x0;
+        this.y0 = y0;
+        this.x1 = x1;
+        this.y1 = y1;
+    }
+
+    public int width() {
+        return x1 - x0;
+    }
+
+    public int height() {
+        return y1 - y0;
+    }
+
+    /**
+     * Splits an image into tiles and orders them along a Hilbert curve, so that tiles which are
+     * rendered close together in time are also close together on screen (and therefore touch the
+     * same parts of the BVH).
+     * @param imageWidth Width of the image in pixels.
+     * @param imageHeight Height of the image in pixels.
+     * @param tileSize Edge length of a tile in pixels. Tiles on the right and top border may be smaller.
+     * @return The tiles in Hilbert order.
+     */
+    public static List<Tile> hilbertOrder(int imageWidth, int imageHeight, int tileSize) {
+        int tilesX = (imageWidth + tileSize - 1) / tileSize;
+        int tilesY = (imageHeight + tileSize - 1) / tileSize;
+
+        // The curve is defined on a power-of-two square, cells outside the image are skipped
+        int n = 1;
+        while (n < Math.max(tilesX, tilesY)) n <<= 1;
+
+        List<Tile> tiles = new ArrayList<>(tilesX * tilesY);
+        for (int d = 0; d < n * n; d++) {
+            int[] xy = hilbertToXY(n, d);
+            int tx = xy[0];
+            int ty = xy[1];
+            if (tx >= tilesX || ty >= tilesY) continue;
+
+            int x0 = tx * tileSize;
+            int y0 = ty * tileSize;
+            tiles.add(new Tile(x0, y0, Math.min(x0 + tileSize, imageWidth), Math.min(y0 + tileSize, imageHeight)));
+        }
+        return tiles;
+    }
+
+    /**
+     * Converts a distance along a Hilbert curve to (x, y) coordinates on an n x n grid.
+     * @param n Side of the grid, must be a power of two.
+     * @param d Distance along the curve.
+     * @return {x, y}
+     */
+    private static int[] hilbertToXY(int n, int d) {
+        int x = 0;
+        int y = 0;
+        int t = d;
+        for (int s = 1; s < n; s <<= 1) {
+            int rx = 1 & (t / 2);
+            int ry = 1 & (t ^ rx);
+            // Rotate the quadrant
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = s - 1 - x;
+                    y = s - 1 - y;
+                }
+                int temp = x; x = y; y = temp;
+            }
+            x += s * rx;
+            y += s * ry;
+            t /= 4;
+        }
+        return new int[] { x, y };
+    }
+}
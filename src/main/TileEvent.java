@@ -0,0 +1,48 @@
+package main;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for one rendered tile, emitted when metrics are enabled on the {@link Renderer}.
+ * Record with e.g. {@code java -XX:StartFlightRecording=filename=render.jfr ...} and open the file in
+ * JDK Mission Control to see the tiles on a per-thread timeline.
+ */
+@Name("raytracer.Tile")
+@Label("Tile")
+@Category("Ray Tracer")
+@Description("One tile rendered by the Renderer")
+class TileEvent extends Event {
+    @Label("X")
+    int x;
+
+    @Label("Y")
+    int y;
+
+    @Label("Width")
+    int width;
+
+    @Label("Height")
+    int height;
+
+    @Label("Samples")
+    long samples;
+
+    @Label("Primary Rays")
+    long primaryRays;
+
+    @Label("Secondary Rays")
+    long secondaryRays;
+
+    @Label("Shadow Rays")
+    long shadowRays;
+
+    @Label("Nodes Visited")
+    long nodesVisited;
+
+    @Label("Primitive Tests")
+    long primitiveTests;
+}
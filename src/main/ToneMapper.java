@@ -0,0 +1,58 @@
+package main;
+
+/**
+ * Curves that map linear HDR radiance to the displayable range [0, 1] before gamma correction.
+ * The sun of the default sky is about 100 times brighter than white, so {@link #CLAMP} throws most of the
+ * highlights away, while the other curves compress them.
+ */
+public enum ToneMapper {
+    /** Cuts everything above 1. The original look of the renderer. */
+    CLAMP {
+        @Override
+        public double map(double x) {
+            return x;
+        }
+    },
+    /** Reinhard's x / (1 + x), never reaches white. */
+    REINHARD {
+        @Override
+        public double map(double x) {
+            return x / (1 + x);
+        }
+    },
+    /** Narkowicz' fit of the ACES filmic curve: a toe for the shadows and a soft shoulder for the highlights. */
+    ACES {
+        @Override
+        public double map(double x) {
+            return (x * (2.51 * x + 0.03)) / (x * (2.43 * x + 0.59) + 0.14);
+        }
+    };
+
+    /**
+     * @param x Linear radiance of one channel, already scaled by the exposure.
+     * @return The mapped value. Values outside [0, 1] are clamped afterwards.
+     */
+    public abstract double map(double x);
+
+    /**
+     * Maps a linear color, gamma-corrects it for gamma=2.0 and quantizes it to a packed 8-bit RGB value.
+     * @param r Linear red.
+     * @param g Linear green.
+     * @param b Linear blue.
+     * @param exposure Scale applied to the color before the curve.
+     * @return The color as 0xRRGGBB.
+     */
+    public int toRGB(double r, double g, double b, double exposure) {
+        int ir = quantize(Math.sqrt(Math.max(0, map(r * exposure))));
+        int ig = quantize(Math.sqrt(Math.max(0, map(g * exposure))));
+        int ib = quantize(Math.sqrt(Math.max(0, map(b * exposure))));
+        return (ir << 16) | (ig << 8) | ib;
+    }
+
+    /**
+     * Write the translated [0,255] value of a color component.
+     */
+    private static int quantize(double x) {
+        return (int)(256 * ColorUtil.clamp(x, 0.0, 0.999));
+    }
+}
@@ -0,0 +1,40 @@
+package main;
+
+import hittable.HitRecord;
+import material.Wrapper;
+import math.MutableVec3;
+import math.Ray;
+import math.Sampler;
+
+/**
+ * Everything a thread needs to trace samples without allocating: its sampler, reusable rays, hit record and
+ * scatter wrapper, and scratch vectors for the integrator. One context is created per tile and reused for
+ * every sample in it; it must never be shared between threads.
+ */
+public class TraceContext {
+    public final Sampler sampler;
+    public final Ray cameraRay = new Ray();
+    public final Ray ray = new Ray();
+    public final HitRecord rec = new HitRecord();
+    public final Wrapper wrapper = new Wrapper();
+    public final Ray shadowRay = new Ray();
+
+    // Integrator registers
+    public final MutableVec3 throughput = new MutableVec3();
+    public final MutableVec3 radiance = new MutableVec3();
+    public final MutableVec3 lightDirection = new MutableVec3();
+
+    // Result of the last Integrator.rayColor call
+    public final MutableVec3 color = new MutableVec3();
+    // Features of the path of the last call for the denoiser, see FeatureBuffers
+    public final MutableVec3 albedo = new MutableVec3();
+    public final MutableVec3 normal = new MutableVec3();
+    public double depth;
+
+    // Counters for the current tile, null when metrics are disabled
+    public RenderStats stats;
+
+    public TraceContext(Sampler sampler) {
+        this.sampler = sampler;
+    }
+}
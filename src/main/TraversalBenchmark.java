@@ -0,0 +1,113 @@
+package main;
+
+import hittable.BVHNode;
+import hittable.FlatBVH;
+import hittable.Grid;
+import hittable.HitRecord;
+import hittable.Hittable;
+import hittable.HittableList;
+import hittable.SAHBuilder;
+import hittable.TraversalStats;
+import hittable.World;
+import math.IndependentSampler;
+import math.Ray;
+import math.Sampler;
+import math.Vec3;
+
+/**
+ * Measures how many BVH nodes and primitives a ray visits in the default scene, with the floor plane inside the
+ * BVH and with the plane kept out of it (see {@link World}), for both {@link BVHNode} and an SAH {@link FlatBVH}.
+ * The uniform and hierarchical {@link Grid} are measured the same way; for them a node is a visited cell.
+ * Traces one primary ray per pixel and one diffuse bounce from every primary hit. The bounce is traced a second
+ * time as an occlusion query ({@link Hittable#occluded}) to show what shadow rays save over closest hits.
+ *
+ * Run with: java -cp bin main.TraversalBenchmark [imageWidth]
+ */
+public class TraversalBenchmark {
+
+    public static void main(String[] args) {
+        int imageWidth = args.length > 0 ? Integer.parseInt(args[0]) : 480;
+        double aspectRatio = 16.0 / 9.0;
+        int imageHeight = (int)(imageWidth / aspectRatio);
+
+        HittableList world = Main.createWorld(60);
+        Camera cam = Main.createCamera(aspectRatio);
+
+        // BVHNode sorts the list it is built from, so every tree gets its own copy
+        Hittable nodeInside = new BVHNode(copy(world));
+        Hittable nodeOutside = new World(new BVHNode(world.bounded()), world.unbounded());
+        Hittable flatInside = new FlatBVH(world, new SAHBuilder());
+        Hittable flatOutside = new World(new FlatBVH(world.bounded(), new SAHBuilder()), world.unbounded());
+        Hittable grid = new World(new Grid(world.bounded()), world.unbounded());
+        Hittable hierarchicalGrid = new World(new Grid(world.bounded(), true), world.unbounded());
+
+        // The first round warms up the JIT, the second one is reported
+        for (int round = 0; round < 2; round++) {
+            boolean report = round == 1;
+            if (report) {
+                System.out.printf("%-24s %-10s %12s %14s %10s%n", "Configuration", "Rays", "Nodes/ray", "Prim tests/ray", "Mrays/s");
+            }
+            run("BVHNode, plane inside", nodeInside, cam, imageWidth, imageHeight, report);
+            run("BVHNode, plane outside", nodeOutside, cam, imageWidth, imageHeight, report);
+            run("SAH, plane inside", flatInside, cam, imageWidth, imageHeight, report);
+            run("SAH, plane outside", flatOutside, cam, imageWidth, imageHeight, report);
+            run("Grid, plane outside", grid, cam, imageWidth, imageHeight, report);
+            run("HGrid, plane outside", hierarchicalGrid, cam, imageWidth, imageHeight, report);
+        }
+    }
+
+    /**
+     * Traces the rays for one configuration and prints the counters for primary, secondary and occlusion rays.
+     */
+    private static void run(String name, Hittable scene, Camera cam, int width, int height, boolean report) {
+        TraversalStats primary = new TraversalStats();
+        TraversalStats secondary = new TraversalStats();
+        TraversalStats occlusion = new TraversalStats();
+        Sampler sampler = new IndependentSampler(1);
+        HitRecord rec = new HitRecord();
+        long primaryNanos = 0;
+        long secondaryNanos = 0;
+        long occlusionNanos = 0;
+
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                sampler.startPixelSample(i, j, 0);
+                Ray r = cam.getRay((i + 0.5) / (width - 1), (j + 0.5) / (height - 1), sampler);
+
+                long start = System.nanoTime();
+                primary.rays++;
+                boolean hit = scene.hit(r, 0.001, Double.POSITIVE_INFINITY, rec, primary);
+                primaryNanos += System.nanoTime() - start;
+                if (!hit) continue;
+
+                Ray bounce = new Ray(rec.p.toVec3(), rec.normal.toVec3().add(Vec3.randomInUnitSphere(sampler)));
+                start = System.nanoTime();
+                occlusion.rays++;
+                scene.occluded(bounce, 0.001, Double.POSITIVE_INFINITY, occlusion);
+                occlusionNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                secondary.rays++;
+                scene.hit(bounce, 0.001, Double.POSITIVE_INFINITY, rec, secondary);
+                secondaryNanos += System.nanoTime() - start;
+            }
+        }
+
+        if (report) {
+            print(name, "primary", primary, primaryNanos);
+            print(name, "secondary", secondary, secondaryNanos);
+            print(name, "occlusion", occlusion, occlusionNanos);
+        }
+    }
+
+    private static HittableList copy(HittableList list) {
+        HittableList copy = new HittableList();
+        for (Hittable object : list.objects) copy.add(object);
+        return copy;
+    }
+
+    private static void print(String name, String kind, TraversalStats stats, long nanos) {
+        System.out.printf("%-24s %-10s %12.2f %14.2f %10.2f%n",
+                name, kind, stats.nodesPerRay(), stats.primitiveTestsPerRay(), stats.rays * 1e3 / nanos);
+    }
+}
@@ -1,7 +1,9 @@
 package material;
 
 import hittable.HitRecord;
+import math.MutableVec3;
 import math.Ray;
+import math.Sampler;
 import math.Vec3;
 
 /**
@@ -23,20 +25,22 @@ public class CheckerMaterial implements Material {
      * @param rIn The incoming ray.
      * @param rec The hit record containing information about the hit point.
      * @param wrapper A wrapper object to hold the scattered ray and attenuation color.
+     * @param sampler The sampler of the current sample.
      * @return true if the ray is scattered, false otherwise. 
      */
-    public boolean scatter(Ray rIn, HitRecord rec, Wrapper wrapper) {
+    public boolean scatter(Ray rIn, HitRecord rec, Wrapper wrapper, Sampler sampler) {
         wrapper.attenuation = color(rec.p);
+        wrapper.type = ScatterType.DIFFUSE;
         
         // Reflektera diffus (matt)
-        Vec3 scatterDirection = rec.normal.add(Vec3.randomInUnitSphere()).normalize();
+        MutableVec3 scatterDirection = wrapper.direction.setRandomUnitVector(sampler).add(rec.normal);
         
         // Fånga degenererade strålar
         if (scatterDirection.nearZero()) {
-            scatterDirection = rec.normal;
+            scatterDirection.set(rec.normal);
         }
 
-        wrapper.scatteredRay = new Ray(rec.p, scatterDirection);
+        wrapper.scatteredRay.set(rec.p, scatterDirection);
         return true;
     }
 
@@ -45,7 +49,7 @@ public class CheckerMaterial implements Material {
      * @param p The point to determine the color for.
      * @return The color at the given point.
      */
-    private Vec3 color(Vec3 p) {
+    private Vec3 color(MutableVec3 p) {
         // Använd sinus för att skapa rutnätet. 10 styr storleken på rutorna.
         double sines = Math.sin(10 * p.x) * Math.sin(10 * p.z);
         if (sines < 0) {
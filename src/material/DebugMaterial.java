@@ -1,7 +1,9 @@
 package material;
 
 import hittable.HitRecord;
+import math.MutableVec3;
 import math.Ray;
+import math.Sampler;
 import math.Vec3;
 
 /**
@@ -9,18 +11,24 @@ import math.Vec3;
  * Front face hits will be colored blue, and back face hits will be colored red.
  */
 public class DebugMaterial implements Material {
+    private static final Vec3 BLUE = new Vec3(0.0, 0.0, 1.0);
+    private static final Vec3 RED = new Vec3(1.0, 0.0, 0.0);
     
     @Override
-    public boolean scatter(Ray rIn, HitRecord rec, Wrapper wrapper) {
+    public boolean scatter(Ray rIn, HitRecord rec, Wrapper wrapper, Sampler sampler) {
         // Skicka strålen vidare men ändra färgen baserat på frontFace
         
         // Utsida (Rätt) = BLÅ (0, 0, 1)
         // Insida (Fel)  = RÖD (1, 0, 0)
-        wrapper.attenuation = rec.frontFace ? new Vec3(0.0, 0.0, 1.0) : new Vec3(1.0, 0.0, 0.0);
+        wrapper.attenuation = rec.frontFace ? BLUE : RED;
         
         // Studsa slumpmässigt (som lera) bara för att vi ska se färgen
-        Vec3 scatterDirection = rec.normal.add(Vec3.randomInUnitSphere()).normalize();
-        wrapper.scatteredRay = new Ray(rec.p, scatterDirection);
+        MutableVec3 scatterDirection = wrapper.direction.setRandomUnitVector(sampler).add(rec.normal);
+        if (scatterDirection.nearZero()) {
+            scatterDirection.set(rec.normal);
+        }
+        wrapper.scatteredRay.set(rec.p, scatterDirection);
+        wrapper.type = ScatterType.DIFFUSE;
         
         return true;
     }
@@ -1,7 +1,9 @@
 package material;
 
 import hittable.HitRecord;
+import math.MutableVec3;
 import math.Ray;
+import math.Sampler;
 import math.Vec3;
 
 /**
@@ -9,6 +11,7 @@ import math.Vec3;
  * Implements refraction and reflection based on the index of refraction.
  */
 public class Dielectric implements Material {
+    private static final Vec3 WHITE = new Vec3(1.0, 1.0, 1.0);
     private final double ir;
 
     public Dielectric(double index) {
@@ -21,20 +24,21 @@ public class Dielectric implements Material {
       * @param rIn The incoming ray.
       * @param rec The hit record containing information about the hit point.
       * @param wrapper A wrapper to hold the scattered ray and attenuation.
+      * @param sampler The sampler of the current sample.
       * @return true if the ray is scattered, false otherwise.
      */
-    public boolean scatter(Ray rIn, HitRecord rec, Wrapper wrapper) {
-        wrapper.attenuation = new Vec3(1.0, 1.0, 1.0);
+    public boolean scatter(Ray rIn, HitRecord rec, Wrapper wrapper, Sampler sampler) {
+        wrapper.attenuation = WHITE;
         
         // 1. Bestäm brytningsindex (Luft/Glas eller Glas/Luft)
         double refractionRatio = rec.frontFace ? (1.0 / ir) : ir;
 
         // 2. Normalisera inkommande stråle (VIKTIGT!)
-        Vec3 unitDirection = rIn.getDirection().normalize();
+        MutableVec3 direction = wrapper.direction.set(rIn.dx, rIn.dy, rIn.dz).normalize();
         
         // 3. Beräkna Cosinus (vinkel)
         // Math.min säkerställer att vi aldrig får > 1.0
-        double cosTheta = Math.min(unitDirection.scale(-1).dot(rec.normal), 1.0);
+        double cosTheta = Math.min(-direction.dot(rec.normal), 1.0);
         
         // 4. Beräkna Sinus
         // VIKTIGT: Math.abs här skyddar mot NaN om cosTheta råkade bli 1.0000001
@@ -43,17 +47,18 @@ public class Dielectric implements Material {
         // 5. Kan vi bryta ljuset? (Total Internal Reflection check)
         boolean cannotRefract = refractionRatio * sinTheta > 1.0;
         
-        Vec3 direction;
-        
         // Schlicks approximation för reflektion vid vinklar
-        if (cannotRefract || reflectance(cosTheta, refractionRatio) > Math.random()) {
-            direction = Vec3.reflect(unitDirection, rec.normal);
+        if (cannotRefract || reflectance(cosTheta, refractionRatio) > sampler.get1D()) {
+            direction.reflect(rec.normal);
+            wrapper.type = ScatterType.SPECULAR;
         } else {
-            // Här anropar vi Vec3.refract (som vi också ska säkra upp, men Math.abs ovan hjälper)
-            direction = Vec3.refract(unitDirection, rec.normal, refractionRatio);
+            // Här anropar vi refract (som vi också ska säkra upp, men Math.abs ovan hjälper)
+            direction.refract(rec.normal, refractionRatio);
+            wrapper.type = ScatterType.TRANSMISSION;
         }
 
-        wrapper.scatteredRay = new Ray(rec.p, direction);
+        wrapper.roughness = 0;
+        wrapper.scatteredRay.set(rec.p, direction);
         return true;
     }
 
@@ -1,7 +1,9 @@
 package material;
 
 import hittable.HitRecord;
+import math.MutableVec3;
 import math.Ray;
+import math.Sampler;
 import math.Vec3;
 
 /**
@@ -15,32 +17,24 @@ public class Lambertian implements Material {
     }
 
     /**
-     * Scatters the incoming ray in a random direction within a unit sphere around the hit point.
+     * Scatters the incoming ray in a cosine-distributed direction around the normal (the normal plus a random
+     * unit vector).
      *
      * @param rayIn The incoming ray.
      * @param rec The hit record containing intersection details.
      * @param wrapper A wrapper to hold the scattered ray and attenuation.
+     * @param sampler The sampler of the current sample.
      * @return True if the ray is scattered, false otherwise.
      */
     @Override
-    public boolean scatter(Ray rayIn, HitRecord rec, Wrapper wrapper) {
-        Vec3 scatterDirection = rec.normal.add(Vec3.randomInUnitSphere());
-        if (nearZero(scatterDirection)) {
-            scatterDirection = rec.normal;
+    public boolean scatter(Ray rayIn, HitRecord rec, Wrapper wrapper, Sampler sampler) {
+        MutableVec3 scatterDirection = wrapper.direction.setRandomUnitVector(sampler).add(rec.normal);
+        if (scatterDirection.nearZero()) {
+            scatterDirection.set(rec.normal);
         }
-        wrapper.scatteredRay = new Ray(rec.p, scatterDirection);
+        wrapper.scatteredRay.set(rec.p, scatterDirection);
         wrapper.attenuation = albedo;
+        wrapper.type = ScatterType.DIFFUSE;
         return true;
     }
-
-    /**
-     * Checks if a vector is close to zero in all dimensions.
-     *
-     * @param v The vector to check.
-     * @return True if the vector is near zero, false otherwise.
-     */
-    private boolean nearZero(Vec3 v) {
-        double s = 1e-8;
-        return (Math.abs(v.x) < s) && (Math.abs(v.y) < s) && (Math.abs(v.z) < s);
-    }   
 }
@@ -2,6 +2,7 @@ package material;
 
 import hittable.HitRecord;
 import math.Ray;
+import math.Sampler;
 
 public interface Material {
     /**
@@ -9,7 +10,8 @@ public interface Material {
      * * @param rIn The incoming ray.
      * @param rec The hit record containing details about the hit point.
      * @param wrapper A container to store the scattered ray and attenuation (color).
+     * @param sampler The sampler of the current sample, used for all random decisions.
      * @return true if the ray scattered, false if it was absorbed.
      */
-    boolean scatter(Ray rIn, HitRecord rec, Wrapper wrapper);
+    boolean scatter(Ray rIn, HitRecord rec, Wrapper wrapper, Sampler sampler);
 }
\ No newline at end of file
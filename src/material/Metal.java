@@ -1,7 +1,9 @@
 package material;
 
 import hittable.HitRecord;
+import math.MutableVec3;
 import math.Ray;
+import math.Sampler;
 import math.Vec3;
 
 /**
@@ -26,13 +28,17 @@ public class Metal implements Material {
      * @param rIn The incoming ray that hits the surface.
      * @param rec The hit record containing information about the hit point and normal.
      * @param wrapper A wrapper object to store the scattered ray and attenuation (albedo) for color calculation.
+     * @param sampler The sampler of the current sample.
      * @return true if the ray is scattered (reflected), false if it is absorbed (e.g., if it goes inside the surface). The wrapper contains the scattered ray and the attenuation (albedo) for the color calculation.
      */
-    public boolean scatter(Ray rIn, HitRecord rec, Wrapper wrapper) {
-        Vec3 reflected = Vec3.reflect(rIn.getDirection().normalize(), rec.normal);
-        wrapper.scatteredRay = new Ray(rec.p, reflected.add(Vec3.randomInUnitSphere().scale(fuzz)));
+    public boolean scatter(Ray rIn, HitRecord rec, Wrapper wrapper, Sampler sampler) {
+        MutableVec3 reflected = wrapper.direction.set(rIn.dx, rIn.dy, rIn.dz).normalize().reflect(rec.normal);
+        reflected.addScaled(wrapper.temp.setRandomInUnitSphere(sampler), fuzz);
+        wrapper.scatteredRay.set(rec.p, reflected);
         wrapper.attenuation = albedo;
+        wrapper.type = ScatterType.SPECULAR;
+        wrapper.roughness = fuzz;
         
-        return (wrapper.scatteredRay.getDirection().dot(rec.normal) > 0);
+        return (reflected.dot(rec.normal) > 0);
     }
 }
\ No newline at end of file
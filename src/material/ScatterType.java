@@ -0,0 +1,16 @@
+package material;
+
+/**
+ * The kind of interaction a scattered ray comes from. Integrators use it to apply separate depth limits.
+ */
+public enum ScatterType {
+    /**
+     * Lambertian reflection: the scattered direction is cosine-distributed around the normal and the attenuation
+     * is the albedo. Integrators rely on this to sample lights directly at diffuse surfaces.
+     */
+    DIFFUSE,
+    /** Mirror-like or glossy reflection, like metals and reflections off glass. */
+    SPECULAR,
+    /** Refraction into or out of a transparent object. */
+    TRANSMISSION
+}
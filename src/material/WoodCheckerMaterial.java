@@ -1,7 +1,9 @@
 package material;
 
 import hittable.HitRecord;
+import math.MutableVec3;
 import math.Ray;
+import math.Sampler;
 import math.Vec3;
 
 /**
@@ -26,11 +28,15 @@ public class WoodCheckerMaterial implements Material {
      * @param rIn The incoming ray.
      * @param rec The hit record containing information about the hit point.
      * @param wrapper A wrapper object to hold the scattered ray and attenuation.
+     * @param sampler The sampler of the current sample.
      * @return true if the ray is scattered, false otherwise.
      */
-    public boolean scatter(Ray rIn, HitRecord rec, Wrapper wrapper) {
-        Vec3 reflected = Vec3.reflect(rIn.getDirection().normalize(), rec.normal);
-        wrapper.scatteredRay = new Ray(rec.p, reflected.add(Vec3.randomInUnitSphere().scale(fuzz)));
+    public boolean scatter(Ray rIn, HitRecord rec, Wrapper wrapper, Sampler sampler) {
+        MutableVec3 reflected = wrapper.direction.set(rIn.dx, rIn.dy, rIn.dz).normalize().reflect(rec.normal);
+        reflected.addScaled(wrapper.temp.setRandomInUnitSphere(sampler), fuzz);
+        wrapper.scatteredRay.set(rec.p, reflected);
+        wrapper.type = ScatterType.SPECULAR;
+        wrapper.roughness = fuzz;
         double sines = Math.sin(4.0 * rec.p.x) * Math.sin(4.0 * rec.p.z);
         
         if (sines < 0) {
@@ -39,6 +45,6 @@ public class WoodCheckerMaterial implements Material {
             wrapper.attenuation = darkWood;
         }
 
-        return (wrapper.scatteredRay.getDirection().dot(rec.normal) > 0);
+        return (reflected.dot(rec.normal) > 0);
     }
 }
\ No newline at end of file
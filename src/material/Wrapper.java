@@ -1,18 +1,33 @@
 package material;
 
+import math.MutableVec3;
 import math.Ray;
 import math.Vec3;
 
 /**
  * A simple wrapper class to hold the scattered ray and its attenuation.
  * This is used to return both values from the scatter method in Material.
+ * A wrapper is reused for every bounce of a thread: materials overwrite the scattered ray in place and may use
+ * the scratch vectors for intermediate results, so scattering does not allocate.
  */
 public class Wrapper {
     public Ray scatteredRay;
     public Vec3 attenuation;
+    public ScatterType type = ScatterType.DIFFUSE;
+    // How far a specular or transmitted direction may stray from the perfect one (the fuzz of metals), 0 for a
+    // perfect mirror or glass. Only set with those types.
+    public double roughness;
+
+    // Scratch registers for materials, their contents are undefined between calls
+    public final MutableVec3 direction = new MutableVec3();
+    public final MutableVec3 temp = new MutableVec3();
+
+    public Wrapper() {
+        this(new Ray(), null);
+    }
 
     public Wrapper(Ray scatteredRay, Vec3 attenuation) {
         this.scatteredRay = scatteredRay;
         this.attenuation = attenuation;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,49 @@
+package math;
+
+/**
+ * Counter-based sampler producing independent uniform random numbers.
+ * The state of each pixel sample is derived by hashing (seed, x, y, sample index), and the numbers are drawn
+ * with the SplitMix64 generator (the same mixing function as {@link java.util.SplittableRandom}).
+ * Restarting a sample is just a few multiplications, so no generator objects are created per sample and
+ * no state is shared between threads.
+ * Every number is independent of all others, so {@link #setDimension} has nothing to do.
+ */
+public class IndependentSampler implements Sampler {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private final long seed;
+    private long state;
+
+    public IndependentSampler(long seed) {
+        this.seed = seed;
+        this.state = mix64(seed);
+    }
+
+    @Override
+    public void startPixelSample(int x, int y, int sampleIndex) {
+        long pixel = ((long) y << 32) | (x & 0xffffffffL);
+        state = mix64(mix64(seed ^ mix64(pixel)) + sampleIndex);
+    }
+
+    @Override
+    public double get1D() {
+        state += GOLDEN_GAMMA;
+        return (mix64(state) >>> 11) * 0x1.0p-53;
+    }
+
+    @Override
+    public Sampler copy() {
+        return new IndependentSampler(seed);
+    }
+
+    /**
+     * SplitMix64 finalizer (David Stafford's variant 13).
+     * @param z
+     * @return
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
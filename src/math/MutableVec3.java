@@ -0,0 +1,124 @@
+package math;
+
+/**
+ * A 3D vector whose components can be overwritten. Used as scratch space in the hot path (hit records,
+ * scattering, path throughput), where creating a new {@link Vec3} for every operation would allocate billions of
+ * short-lived objects per frame. All operations modify this vector in place and return it for chaining.
+ */
+public class MutableVec3 {
+    public double x, y, z;
+
+    public MutableVec3() {}
+
+    public MutableVec3(double x, double y, double z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    public MutableVec3 set(double x, double y, double z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    public MutableVec3 set(MutableVec3 v) {
+        return set(v.x, v.y, v.z);
+    }
+
+    public MutableVec3 set(Vec3 v) {
+        return set(v.x, v.y, v.z);
+    }
+
+    public MutableVec3 add(MutableVec3 v) {
+        return set(x + v.x, y + v.y, z + v.z);
+    }
+
+    /**
+     * Adds v scaled by s to this vector.
+     */
+    public MutableVec3 addScaled(MutableVec3 v, double s) {
+        return set(x + v.x * s, y + v.y * s, z + v.z * s);
+    }
+
+    public MutableVec3 scale(double t) {
+        return set(x * t, y * t, z * t);
+    }
+
+    /**
+     * Component-wise multiplication, e.g. to apply an attenuation color to a throughput.
+     */
+    public MutableVec3 multiply(Vec3 v) {
+        return set(x * v.x, y * v.y, z * v.z);
+    }
+
+    public MutableVec3 multiply(MutableVec3 v) {
+        return set(x * v.x, y * v.y, z * v.z);
+    }
+
+    public double dot(MutableVec3 v) {
+        return x * v.x + y * v.y + z * v.z;
+    }
+
+    public double lengthSquared() {
+        return x * x + y * y + z * z;
+    }
+
+    public MutableVec3 normalize() {
+        double len = Math.sqrt(lengthSquared());
+        if (len == 0) return set(0, 0, 0);
+        return scale(1.0 / len);
+    }
+
+    public boolean nearZero() {
+        double s = 1e-8;
+        return (Math.abs(x) < s) && (Math.abs(y) < s) && (Math.abs(z) < s);
+    }
+
+    /**
+     * Reflects this direction around the normal n, see {@link Vec3#reflect(Vec3, Vec3)}.
+     */
+    public MutableVec3 reflect(MutableVec3 n) {
+        return addScaled(n, -2 * dot(n));
+    }
+
+    /**
+     * Refracts this unit direction through a surface with normal n, see {@link Vec3#refract(Vec3, Vec3, double)}.
+     */
+    public MutableVec3 refract(MutableVec3 n, double etaiOverEtat) {
+        double cosTheta = Math.min(-dot(n), 1.0);
+        addScaled(n, cosTheta).scale(etaiOverEtat);
+        double rOutParallelVal = -Math.sqrt(Math.abs(1.0 - lengthSquared()));
+        return addScaled(n, rOutParallelVal);
+    }
+
+    /**
+     * Overwrites this vector with a random point inside the unit sphere, see {@link Vec3#randomInUnitSphere(Sampler)}.
+     * A random direction scaled by the cube root of a third number, so it takes exactly three numbers.
+     */
+    public MutableVec3 setRandomInUnitSphere(Sampler sampler) {
+        setRandomUnitVector(sampler);
+        return scale(Math.cbrt(sampler.get1D()));
+    }
+
+    /**
+     * Overwrites this vector with a random direction of length 1, uniformly distributed over the sphere.
+     * Added to a surface normal, it gives a cosine-distributed direction around the normal.
+     * Maps two numbers straight onto the sphere (uniform height, uniform angle around it) instead of rejecting
+     * points outside of it, so evenly spread numbers give evenly spread directions.
+     */
+    public MutableVec3 setRandomUnitVector(Sampler sampler) {
+        double z = 1 - 2 * sampler.get1D();
+        double phi = 2 * Math.PI * sampler.get1D();
+        double r = Math.sqrt(Math.max(0, 1 - z * z));
+        return set(r * Math.cos(phi), r * Math.sin(phi), z);
+    }
+
+    /**
+     * @return An immutable copy of this vector.
+     */
+    public Vec3 toVec3() {
+        return new Vec3(x, y, z);
+    }
+}
@@ -4,11 +4,18 @@ package math;
  * Represents a ray in 3D space, defined by an origin point and a direction vector.
  * 
  * A ray is commonly used in ray tracing to model the path of light or sight lines.
+ * The components are stored as plain fields so that a ray object can be reused for every bounce of a path
+ * instead of allocating a new one; hot code reads the fields directly.
  */
 public class Ray {
 
-    private final Vec3 origin;
-    private final Vec3 direction;
+    public double ox, oy, oz;
+    public double dx, dy, dz;
+
+    /**
+     * Constructs a ray at the origin with a zero direction, to be filled in with one of the set methods.
+     */
+    public Ray() {}
 
     /**
      * Constructs a new Ray with the specified origin and direction.
@@ -17,26 +24,48 @@ public class Ray {
      * @param direction The direction vector of the ray.
      */
     public Ray (Vec3 origin, Vec3 direction) {
-        this.origin = origin;
-        this.direction = direction;
+        set(origin.x, origin.y, origin.z, direction.x, direction.y, direction.z);
+    }
+
+    /**
+     * Overwrites the origin and direction of this ray.
+     *
+     * @return This ray.
+     */
+    public Ray set(double ox, double oy, double oz, double dx, double dy, double dz) {
+        this.ox = ox;
+        this.oy = oy;
+        this.oz = oz;
+        this.dx = dx;
+        this.dy = dy;
+        this.dz = dz;
+        return this;
+    }
+
+    public Ray set(MutableVec3 origin, MutableVec3 direction) {
+        return set(origin.x, origin.y, origin.z, direction.x, direction.y, direction.z);
+    }
+
+    public Ray set(Ray r) {
+        return set(r.ox, r.oy, r.oz, r.dx, r.dy, r.dz);
     }
     
     /**
-     * Gets the origin point of the ray.
+     * Gets the origin point of the ray. Creates a new vector, so prefer the fields in hot code.
      *
      * @return The origin Vec3.
      */
     public Vec3 getOrigin() {
-        return origin;
+        return new Vec3(ox, oy, oz);
     }
 
     /**
-     * Gets the direction vector of the ray.
+     * Gets the direction vector of the ray. Creates a new vector, so prefer the fields in hot code.
      *
      * @return The direction Vec3.
      */
     public Vec3 getDirection() {
-        return direction;
+        return new Vec3(dx, dy, dz);
     }
 
     /**
@@ -46,6 +75,6 @@ public class Ray {
      * @return A Vec3 representing the point at distance t along the ray.
      */
     public Vec3 at(double t) {
-        return origin.add(direction.scale(t));
+        return new Vec3(ox + t * dx, oy + t * dy, oz + t * dz);
     }
 }
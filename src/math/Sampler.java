@@ -0,0 +1,41 @@
+package math;
+
+/**
+ * Source of the random numbers used while tracing a sample.
+ * The sequence is restarted for every pixel sample, so the numbers a sample sees only depend on the pixel,
+ * the sample index and the seed, never on which thread renders it or in which order.
+ * Instances are not thread-safe; every worker thread uses its own copy.
+ * <p>
+ * The numbers of a sample are its dimensions: the first call to {@link #get1D} after a restart returns
+ * dimension 0, the next one dimension 1 and so on. Quasi-Monte Carlo samplers like {@link SobolSampler} spread
+ * each dimension (and pairs of neighbouring dimensions) evenly over the samples of a pixel, so the same decision
+ * should always read the same dimension; {@link #setDimension} jumps to a fixed one, e.g. per bounce.
+ */
+public interface Sampler {
+    /**
+     * Restarts the sequence for a new sample.
+     * @param x Pixel column.
+     * @param y Pixel row.
+     * @param sampleIndex Index of the sample within the pixel.
+     */
+    void startPixelSample(int x, int y, int sampleIndex);
+
+    /**
+     * Returns the next number of the current sample's sequence.
+     * @return A value in [0, 1).
+     */
+    double get1D();
+
+    /**
+     * Continues the current sample's sequence at a given dimension. Samplers whose numbers are all independent
+     * ignore this.
+     * @param dimension Index of the dimension the next {@link #get1D} call returns.
+     */
+    default void setDimension(int dimension) {}
+
+    /**
+     * Creates an independent sampler with the same configuration, for use on another thread.
+     * @return A new sampler.
+     */
+    Sampler copy();
+}
@@ -0,0 +1,118 @@
+package math;
+
+/**
+ * Quasi-Monte Carlo sampler based on the 2D Sobol sequence with hashed Owen scrambling (Burley, "Practical
+ * Hash-based Owen Scrambling", JCGT 2020). The samples of a pixel are points of the sequence, so they fill the
+ * unit square far more evenly than independent numbers: every power-of-two prefix of them puts exactly one point
+ * into each of the elementary intervals of its size, and the error drops faster with the sample count.
+ * <p>
+ * Dimensions are used in pairs: dimensions 2k and 2k + 1 are the two coordinates of the same Sobol point, so the
+ * pixel position (0, 1), the lens position (2, 3) and the two numbers of a bounce direction are each stratified in
+ * 2D. Every pair gets its own shuffle of the sample order and its own scrambling, both hashed from (seed, pixel,
+ * pair), so pairs are independent of each other and neighbouring pixels don't share a pattern. Callers should
+ * start 2D decisions at even dimensions, see {@link Sampler#setDimension}.
+ * <p>
+ * Works with any number of samples per pixel, but stratifies best at powers of two. Like
+ * {@link IndependentSampler}, restarting a sample is a few multiplications and nothing is allocated.
+ */
+public class SobolSampler implements Sampler {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final int[] SOBOL1 = sobol1Table(); // sobol1 of every byte value at each of the four positions
+
+    private final long seed;
+    private long pixelHash;
+    private int sampleIndex;
+    private int dimension;
+    // Shuffled sample index and scrambling seed of the pair of dimensions read last, shared by both coordinates
+    private int pair = -1;
+    private int shuffledIndex;
+    private long pairHash;
+
+    public SobolSampler(long seed) {
+        this.seed = seed;
+    }
+
+    @Override
+    public void startPixelSample(int x, int y, int sampleIndex) {
+        long pixel = ((long) y << 32) | (x & 0xffffffffL);
+        this.pixelHash = mix64(seed ^ mix64(pixel));
+        this.sampleIndex = sampleIndex;
+        this.dimension = 0;
+        this.pair = -1;
+    }
+
+    @Override
+    public void setDimension(int dimension) {
+        this.dimension = dimension;
+    }
+
+    @Override
+    public double get1D() {
+        int d = dimension++;
+        if (d >>> 1 != pair) {
+            pair = d >>> 1;
+            pairHash = mix64(pixelHash + pair * GOLDEN_GAMMA);
+            // Shuffle the order of the samples: a power-of-two prefix still maps onto an aligned block of the sequence
+            shuffledIndex = nestedUniformScramble(sampleIndex, (int) pairHash);
+        }
+        int x = (d & 1) == 0 ? Integer.reverse(shuffledIndex) : sobol1(shuffledIndex);
+        x = nestedUniformScramble(x, (int) (pairHash >>> 32) + (d & 1) * 0x9e3779b9);
+        return (x & 0xffffffffL) * 0x1.0p-32;
+    }
+
+    @Override
+    public Sampler copy() {
+        return new SobolSampler(seed);
+    }
+
+    /**
+     * Second dimension of the Sobol sequence (primitive polynomial x + 1); the first is the van der Corput
+     * sequence, {@link Integer#reverse} of the index. The XOR of the direction numbers of all set bits of the
+     * index, looked up a byte at a time.
+     */
+    static int sobol1(int index) {
+        return SOBOL1[index & 0xff] ^ SOBOL1[256 + ((index >>> 8) & 0xff)]
+                ^ SOBOL1[512 + ((index >>> 16) & 0xff)] ^ SOBOL1[768 + (index >>> 24)];
+    }
+
+    private static int[] sobol1Table() {
+        int[] directions = new int[32];
+        directions[0] = 0x80000000;
+        for (int bit = 1; bit < 32; bit++) directions[bit] = directions[bit - 1] ^ (directions[bit - 1] >>> 1);
+        int[] table = new int[4 * 256];
+        for (int b = 0; b < 4; b++) {
+            for (int value = 0; value < 256; value++) {
+                int x = 0;
+                for (int bit = 0; bit < 8; bit++) {
+                    if ((value & (1 << bit)) != 0) x ^= directions[8 * b + bit];
+                }
+                table[256 * b + value] = x;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Owen scrambling of a 32 bit fraction: flips every bit depending on the seed and the bits above it, which
+     * randomizes the point while keeping the stratification of the sequence.
+     */
+    static int nestedUniformScramble(int x, int seed) {
+        x = Integer.reverse(x);
+        // Laine-Karras permutation: every bit only depends on the bits below it
+        x += seed;
+        x ^= x * 0x6c50b47c;
+        x ^= x * 0xb82f1e52;
+        x ^= x * 0xc7afe638;
+        x ^= x * 0x8d22f6e6;
+        return Integer.reverse(x);
+    }
+
+    /**
+     * SplitMix64 finalizer, see {@link IndependentSampler}.
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,90 @@
+package math;
+
+import java.util.Arrays;
+
+/**
+ * Keyframed 3D value, like a camera position or the offset of a moving object, interpolated smoothly over time.
+ * Between two keys the value follows a cubic Hermite curve whose tangents are the Catmull-Rom tangents of the
+ * neighbouring keys, so the path goes through every key without corners. Before the first and after the last
+ * key the value stays at that key.
+ */
+public class Track {
+    private double[] times = new double[4];
+    private double[] values = new double[12];
+    private int count;
+
+    /**
+     * Creates a track without keys. Add at least one with {@link #key} before reading it.
+     */
+    public Track() {}
+
+    /**
+     * Creates a track that always has the same value.
+     */
+    public static Track constant(Vec3 value) {
+        return new Track().key(0, value);
+    }
+
+    /**
+     * Adds a key. Keys must be added in increasing time order.
+     * @param time
+     * @param value
+     * @return This track, for chaining.
+     */
+    public Track key(double time, Vec3 value) {
+        if (count > 0 && time <= times[count - 1]) throw new IllegalArgumentException("Keys must be in time order");
+        if (count == times.length) {
+            times = Arrays.copyOf(times, 2 * count);
+            values = Arrays.copyOf(values, 6 * count);
+        }
+        times[count] = time;
+        values[3 * count] = value.x;
+        values[3 * count + 1] = value.y;
+        values[3 * count + 2] = value.z;
+        count++;
+        return this;
+    }
+
+    /**
+     * @param time
+     * @return The interpolated value at the time.
+     */
+    public Vec3 at(double time) {
+        if (count == 0) throw new IllegalStateException("Track has no keys");
+        if (time <= times[0]) return value(0);
+        if (time >= times[count - 1]) return value(count - 1);
+
+        int i = Arrays.binarySearch(times, 0, count, time);
+        if (i >= 0) return value(i);
+        int k = -i - 2; // Segment between key k and key k + 1
+        double dt = times[k + 1] - times[k];
+        double s = (time - times[k]) / dt;
+        double s2 = s * s, s3 = s2 * s;
+        double h00 = 2 * s3 - 3 * s2 + 1, h10 = s3 - 2 * s2 + s, h01 = -2 * s3 + 3 * s2, h11 = s3 - s2;
+        double[] v = new double[3];
+        for (int a = 0; a < 3; a++) {
+            v[a] = h00 * values[3 * k + a] + h10 * dt * tangent(k, a) + h01 * values[3 * (k + 1) + a]
+                    + h11 * dt * tangent(k + 1, a);
+        }
+        return new Vec3(v[0], v[1], v[2]);
+    }
+
+    /**
+     * Catmull-Rom tangent at a key: the slope between its neighbours, one-sided at the ends.
+     */
+    private double tangent(int k, int axis) {
+        int before = Math.max(0, k - 1), after = Math.min(count - 1, k + 1);
+        return (values[3 * after + axis] - values[3 * before + axis]) / (times[after] - times[before]);
+    }
+
+    private Vec3 value(int k) {
+        return new Vec3(values[3 * k], values[3 * k + 1], values[3 * k + 2]);
+    }
+
+    /**
+     * @return The time of the last key, 0 without keys.
+     */
+    public double duration() {
+        return count == 0 ? 0 : times[count - 1];
+    }
+}
@@ -0,0 +1,174 @@
+package math;
+
+/**
+ * Affine transform: a 3x3 matrix plus a translation, stored together with its inverse. Transforms are
+ * immutable; the factory methods and {@link #then(Transform)} create new ones.
+ * <p>
+ * Both matrices are kept as 12 doubles, row by row, with the translation as the last element of each row:
+ * <pre>
+ *   x' = m[0] * x + m[1] * y + m[2]  * z + m[3]
+ *   y' = m[4] * x + m[5] * y + m[6]  * z + m[7]
+ *   z' = m[8] * x + m[9] * y + m[10] * z + m[11]
+ * </pre>
+ */
+public class Transform {
+    private static final Transform IDENTITY = new Transform(new double[] {1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0});
+
+    private final double[] m;
+    private final double[] inv;
+
+    private Transform(double[] m) {
+        this.m = m;
+        this.inv = invert(m);
+    }
+
+    /**
+     * Creates a transform from its 12 matrix elements, laid out as described in the class comment.
+     * @param m
+     * @throws IllegalArgumentException If the matrix can't be inverted.
+     */
+    public static Transform of(double... m) {
+        if (m.length != 12) throw new IllegalArgumentException("A transform has 12 elements");
+        return new Transform(m.clone());
+    }
+
+    public static Transform identity() {
+        return IDENTITY;
+    }
+
+    public static Transform translation(double x, double y, double z) {
+        return new Transform(new double[] {1, 0, 0, x, 0, 1, 0, y, 0, 0, 1, z});
+    }
+
+    public static Transform scaling(double x, double y, double z) {
+        return new Transform(new double[] {x, 0, 0, 0, 0, y, 0, 0, 0, 0, z, 0});
+    }
+
+    /**
+     * Rotation around one of the coordinate axes, counterclockwise when looking down the axis.
+     * @param axis 0 = x, 1 = y, 2 = z.
+     * @param degrees
+     */
+    public static Transform rotation(int axis, double degrees) {
+        double c = Math.cos(Math.toRadians(degrees));
+        double s = Math.sin(Math.toRadians(degrees));
+        switch (axis) {
+            case 0:
+                return new Transform(new double[] {1, 0, 0, 0, 0, c, -s, 0, 0, s, c, 0});
+            case 1:
+                return new Transform(new double[] {c, 0, s, 0, 0, 1, 0, 0, -s, 0, c, 0});
+            case 2:
+                return new Transform(new double[] {c, -s, 0, 0, s, c, 0, 0, 0, 0, 1, 0});
+            default:
+                throw new IllegalArgumentException("No axis " + axis);
+        }
+    }
+
+    /**
+     * @param next
+     * @return A transform that applies this one first and next after it.
+     */
+    public Transform then(Transform next) {
+        double[] a = next.m, b = m;
+        double[] c = new double[12];
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 4; col++) {
+                c[4 * row + col] = a[4 * row] * b[col] + a[4 * row + 1] * b[4 + col] + a[4 * row + 2] * b[8 + col]
+                        + (col == 3 ? a[4 * row + 3] : 0);
+            }
+        }
+        return new Transform(c);
+    }
+
+    public boolean isIdentity() {
+        for (int i = 0; i < 12; i++) {
+            if (m[i] != IDENTITY.m[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Copies the 12 matrix elements into out, starting at offset.
+     */
+    public void get(double[] out, int offset) {
+        System.arraycopy(m, 0, out, offset, 12);
+    }
+
+    /**
+     * Transforms a ray from world space into the space the transform maps from. The direction is not
+     * normalized, so a distance t along the result is the same point as t along the original ray.
+     * @param r The ray in world space.
+     * @param out Receives the transformed ray; may not be r.
+     * @return out
+     */
+    public Ray inverseRay(Ray r, Ray out) {
+        double[] i = inv;
+        return out.set(
+                i[0] * r.ox + i[1] * r.oy + i[2] * r.oz + i[3],
+                i[4] * r.ox + i[5] * r.oy + i[6] * r.oz + i[7],
+                i[8] * r.ox + i[9] * r.oy + i[10] * r.oz + i[11],
+                i[0] * r.dx + i[1] * r.dy + i[2] * r.dz,
+                i[4] * r.dx + i[5] * r.dy + i[6] * r.dz,
+                i[8] * r.dx + i[9] * r.dy + i[10] * r.dz);
+    }
+
+    public MutableVec3 point(MutableVec3 p) {
+        return p.set(m[0] * p.x + m[1] * p.y + m[2] * p.z + m[3],
+                     m[4] * p.x + m[5] * p.y + m[6] * p.z + m[7],
+                     m[8] * p.x + m[9] * p.y + m[10] * p.z + m[11]);
+    }
+
+    /**
+     * Transforms a normal with the inverse transpose, so it stays perpendicular to the transformed surface.
+     * The result is normalized.
+     */
+    public MutableVec3 normal(MutableVec3 n) {
+        return n.set(inv[0] * n.x + inv[4] * n.y + inv[8] * n.z,
+                     inv[1] * n.x + inv[5] * n.y + inv[9] * n.z,
+                     inv[2] * n.x + inv[6] * n.y + inv[10] * n.z).normalize();
+    }
+
+    /**
+     * Bounds of a transformed box, found by transforming all 8 corners.
+     * @param b minX, minY, minZ, maxX, maxY, maxZ of the box, overwritten with the transformed bounds.
+     */
+    public void bounds(double[] b) {
+        double[] out = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                         Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+        for (int corner = 0; corner < 8; corner++) {
+            double x = b[(corner & 1) != 0 ? 3 : 0];
+            double y = b[(corner & 2) != 0 ? 4 : 1];
+            double z = b[(corner & 4) != 0 ? 5 : 2];
+            for (int a = 0; a < 3; a++) {
+                double v = m[4 * a] * x + m[4 * a + 1] * y + m[4 * a + 2] * z + m[4 * a + 3];
+                out[a] = Math.min(out[a], v);
+                out[a + 3] = Math.max(out[a + 3], v);
+            }
+        }
+        System.arraycopy(out, 0, b, 0, 6);
+    }
+
+    private static double[] invert(double[] m) {
+        // Inverse of the 3x3 part via cofactors, then the translation is moved back through it
+        double c00 = m[5] * m[10] - m[6] * m[9];
+        double c01 = m[6] * m[8] - m[4] * m[10];
+        double c02 = m[4] * m[9] - m[5] * m[8];
+        double det = m[0] * c00 + m[1] * c01 + m[2] * c02;
+        if (det == 0 || Double.isNaN(det)) throw new IllegalArgumentException("Transform can't be inverted");
+        double d = 1.0 / det;
+        double[] r = new double[12];
+        r[0] = c00 * d;
+        r[1] = (m[2] * m[9] - m[1] * m[10]) * d;
+        r[2] = (m[1] * m[6] - m[2] * m[5]) * d;
+        r[4] = c01 * d;
+        r[5] = (m[0] * m[10] - m[2] * m[8]) * d;
+        r[6] = (m[2] * m[4] - m[0] * m[6]) * d;
+        r[8] = c02 * d;
+        r[9] = (m[1] * m[8] - m[0] * m[9]) * d;
+        r[10] = (m[0] * m[5] - m[1] * m[4]) * d;
+        for (int row = 0; row < 3; row++) {
+            r[4 * row + 3] = -(r[4 * row] * m[3] + r[4 * row + 1] * m[7] + r[4 * row + 2] * m[11]);
+        }
+        return r;
+    }
+}
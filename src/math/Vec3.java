@@ -102,15 +102,37 @@ public class Vec3 {
         );
     }
 
+    /**
+     * Same as {@link #random()}, but drawn from the given generator so scenes can be rebuilt from a seed.
+     * @param rnd
+     * @return
+     */
+    public static Vec3 random(java.util.Random rnd) {
+        return new Vec3(rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble());
+    }
+
+    /**
+     * Same as {@link #random(double, double)}, but drawn from the given generator.
+     * @param min
+     * @param max
+     * @param rnd
+     * @return
+     */
+    public static Vec3 random(double min, double max, java.util.Random rnd) {
+        return new Vec3(
+            min + (max - min) * rnd.nextDouble(),
+            min + (max - min) * rnd.nextDouble(),
+            min + (max - min) * rnd.nextDouble()
+        );
+    }
+
     /**
      * Generates a random point inside a unit sphere. This is commonly used for diffuse scattering, where rays are scattered in random directions within a hemisphere.
+     * @param sampler The sampler of the current sample.
      * @return
      */
-    public static Vec3 randomInUnitSphere() {
-        while (true) {
-            Vec3 p = random(-1, 1);
-            if (p.lengthSquared() < 1) return p;
-        }
+    public static Vec3 randomInUnitSphere(Sampler sampler) {
+        return new MutableVec3().setRandomInUnitSphere(sampler).toVec3();
     }
 
     /**